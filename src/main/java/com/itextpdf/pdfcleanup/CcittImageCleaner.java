@@ -0,0 +1,156 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.io.codec.CCITTG4Encoder;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+
+/**
+ * Encodes the cleaned samples of the CCITT fax encoded bilevel images back with CCITT Group 4 compression, so that
+ * the cleaned scans stay as compact as the original ones instead of being converted into the common image format.
+ * The samples are decoded and cleaned the same way as the other monochrome images, see
+ * {@link PdfCleanUpFilter#imageSupportsDirectCleanup(PdfImageXObject)}.
+ */
+final class CcittImageCleaner {
+
+    private static final int DEFAULT_COLUMNS = 1728;
+
+    private CcittImageCleaner() {
+    }
+
+    /**
+     * Checks whether the image is a bilevel image encoded with the single CCITTFaxDecode filter,
+     * which samples might be encoded back by {@link #encodeSamples(PdfImageXObject, byte[])}.
+     *
+     * @param image the image to be checked
+     * @return true if the image is a supported CCITT fax encoded image
+     */
+    static boolean isSupported(PdfImageXObject image) {
+        PdfStream imageStream = image.getPdfObject();
+        PdfObject filter = imageStream.get(PdfName.Filter);
+        if (filter instanceof PdfArray) {
+            filter = ((PdfArray) filter).size() == 1 ? ((PdfArray) filter).get(0) : null;
+        }
+        if (!PdfName.CCITTFaxDecode.equals(filter) && !PdfName.CCF.equals(filter)) {
+            return false;
+        }
+        PdfNumber bpc = imageStream.getAsNumber(PdfName.BitsPerComponent);
+        if (bpc != null && bpc.intValue() != 1) {
+            return false;
+        }
+        PdfObject decodeParms = getDecodeParms(imageStream);
+        if (decodeParms != null && !decodeParms.isDictionary()) {
+            return false;
+        }
+        PdfNumber columns = decodeParms == null ? null : ((PdfDictionary) decodeParms).getAsNumber(PdfName.Columns);
+        // the samples are decoded according to the image width, so the columns shall match it
+        int columnsValue = columns == null ? DEFAULT_COLUMNS : columns.intValue();
+        return columnsValue == (int) image.getWidth() && image.getHeight() > 0;
+    }
+
+    /**
+     * Creates the copy of the image with the given samples encoded with CCITT Group 4 compression.
+     * The original decode parameters are kept except for the ones which are specific to the original encoding scheme.
+     * The copy doesn't contain the /SMask, /Mask and /SMaskInData entries, they shall be processed separately.
+     *
+     * @param image          the original image, shall be supported according to {@link #isSupported(PdfImageXObject)}
+     * @param cleanedSamples the decoded samples of the image with the cleaned areas, each row starts at a byte boundary
+     * @return the stream of the cleaned image.
+     */
+    static PdfStream encodeSamples(PdfImageXObject image, byte[] cleanedSamples) {
+        PdfStream imageStream = image.getPdfObject();
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+
+        PdfDictionary originalDecodeParms = (PdfDictionary) getDecodeParms(imageStream);
+        PdfDictionary decodeParms = new PdfDictionary();
+        if (originalDecodeParms != null) {
+            for (PdfName key : originalDecodeParms.keySet()) {
+                decodeParms.put(key, originalDecodeParms.get(key, false));
+            }
+        }
+        decodeParms.remove(PdfName.EncodedByteAlign);
+        decodeParms.remove(PdfName.EndOfLine);
+        decodeParms.remove(PdfName.DamagedRowsBeforeError);
+        decodeParms.put(PdfName.K, new PdfNumber(-1));
+        decodeParms.put(PdfName.Columns, new PdfNumber(width));
+
+        // The decoded samples follow PDF sample representation, where 0 is black unless /BlackIs1 is set,
+        // while the encoder treats 1 as black.
+        boolean blackIs1 = Boolean.TRUE.equals(decodeParms.getAsBool(PdfName.BlackIs1));
+        int rowLength = (width + 7) / 8;
+        byte[] samples = new byte[rowLength * height];
+        System.arraycopy(cleanedSamples, 0, samples, 0, Math.min(samples.length, cleanedSamples.length));
+        if (!blackIs1) {
+            for (int i = 0; i < samples.length; ++i) {
+                samples[i] = (byte) ~samples[i];
+            }
+        }
+
+        PdfStream cleanedStream = new PdfStream(CCITTG4Encoder.compress(samples, width, height));
+        for (PdfName key : imageStream.keySet()) {
+            cleanedStream.put(key, imageStream.get(key, false));
+        }
+        cleanedStream.remove(PdfName.Length);
+        cleanedStream.remove(PdfName.SMask);
+        cleanedStream.remove(PdfName.Mask);
+        cleanedStream.remove(PdfName.SMaskInData);
+        cleanedStream.put(PdfName.Filter, PdfName.CCITTFaxDecode);
+        cleanedStream.put(PdfName.DecodeParms, decodeParms);
+        return cleanedStream;
+    }
+
+    private static PdfObject getDecodeParms(PdfStream imageStream) {
+        PdfObject decodeParms = imageStream.get(PdfName.DecodeParms);
+        if (decodeParms instanceof PdfArray) {
+            decodeParms = ((PdfArray) decodeParms).isEmpty() ? null : ((PdfArray) decodeParms).get(0);
+        }
+        return decodeParms == null || decodeParms.isNull() ? null : decodeParms;
+    }
+}
@@ -32,6 +32,8 @@ public class CleanUpLogMessageConstant {
     public static final String IMAGE_MASK_CLEAN_UP_NOT_SUPPORTED = "Partial clean up of transparent images with mask encoded with one of the following filters is not supported: JBIG2Decode, DCTDecode, JPXDecode. Image will become non-transparent.";
     /** The Constant REDACTION_OF_ANNOTATION_TYPE_WATERMARK_IS_NOT_SUPPORTED. */
     public static final String REDACTION_OF_ANNOTATION_TYPE_WATERMARK_IS_NOT_SUPPORTED = "Redaction of annotation subtype /Watermark is not supported";
+    /** The Constant SHARED_FILTERED_IMAGES_CACHE_FILE_ACCESS_FAILED. */
+    public static final String SHARED_FILTERED_IMAGES_CACHE_FILE_ACCESS_FAILED = "Cannot access the filtered image cache file {0}. The image will be filtered again.";
 
     private CleanUpLogMessageConstant() {
     }
@@ -0,0 +1,183 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+/**
+ * Defines the precision of the geometric calculations performed during the clean up and the way the images are cleaned.
+ * <p>
+ * The properties are immutable, so the same instance might be shared between several {@link PdfCleanUpTool}
+ * instances, including the ones which are used concurrently. Coarser values make the line art processing faster
+ * at the cost of the preciseness of the cleaned paths.
+ */
+public final class CleanUpProperties {
+
+    /**
+     * The default coefficient which is used to translate floating point coordinates into fixed point ones.
+     */
+    public static final double DEFAULT_CLIPPER_SCALE = Math.pow(10, 14);
+
+    /**
+     * The default criterion of a good approximation of rounded line joins and line caps.
+     */
+    public static final double DEFAULT_ARC_TOLERANCE = 0.0025;
+
+    /**
+     * The default curve flattening tolerance. Zero means that the curves are flattened with the
+     * default settings of {@link com.itextpdf.kernel.geom.BezierCurve}.
+     */
+    public static final double DEFAULT_CURVE_FLATTENING_TOLERANCE = 0;
+
+    /**
+     * The default tolerance of the geometric comparisons.
+     */
+    public static final double DEFAULT_EPS = 1e-4;
+
+    private final double clipperScale;
+    private final double arcTolerance;
+    private final double curveFlatteningTolerance;
+    private final double eps;
+    private final boolean dctDomainImageCleanUp;
+
+    /**
+     * Creates the properties with the default precision.
+     */
+    public CleanUpProperties() {
+        this(DEFAULT_CLIPPER_SCALE, DEFAULT_ARC_TOLERANCE, DEFAULT_CURVE_FLATTENING_TOLERANCE, DEFAULT_EPS);
+    }
+
+    /**
+     * Creates the properties with the given precision.
+     *
+     * @param clipperScale             the coefficient which is used to translate floating point coordinates of
+     *                                 the line art into fixed point ones. Coordinates multiplied by it shall not
+     *                                 exceed 2<sup>62</sup>, the calculations are noticeably faster if they don't
+     *                                 exceed 2<sup>30</sup>. Must be positive.
+     * @param arcTolerance             the maximal distance (in user space units) between the rounded line joins
+     *                                 and line caps and their approximation. Must be positive.
+     * @param curveFlatteningTolerance the maximal distance (in user space units) between the Bezier curves and their
+     *                                 piecewise linear approximation. If zero, the curves are flattened with
+     *                                 the default settings of {@link com.itextpdf.kernel.geom.BezierCurve}.
+     *                                 Must not be negative.
+     * @param eps                      the tolerance (in user space units) of the geometric comparisons, e.g.
+     *                                 the intersection of the text and the cleanup regions narrower than this value
+     *                                 is ignored. Must be positive.
+     */
+    public CleanUpProperties(double clipperScale, double arcTolerance, double curveFlatteningTolerance, double eps) {
+        this(clipperScale, arcTolerance, curveFlatteningTolerance, eps, false);
+    }
+
+    private CleanUpProperties(double clipperScale, double arcTolerance, double curveFlatteningTolerance, double eps,
+                              boolean dctDomainImageCleanUp) {
+        if (!(clipperScale > 0) || !(arcTolerance > 0) || !(curveFlatteningTolerance >= 0) || !(eps > 0)) {
+            throw new IllegalArgumentException("Clean up precision properties must be positive.");
+        }
+        this.clipperScale = clipperScale;
+        this.arcTolerance = arcTolerance;
+        this.curveFlatteningTolerance = curveFlatteningTolerance;
+        this.eps = eps;
+        this.dctDomainImageCleanUp = dctDomainImageCleanUp;
+    }
+
+    /**
+     * Creates the copy of these properties with the given DCT domain image clean up mode.
+     * <p>
+     * If the mode is enabled, the baseline DCT encoded (JPEG) images are cleaned without decoding them into pixels
+     * and encoding back: the 8x8 blocks (or the bigger minimum coded units of the subsampled images) touched by
+     * the cleaned areas are replaced with the white blocks directly in the compressed data. It's much faster,
+     * it doesn't introduce any additional compression artifacts, but the cleaned areas are rounded outward to
+     * the block boundaries. Disabled by default.
+     *
+     * @param dctDomainImageCleanUp true to clean the DCT encoded images in the DCT domain
+     * @return the new {@link CleanUpProperties} instance
+     */
+    public CleanUpProperties withDctDomainImageCleanUp(boolean dctDomainImageCleanUp) {
+        return new CleanUpProperties(clipperScale, arcTolerance, curveFlatteningTolerance, eps, dctDomainImageCleanUp);
+    }
+
+    /**
+     * Gets the coefficient which is used to translate floating point coordinates of the line art
+     * into fixed point ones.
+     *
+     * @return the coefficient
+     */
+    public double getClipperScale() {
+        return clipperScale;
+    }
+
+    /**
+     * Gets the criterion of a good approximation of rounded line joins and line caps.
+     *
+     * @return the arc tolerance in user space units
+     */
+    public double getArcTolerance() {
+        return arcTolerance;
+    }
+
+    /**
+     * Gets the maximal distance between the Bezier curves and their piecewise linear approximation.
+     *
+     * @return the curve flattening tolerance in user space units, zero if the default approximation is used
+     */
+    public double getCurveFlatteningTolerance() {
+        return curveFlatteningTolerance;
+    }
+
+    /**
+     * Gets the tolerance of the geometric comparisons.
+     *
+     * @return the tolerance in user space units
+     */
+    public double getEps() {
+        return eps;
+    }
+
+    /**
+     * Checks whether the DCT encoded images are cleaned in the DCT domain,
+     * see {@link #withDctDomainImageCleanUp(boolean)}.
+     *
+     * @return true if the DCT domain image clean up is enabled
+     */
+    public boolean isDctDomainImageCleanUp() {
+        return dctDomainImageCleanUp;
+    }
+}
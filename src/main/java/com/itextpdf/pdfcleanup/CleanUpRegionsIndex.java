@@ -0,0 +1,240 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.kernel.geom.Point;
+import com.itextpdf.kernel.geom.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Uniform grid over the cleanup regions. It is used to retrieve only those regions, which might
+ * intersect the given area, instead of checking the area against every cleanup region.
+ * <p>
+ * The returned candidates are selected by the bounding boxes with some tolerance, so the precise intersection
+ * check (if required) is still the responsibility of the caller. The candidates are returned in the same order
+ * as they are in the original regions list.
+ * <p>
+ * The index is not thread safe.
+ */
+class CleanUpRegionsIndex {
+    /**
+     * The tolerance is intentionally coarse: the candidates are further checked with the precise methods,
+     * which treat touching and degenerate areas specifically.
+     */
+    private static final float TOLERANCE = 0.1f;
+
+    /**
+     * For the small number of regions a plain bounding box check is faster than the grid lookup.
+     */
+    private static final int MAX_REGIONS_FOR_LINEAR_SEARCH = 16;
+
+    private static final int MAX_GRID_SIZE = 64;
+
+    private final List<Rectangle> regions;
+    private final float[] regionBounds;
+
+    private float gridLeft;
+    private float gridBottom;
+    private float gridRight;
+    private float gridTop;
+    private float cellWidth;
+    private float cellHeight;
+    private int columns;
+    private int rows;
+    private int[][] cells;
+
+    private int[] visitMarks;
+    private int currentMark;
+
+    /**
+     * Creates the index over the given regions. The regions list must not be changed afterwards.
+     *
+     * @param regions the cleanup regions, {@code null} is considered as an empty list
+     */
+    CleanUpRegionsIndex(List<Rectangle> regions) {
+        this.regions = regions != null ? regions : Collections.<Rectangle>emptyList();
+        int size = this.regions.size();
+        regionBounds = new float[size * 4];
+        for (int i = 0; i < size; ++i) {
+            Rectangle region = this.regions.get(i);
+            regionBounds[4 * i] = Math.min(region.getLeft(), region.getRight());
+            regionBounds[4 * i + 1] = Math.min(region.getBottom(), region.getTop());
+            regionBounds[4 * i + 2] = Math.max(region.getLeft(), region.getRight());
+            regionBounds[4 * i + 3] = Math.max(region.getBottom(), region.getTop());
+        }
+        if (size > MAX_REGIONS_FOR_LINEAR_SEARCH) {
+            buildGrid();
+        }
+    }
+
+    /**
+     * Gets the regions whose bounding boxes intersect the given area.
+     *
+     * @param area the area in the regions space
+     * @return the list of candidate regions, which might be empty.
+     */
+    List<Rectangle> getCandidates(Rectangle area) {
+        float left = Math.min(area.getLeft(), area.getRight()) - TOLERANCE;
+        float bottom = Math.min(area.getBottom(), area.getTop()) - TOLERANCE;
+        float right = Math.max(area.getLeft(), area.getRight()) + TOLERANCE;
+        float top = Math.max(area.getBottom(), area.getTop()) + TOLERANCE;
+
+        if (cells == null) {
+            List<Rectangle> candidates = new ArrayList<>();
+            for (int i = 0; i < regions.size(); ++i) {
+                if (regionIntersects(i, left, bottom, right, top)) {
+                    candidates.add(regions.get(i));
+                }
+            }
+            return candidates;
+        }
+
+        if (right < gridLeft || left > gridRight || top < gridBottom || bottom > gridTop) {
+            return Collections.<Rectangle>emptyList();
+        }
+        int firstColumn = clamp(getCell(left, gridLeft, cellWidth), columns);
+        int lastColumn = clamp(getCell(right, gridLeft, cellWidth), columns);
+        int firstRow = clamp(getCell(bottom, gridBottom, cellHeight), rows);
+        int lastRow = clamp(getCell(top, gridBottom, cellHeight), rows);
+
+        ++currentMark;
+        int[] found = new int[16];
+        int foundCount = 0;
+        for (int row = firstRow; row <= lastRow; ++row) {
+            for (int column = firstColumn; column <= lastColumn; ++column) {
+                for (int regionIndex : cells[row * columns + column]) {
+                    if (visitMarks[regionIndex] != currentMark) {
+                        visitMarks[regionIndex] = currentMark;
+                        if (regionIntersects(regionIndex, left, bottom, right, top)) {
+                            if (foundCount == found.length) {
+                                found = Arrays.copyOf(found, foundCount * 2);
+                            }
+                            found[foundCount++] = regionIndex;
+                        }
+                    }
+                }
+            }
+        }
+
+        Arrays.sort(found, 0, foundCount);
+        List<Rectangle> candidates = new ArrayList<>(foundCount);
+        for (int i = 0; i < foundCount; ++i) {
+            candidates.add(regions.get(found[i]));
+        }
+        return candidates;
+    }
+
+    /**
+     * Gets the regions whose bounding boxes intersect the bounding box of the given points.
+     *
+     * @param points the points in the regions space
+     * @return the list of candidate regions, which might be empty.
+     */
+    List<Rectangle> getCandidates(Point[] points) {
+        return getCandidates(Rectangle.calculateBBox(Arrays.asList(points)));
+    }
+
+    private boolean regionIntersects(int regionIndex, float left, float bottom, float right, float top) {
+        return regionBounds[4 * regionIndex] <= right && left <= regionBounds[4 * regionIndex + 2]
+                && regionBounds[4 * regionIndex + 1] <= top && bottom <= regionBounds[4 * regionIndex + 3];
+    }
+
+    private void buildGrid() {
+        int size = regions.size();
+        gridRight = regionBounds[2];
+        gridTop = regionBounds[3];
+        gridLeft = regionBounds[0];
+        gridBottom = regionBounds[1];
+        for (int i = 1; i < size; ++i) {
+            gridLeft = Math.min(gridLeft, regionBounds[4 * i]);
+            gridBottom = Math.min(gridBottom, regionBounds[4 * i + 1]);
+            gridRight = Math.max(gridRight, regionBounds[4 * i + 2]);
+            gridTop = Math.max(gridTop, regionBounds[4 * i + 3]);
+        }
+
+        int gridSize = Math.min(MAX_GRID_SIZE, (int) Math.ceil(Math.sqrt(size)));
+        columns = gridSize;
+        rows = gridSize;
+        // degenerate extents are possible, e.g. when all the regions lie on the same line
+        cellWidth = Math.max((gridRight - gridLeft) / columns, TOLERANCE);
+        cellHeight = Math.max((gridTop - gridBottom) / rows, TOLERANCE);
+
+        int[] cellSizes = new int[columns * rows];
+        for (int pass = 0; pass < 2; ++pass) {
+            if (pass == 1) {
+                cells = new int[columns * rows][];
+                for (int cell = 0; cell < cells.length; ++cell) {
+                    cells[cell] = new int[cellSizes[cell]];
+                    cellSizes[cell] = 0;
+                }
+            }
+            for (int i = 0; i < size; ++i) {
+                int firstColumn = clamp(getCell(regionBounds[4 * i], gridLeft, cellWidth), columns);
+                int lastColumn = clamp(getCell(regionBounds[4 * i + 2], gridLeft, cellWidth), columns);
+                int firstRow = clamp(getCell(regionBounds[4 * i + 1], gridBottom, cellHeight), rows);
+                int lastRow = clamp(getCell(regionBounds[4 * i + 3], gridBottom, cellHeight), rows);
+                for (int row = firstRow; row <= lastRow; ++row) {
+                    for (int column = firstColumn; column <= lastColumn; ++column) {
+                        int cell = row * columns + column;
+                        if (pass == 1) {
+                            cells[cell][cellSizes[cell]] = i;
+                        }
+                        ++cellSizes[cell];
+                    }
+                }
+            }
+        }
+        visitMarks = new int[size];
+    }
+
+    private static int getCell(float coordinate, float gridStart, float cellSize) {
+        return (int) Math.floor((coordinate - gridStart) / cellSize);
+    }
+
+    private static int clamp(int cell, int cellsNumber) {
+        return Math.max(0, Math.min(cellsNumber - 1, cell));
+    }
+}
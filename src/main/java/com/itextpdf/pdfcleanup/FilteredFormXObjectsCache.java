@@ -0,0 +1,275 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.kernel.colors.Color;
+import com.itextpdf.kernel.colors.PatternColor;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.geom.Point;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfIndirectReference;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.canvas.CanvasGraphicsState;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the results of form XObjects cleaning, so that the same form XObject which is painted several times
+ * (e.g. a letterhead or a page template) is processed and written to the resultant document only once.
+ * The cleaning result of a form XObject depends on the form content, on the position of the cleanup regions
+ * relative to the form and on the graphics and text state the form inherits from the content it is painted from,
+ * because the inherited parameters (colors, line style, font, etc.) are written to the cleaned form content.
+ * That's why cleaning cases are distinguished by the form XObject reference, the cleanup regions transformed
+ * into the form space and the inherited state.
+ */
+class FilteredFormXObjectsCache {
+    private static final double EPS = 1e-4;
+
+    private Map<PdfIndirectReference, List<FilteredFormXObjectKey>> cache = new HashMap<>();
+
+    /**
+     * Retrieves saved result of form XObject cleaning based on given set of cleaning areas.
+     *
+     * @param formKey the defining cleaning case
+     * @return result of form XObject cleaning if such was already processed and saved, null otherwise.
+     * If the form XObject content wasn't affected by the cleanup, the original form XObject is returned.
+     */
+    PdfFormXObject get(FilteredFormXObjectKey formKey) {
+        List<FilteredFormXObjectKey> cachedFormKeys = cache.get(formKey.getFormIndRef());
+        if (cachedFormKeys != null) {
+            for (FilteredFormXObjectKey cacheKey : cachedFormKeys) {
+                if (areasEqualWithEps(cacheKey.getCleanedAreas(), formKey.getCleanedAreas())
+                        && cacheKey.getInheritedState().equals(formKey.getInheritedState())) {
+                    return cacheKey.getFilteredForm();
+                }
+            }
+        }
+        return null;
+    }
+
+    void put(FilteredFormXObjectKey formKey, PdfFormXObject filteredForm) {
+        List<FilteredFormXObjectKey> filteredFormKeys = cache.get(formKey.getFormIndRef());
+        if (filteredFormKeys == null) {
+            cache.put(formKey.getFormIndRef(), filteredFormKeys = new ArrayList<>());
+        }
+        filteredFormKeys.add(formKey);
+        formKey.setFilteredForm(filteredForm);
+    }
+
+    /**
+     * Cleanup regions are processed in the same order for every form XObject invocation,
+     * so the areas are compared pairwise.
+     */
+    private static boolean areasEqualWithEps(List<Point[]> cacheAreas, List<Point[]> keyAreas) {
+        if (cacheAreas.size() != keyAreas.size()) {
+            return false;
+        }
+        for (int i = 0; i < cacheAreas.size(); ++i) {
+            Point[] cacheVertices = cacheAreas.get(i);
+            Point[] keyVertices = keyAreas.get(i);
+            for (int j = 0; j < cacheVertices.length; ++j) {
+                if (Math.abs(cacheVertices[j].getX() - keyVertices[j].getX()) > EPS
+                        || Math.abs(cacheVertices[j].getY() - keyVertices[j].getY()) > EPS) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    static class FilteredFormXObjectKey {
+        private PdfStream formStream;
+        private List<Point[]> cleanedAreas;
+        private InheritedState inheritedState;
+        private PdfFormXObject filteredForm;
+
+        /**
+         * @param formStream     the original form XObject stream, must be an indirect object
+         * @param cleanedAreas   the vertices of the cleanup regions in the form space
+         * @param inheritedState the graphics state at the moment the form XObject is painted
+         */
+        FilteredFormXObjectKey(PdfStream formStream, List<Point[]> cleanedAreas, CanvasGraphicsState inheritedState) {
+            this.formStream = formStream;
+            this.cleanedAreas = cleanedAreas;
+            this.inheritedState = new InheritedState(inheritedState);
+        }
+
+        List<Point[]> getCleanedAreas() {
+            return cleanedAreas;
+        }
+
+        InheritedState getInheritedState() {
+            return inheritedState;
+        }
+
+        PdfStream getFormStream() {
+            return formStream;
+        }
+
+        PdfIndirectReference getFormIndRef() {
+            return formStream.getIndirectReference();
+        }
+
+        PdfFormXObject getFilteredForm() {
+            return filteredForm;
+        }
+
+        void setFilteredForm(PdfFormXObject filteredForm) {
+            this.filteredForm = filteredForm;
+        }
+    }
+
+    /**
+     * The parameters of the graphics and text state inherited by the form XObject, which might be written
+     * to its cleaned content. The ctm is not included, it is taken into account by the cleanup regions.
+     */
+    static final class InheritedState {
+        private final Color strokeColor;
+        private final Color fillColor;
+        private final float lineWidth;
+        private final int lineCapStyle;
+        private final int lineJoinStyle;
+        private final float miterLimit;
+        private final float[] dashPattern;
+        private final PdfFont font;
+        private final float fontSize;
+        private final float charSpacing;
+        private final float wordSpacing;
+        private final float horizontalScaling;
+        private final float leading;
+        private final float textRise;
+        private final int textRenderingMode;
+
+        InheritedState(CanvasGraphicsState gs) {
+            this.strokeColor = gs.getStrokeColor();
+            this.fillColor = gs.getFillColor();
+            this.lineWidth = gs.getLineWidth();
+            this.lineCapStyle = gs.getLineCapStyle();
+            this.lineJoinStyle = gs.getLineJoinStyle();
+            this.miterLimit = gs.getMiterLimit();
+            this.dashPattern = flattenNumbers(gs.getDashPattern());
+            this.font = gs.getFont();
+            this.fontSize = gs.getFontSize();
+            this.charSpacing = gs.getCharSpacing();
+            this.wordSpacing = gs.getWordSpacing();
+            this.horizontalScaling = gs.getHorizontalScaling();
+            this.leading = gs.getLeading();
+            this.textRise = gs.getTextRise();
+            this.textRenderingMode = gs.getTextRenderingMode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            InheritedState that = (InheritedState) o;
+            return lineWidth == that.lineWidth && lineCapStyle == that.lineCapStyle
+                    && lineJoinStyle == that.lineJoinStyle && miterLimit == that.miterLimit
+                    && fontSize == that.fontSize && charSpacing == that.charSpacing
+                    && wordSpacing == that.wordSpacing && horizontalScaling == that.horizontalScaling
+                    && leading == that.leading && textRise == that.textRise
+                    && textRenderingMode == that.textRenderingMode
+                    && Arrays.equals(dashPattern, that.dashPattern)
+                    && (font == null ? that.font == null : that.font != null && font.getPdfObject() == that.font.getPdfObject())
+                    && colorsEqual(strokeColor, that.strokeColor) && colorsEqual(fillColor, that.fillColor);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Float.floatToIntBits(lineWidth);
+            result = 31 * result + Float.floatToIntBits(fontSize);
+            result = 31 * result + textRenderingMode;
+            return 31 * result + Arrays.hashCode(dashPattern);
+        }
+
+        private static boolean colorsEqual(Color first, Color second) {
+            if (first == null || second == null) {
+                return first == second;
+            }
+            if (first.getClass() != second.getClass()
+                    || !first.getColorSpace().getPdfObject().equals(second.getColorSpace().getPdfObject())
+                    || !Arrays.equals(first.getColorValue(), second.getColorValue())) {
+                return false;
+            }
+            return !(first instanceof PatternColor)
+                    || ((PatternColor) first).getPattern().getPdfObject() == ((PatternColor) second).getPattern().getPdfObject();
+        }
+
+        private static float[] flattenNumbers(PdfArray array) {
+            if (array == null) {
+                return null;
+            }
+            List<Float> numbers = new ArrayList<>();
+            collectNumbers(array, numbers);
+            float[] result = new float[numbers.size()];
+            for (int i = 0; i < result.length; ++i) {
+                result[i] = (float) numbers.get(i);
+            }
+            return result;
+        }
+
+        private static void collectNumbers(PdfArray array, List<Float> numbers) {
+            for (int i = 0; i < array.size(); ++i) {
+                PdfObject item = array.get(i);
+                if (item instanceof PdfArray) {
+                    // the nested arrays are delimited, so that [[1] 2] and [[1 2]] differ
+                    numbers.add(Float.NaN);
+                    collectNumbers((PdfArray) item, numbers);
+                    numbers.add(Float.NaN);
+                } else if (item instanceof PdfNumber) {
+                    numbers.add(((PdfNumber) item).floatValue());
+                }
+            }
+        }
+    }
+}
@@ -42,20 +42,67 @@
  */
 package com.itextpdf.pdfcleanup;
 
+import com.itextpdf.kernel.geom.Matrix;
 import com.itextpdf.kernel.geom.Rectangle;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfIndirectReference;
+import com.itextpdf.kernel.pdf.PdfOutputStream;
+import com.itextpdf.kernel.pdf.PdfResources;
 import com.itextpdf.kernel.pdf.PdfStream;
 import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedHashSet;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 class FilteredImagesCache {
-    private Map<PdfIndirectReference, List<FilteredImageKey>> cache = new HashMap<>();
+
+    /**
+     * Size of the grid cleaned areas coordinates are snapped to before being compared.
+     * It matches the epsilon used by {@link Rectangle#equalsWithEpsilon(Rectangle)}.
+     */
+    private static final float AREA_QUANTIZATION_EPS = 1e-4f;
+
+    /**
+     * The number of image occurrences for which the decision to keep or to remove the whole image is kept.
+     */
+    private static final int IMAGE_DECISIONS_CACHE_SIZE = 1024;
+
+    /**
+     * Cached filtering cases in the least recently used first order.
+     */
+    private Map<FilteredImageCacheKey, FilteredImageKey> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The images which are either kept untouched or completely removed by the cleanup, identified by the image
+     * reference, its ctm and the cleanup regions. Such images are not filtered, so the cache of their filtering
+     * results doesn't help, but the areas to be cleaned shall not be calculated for them again.
+     */
+    private Map<ImageDecisionKey, ImageDecision> imageDecisions = new LinkedHashMap<ImageDecisionKey, ImageDecision>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ImageDecisionKey, ImageDecision> eldest) {
+            return size() > IMAGE_DECISIONS_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * The placeholders of the images which are being filtered asynchronously mapped to the resources
+     * they have been added to, see {@link #putPlaceholder(FilteredImageKey, PdfImageXObject)}.
+     */
+    private Map<PdfImageXObject, Set<PdfResources>> placeholderUsages = new IdentityHashMap<>();
+
+    private long maxSize = Long.MAX_VALUE;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
 
     static FilteredImageKey createFilteredImageKey(PdfImageXObject image, List<Rectangle> areasToBeCleaned, PdfDocument document) {
         PdfStream imagePdfObject = image.getPdfObject();
@@ -67,6 +114,8 @@ class FilteredImagesCache {
 
     /**
      * Retrieves saved result of image filtering based on given set of cleaning areas.
+     * The order of the areas doesn't matter and their coordinates are compared on a grid
+     * of {@link Rectangle#equalsWithEpsilon(Rectangle)} epsilon size.
      * This won't handle the case when same filtering result is produced by different sets of areas,
      * e.g. if one set is { (0, 0, 50, 100), (50, 0, 50, 100)} and another one is {(0, 0, 100, 100)},
      * even though filtering results are essentially the same, current {@link FilteredImagesCache}
@@ -77,55 +126,225 @@ class FilteredImagesCache {
      * null otherwise.
      */
     PdfImageXObject get(FilteredImageKey imageKey) {
-        List<FilteredImageKey> cachedFilteredImageKeys = cache.get(imageKey.getImageIndRef());
-        if (cachedFilteredImageKeys != null) {
-            for (FilteredImageKey cacheKey : cachedFilteredImageKeys) {
-                if (rectanglesEqualWithEps(cacheKey.getCleanedAreas(), imageKey.getCleanedAreas())) {
-                    return cacheKey.getFilteredImage();
-                }
-            }
+        if (imageKey.getCleanedAreas() == null || imageKey.getCleanedAreas().isEmpty()) {
+            return null;
+        }
+        FilteredImageKey cachedKey = cache.get(imageKey.getCacheKey());
+        if (cachedKey == null) {
+            ++misses;
+            return null;
         }
-        return null;
+        ++hits;
+        return cachedKey.getFilteredImage();
     }
 
     void put(FilteredImageKey imageKey, PdfImageXObject filteredImage) {
         if (imageKey.getCleanedAreas() == null || imageKey.getCleanedAreas().isEmpty()) {
             return;
         }
-        List<FilteredImageKey> filteredImageKeys = cache.get(imageKey.getImageIndRef());
-        if (filteredImageKeys == null) {
-            cache.put(imageKey.getImageIndRef(), filteredImageKeys = new ArrayList<>());
-        }
-        filteredImageKeys.add(imageKey);
         imageKey.setFilteredImage(filteredImage);
+        FilteredImageCacheKey cacheKey = imageKey.getCacheKey();
+        if (!cache.containsKey(cacheKey)) {
+            cache.put(cacheKey, imageKey);
+            imageKey.filteredImageSize = getImageSize(filteredImage);
+            size += imageKey.filteredImageSize;
+            evictLeastRecentlyUsed(imageKey);
+        }
     }
 
-    private boolean rectanglesEqualWithEps(List<Rectangle> cacheRects, List<Rectangle> keyRects) {
-        if (keyRects == null || cacheRects.size() != keyRects.size()) {
+    /**
+     * Puts the placeholder of the image which is being filtered asynchronously. Unlike the filtered images,
+     * the resources the placeholder is added to are tracked until it is resolved, so that the original image
+     * could be written instead of it if the filtering doesn't change the image after all.
+     *
+     * @param imageKey    the filtering case
+     * @param placeholder the placeholder XObject
+     */
+    void putPlaceholder(FilteredImageKey imageKey, PdfImageXObject placeholder) {
+        put(imageKey, placeholder);
+        placeholderUsages.put(placeholder, Collections.newSetFromMap(new IdentityHashMap<PdfResources, Boolean>()));
+    }
+
+    /**
+     * Registers the resources the image is added to, if the image is the not yet resolved placeholder.
+     *
+     * @param image     the image which is written to the content
+     * @param resources the resources of the content
+     * @return true if the image is the placeholder
+     */
+    boolean addPlaceholderUsage(PdfImageXObject image, PdfResources resources) {
+        Set<PdfResources> usages = placeholderUsages.get(image);
+        if (usages == null) {
             return false;
         }
+        usages.add(resources);
+        return true;
+    }
 
-        Set<Rectangle> cacheRectsSet = new LinkedHashSet<>(cacheRects);
-        for (Rectangle keyArea : keyRects) {
-            boolean found = false;
-            for (Rectangle cacheArea : cacheRectsSet) {
-                if (keyArea.equalsWithEpsilon(cacheArea)) {
-                    found = true;
-                    cacheRectsSet.remove(cacheArea);
-                    break;
-                }
+    /**
+     * Stops tracking the placeholder, since it is being resolved.
+     *
+     * @param placeholder the placeholder XObject
+     * @return the resources the placeholder has been added to
+     */
+    Set<PdfResources> resolvePlaceholder(PdfImageXObject placeholder) {
+        Set<PdfResources> usages = placeholderUsages.remove(placeholder);
+        return usages != null ? usages : Collections.<PdfResources>emptySet();
+    }
+
+    /**
+     * Replaces the image cached for the filtering case, if the case is still cached.
+     *
+     * @param imageKey      the filtering case the image was put with
+     * @param filteredImage the new image
+     */
+    void replace(FilteredImageKey imageKey, PdfImageXObject filteredImage) {
+        if (imageKey.getCleanedAreas() == null || imageKey.getCleanedAreas().isEmpty()
+                || cache.get(imageKey.getCacheKey()) != imageKey) {
+            return;
+        }
+        imageKey.setFilteredImage(filteredImage);
+        updateSize(imageKey);
+    }
+
+    /**
+     * Retrieves the saved decision for the image which is drawn with the given ctm.
+     *
+     * @param imageIndRef the image reference
+     * @param imageCtm    the image ctm
+     * @param regionsKey  the normalized cleanup regions, see {@link PdfCleanUpFilter#getRegionsKey()}
+     * @return the saved decision, or null if the image shall be filtered
+     */
+    ImageDecision getDecision(PdfIndirectReference imageIndRef, Matrix imageCtm, long[] regionsKey) {
+        if (imageIndRef == null || imageCtm == null) {
+            return null;
+        }
+        return imageDecisions.get(new ImageDecisionKey(imageIndRef, imageCtm, regionsKey));
+    }
+
+    void putDecision(PdfIndirectReference imageIndRef, Matrix imageCtm, long[] regionsKey, ImageDecision decision) {
+        if (imageIndRef == null || imageCtm == null) {
+            return;
+        }
+        imageDecisions.put(new ImageDecisionKey(imageIndRef, imageCtm, regionsKey), decision);
+    }
+
+    /**
+     * Updates the accounted size of the cached filtered image, which data has been changed after
+     * it was put into the cache, e.g. the placeholder of the asynchronously filtered image.
+     *
+     * @param imageKey the filtering case the image was put with
+     */
+    void updateSize(FilteredImageKey imageKey) {
+        if (imageKey.getCleanedAreas() == null || imageKey.getCleanedAreas().isEmpty()
+                || cache.get(imageKey.getCacheKey()) != imageKey) {
+            return;
+        }
+        long newSize = getImageSize(imageKey.getFilteredImage());
+        size += newSize - imageKey.filteredImageSize;
+        imageKey.filteredImageSize = newSize;
+        evictLeastRecentlyUsed(imageKey);
+    }
+
+    /**
+     * Sets the maximal total size of the data of the cached filtered images. When it's exceeded, the least
+     * recently used images are evicted from the cache. The evicted images are still written to the document,
+     * the cache just stops holding them, so their data is released as soon as they are flushed.
+     *
+     * @param maxSize the maximal size in bytes, must not be negative
+     */
+    void setMaxSize(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Filtered images cache size must not be negative.");
+        }
+        this.maxSize = maxSize;
+        evictLeastRecentlyUsed(null);
+    }
+
+    long getMaxSize() {
+        return maxSize;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    long getEvictions() {
+        return evictions;
+    }
+
+    private void evictLeastRecentlyUsed(FilteredImageKey keptKey) {
+        Iterator<FilteredImageKey> iterator = cache.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            FilteredImageKey evictedKey = iterator.next();
+            if (evictedKey == keptKey) {
+                // the image which is just being used is never evicted, even if it alone exceeds the limit
+                continue;
             }
-            if (!found) {
-                break;
+            iterator.remove();
+            size -= evictedKey.filteredImageSize;
+            ++evictions;
+        }
+    }
+
+    private static long getImageSize(PdfImageXObject image) {
+        if (image == null) {
+            return 0;
+        }
+        PdfStream stream = image.getPdfObject();
+        if (stream.isFlushed()) {
+            return 0;
+        }
+        PdfOutputStream outputStream = stream.getOutputStream();
+        if (outputStream != null && outputStream.getOutputStream() instanceof ByteArrayOutputStream) {
+            return ((ByteArrayOutputStream) outputStream.getOutputStream()).size();
+        }
+        return Math.max(stream.getLength(), 0);
+    }
+
+    static long[] quantizeAreas(List<Rectangle> areas) {
+        long[][] quantizedAreas = new long[areas.size()][];
+        for (int i = 0; i < quantizedAreas.length; ++i) {
+            Rectangle area = areas.get(i);
+            quantizedAreas[i] = new long[] {quantize(area.getX()), quantize(area.getY()),
+                    quantize(area.getWidth()), quantize(area.getHeight())};
+        }
+        Arrays.sort(quantizedAreas, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                for (int i = 0; i < a.length; ++i) {
+                    if (a[i] != b[i]) {
+                        return a[i] < b[i] ? -1 : 1;
+                    }
+                }
+                return 0;
             }
+        });
+        long[] result = new long[quantizedAreas.length * 4];
+        for (int i = 0; i < quantizedAreas.length; ++i) {
+            System.arraycopy(quantizedAreas[i], 0, result, i * 4, 4);
         }
-        return cacheRectsSet.isEmpty();
+        return result;
+    }
+
+    private static long quantize(float coordinate) {
+        return Math.round((double) coordinate / AREA_QUANTIZATION_EPS);
     }
 
     static class FilteredImageKey {
         private PdfImageXObject image;
         private List<Rectangle> cleanedAreas;
         private PdfImageXObject filteredImage;
+        private FilteredImageCacheKey cacheKey;
+        private long filteredImageSize;
 
         FilteredImageKey(PdfImageXObject image, List<Rectangle> cleanedAreas) {
             this.image = image;
@@ -151,5 +370,93 @@ class FilteredImagesCache {
         void setFilteredImage(PdfImageXObject filteredImage) {
             this.filteredImage = filteredImage;
         }
+
+        FilteredImageCacheKey getCacheKey() {
+            if (cacheKey == null) {
+                cacheKey = new FilteredImageCacheKey(getImageIndRef(), quantizeAreas(cleanedAreas));
+            }
+            return cacheKey;
+        }
+    }
+
+    /**
+     * The outcome of the image occurrence cleanup which doesn't require the image filtering.
+     */
+    enum ImageDecision {
+        /**
+         * The image doesn't intersect the cleanup regions and is kept as is.
+         */
+        KEPT,
+        /**
+         * The image is completely covered by the cleanup regions and is removed.
+         */
+        REMOVED
+    }
+
+    private static final class ImageDecisionKey {
+        private final PdfIndirectReference imageIndRef;
+        private final Matrix imageCtm;
+        private final long[] regionsKey;
+        private final int hash;
+
+        ImageDecisionKey(PdfIndirectReference imageIndRef, Matrix imageCtm, long[] regionsKey) {
+            this.imageIndRef = imageIndRef;
+            this.imageCtm = imageCtm;
+            this.regionsKey = regionsKey;
+            this.hash = 31 * (31 * imageIndRef.hashCode() + imageCtm.hashCode()) + Arrays.hashCode(regionsKey);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ImageDecisionKey that = (ImageDecisionKey) o;
+            return hash == that.hash && imageIndRef.equals(that.imageIndRef) && imageCtm.equals(that.imageCtm)
+                    && Arrays.equals(regionsKey, that.regionsKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Normalized form of a {@link FilteredImageKey}: the image reference and the cleaned areas
+     * sorted and snapped to the quantization grid, so that equal filtering cases hash equally.
+     */
+    static final class FilteredImageCacheKey {
+        private final PdfIndirectReference imageIndRef;
+        private final long[] quantizedAreas;
+        private final int hash;
+
+        FilteredImageCacheKey(PdfIndirectReference imageIndRef, long[] quantizedAreas) {
+            this.imageIndRef = imageIndRef;
+            this.quantizedAreas = quantizedAreas;
+            this.hash = 31 * (imageIndRef == null ? 0 : imageIndRef.hashCode()) + Arrays.hashCode(quantizedAreas);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            FilteredImageCacheKey that = (FilteredImageCacheKey) o;
+            return hash == that.hash
+                    && (imageIndRef == null ? that.imageIndRef == null : imageIndRef.equals(that.imageIndRef))
+                    && Arrays.equals(quantizedAreas, that.quantizedAreas);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
 }
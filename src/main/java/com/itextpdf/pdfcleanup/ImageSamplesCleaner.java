@@ -0,0 +1,602 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.PdfString;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import com.itextpdf.pdfcleanup.util.CleanUpHelperUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cleans the areas of the Flate encoded (or not encoded at all) image XObjects by setting the samples of the cleaned
+ * pixels directly in the decoded samples stream. The cleaned pixels are painted white, like it is done by
+ * {@link com.itextpdf.pdfcleanup.util.CleanUpImageUtil}, but the image keeps its color space, bits per component and
+ * predictor, and is neither converted into the common image format nor processed with java imaging libraries.
+ * <p>
+ * The image is processed row by row: each row is inflated, unpredicted, cleaned, predicted and deflated again before
+ * the next one is read, so apart from the compressed data only a couple of rows are kept in memory regardless of
+ * the image size.
+ * <p>
+ * Supported color spaces are DeviceRGB, DeviceCMYK, CalRGB, ICCBased (with 3 or 4 components), Indexed
+ * (with one of these or DeviceGray as a base), Separation and DeviceN. Implemented according to ISO 32000-2,
+ * "8.9.3 Sample representation".
+ */
+final class ImageSamplesCleaner {
+
+    private static final int PNG_NONE_FILTER = 0;
+    private static final int PNG_SUB_FILTER = 1;
+    private static final int PNG_UP_FILTER = 2;
+    private static final int PNG_AVERAGE_FILTER = 3;
+    private static final int PNG_PAETH_FILTER = 4;
+
+    // masks of the bits which follow (and precede) the first n bits of a byte, the samples are packed high bit first
+    private static final int[] LEADING_BITS_MASKS = {0xFF, 0x7F, 0x3F, 0x1F, 0x0F, 0x07, 0x03, 0x01};
+    private static final int[] TRAILING_BITS_MASKS = {0x00, 0x80, 0xC0, 0xE0, 0xF0, 0xF8, 0xFC, 0xFE};
+
+    private ImageSamplesCleaner() {
+    }
+
+    /**
+     * Checks whether the samples of the image can be cleaned directly.
+     *
+     * @param image the image to be checked
+     * @return true if the image is supported by {@link #cleanSamples(PdfImageXObject, List)}
+     */
+    static boolean isSupported(PdfImageXObject image) {
+        PdfStream imageStream = image.getPdfObject();
+        if (Boolean.TRUE.equals(imageStream.getAsBool(PdfName.ImageMask)) || !isFlateOrNotEncoded(imageStream)) {
+            return false;
+        }
+        return getWhiteSamples(imageStream) != null;
+    }
+
+    /**
+     * Checks whether the samples of the single component image can be cleared by
+     * {@link #clearSamples(PdfImageXObject, List)}.
+     *
+     * @param image the monochrome or grayscale image (or image mask) to be checked
+     * @return true if the image is Flate encoded or not encoded and has supported bits per component
+     */
+    static boolean isSupportedForClearing(PdfImageXObject image) {
+        return isFlateOrNotEncoded(image.getPdfObject()) && getBitsPerComponent(image.getPdfObject()) > 0;
+    }
+
+    /**
+     * Creates the copy of the image with the cleaned areas painted white. The copy doesn't contain
+     * the /SMask, /Mask and /SMaskInData entries, they shall be processed separately.
+     *
+     * @param image            the image to be cleaned, shall be supported according to {@link #isSupported(PdfImageXObject)}
+     * @param areasToBeCleaned the areas to be cleaned in the (0,1)x(0,1) image space
+     * @return the stream of the cleaned image, or {@code null} if the image data doesn't correspond to
+     * the image dictionary, in which case the image shall be processed in some other way.
+     */
+    static PdfStream cleanSamples(PdfImageXObject image, List<Rectangle> areasToBeCleaned) {
+        PdfStream imageStream = image.getPdfObject();
+        return rewriteSamples(image, areasToBeCleaned, getWhiteSamples(imageStream), getBitsPerComponent(imageStream));
+    }
+
+    /**
+     * Creates the copy of the single component image with the samples of the cleaned areas set to zero, which is
+     * the same result as the one of the direct cleaning of the monochrome and grayscale images performed by
+     * {@link PdfCleanUpFilter}. The copy doesn't contain the /SMask, /Mask and /SMaskInData entries, they shall be
+     * processed separately.
+     *
+     * @param image            the image to be cleaned, shall be supported according to
+     *                         {@link #isSupportedForClearing(PdfImageXObject)}
+     * @param areasToBeCleaned the areas to be cleaned in the (0,1)x(0,1) image space
+     * @return the stream of the cleaned image, or {@code null} if the image data doesn't correspond to
+     * the image dictionary, in which case the image shall be processed in some other way.
+     */
+    static PdfStream clearSamples(PdfImageXObject image, List<Rectangle> areasToBeCleaned) {
+        return rewriteSamples(image, areasToBeCleaned, new int[] {0}, getBitsPerComponent(image.getPdfObject()));
+    }
+
+    private static PdfStream rewriteSamples(PdfImageXObject image, List<Rectangle> areasToBeCleaned,
+                                            int[] newSamples, int bpc) {
+        PdfStream imageStream = image.getPdfObject();
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        int components = newSamples.length;
+        int rowLength = (width * components * bpc + 7) / 8;
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+
+        // the predictor of the not encoded samples is only applied to the re-encoded ones
+        boolean predictedSamples = isFlateEncoded(imageStream);
+        PdfDictionary decodeParms = getFlateDecodeParms(imageStream);
+        int predictor = getIntValue(decodeParms, PdfName.Predictor, 1);
+        boolean pngPredictor = predictor >= 10;
+        boolean tiffPredictor = predictor == 2;
+        int colors = getIntValue(decodeParms, PdfName.Colors, 1);
+        int predictorBpc = getIntValue(decodeParms, PdfName.BitsPerComponent, 8);
+        if (tiffPredictor && predictorBpc != 8) {
+            if (predictedSamples) {
+                return null;
+            }
+            // only 8 bits per component are supported for the TIFF predictor, the samples are encoded without it
+            tiffPredictor = false;
+        }
+        if ((pngPredictor || tiffPredictor) && getPredictorRowLength(decodeParms) != rowLength) {
+            // the rows can't be processed independently of the predictor layout
+            return null;
+        }
+        int bytesPerPixel = Math.max(1, colors * predictorBpc / 8);
+
+        int[][] rectsToClean = getRectsToClean(areasToBeCleaned, width, height);
+        byte[] row = new byte[rowLength];
+        byte[] previousRow = new byte[rowLength];
+        byte[] cleanedRow = new byte[rowLength];
+        byte[] previousCleanedRow = new byte[rowLength];
+        byte[] encodedRow = new byte[rowLength + 1];
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (InputStream samples = openSamplesStream(imageStream);
+             DeflaterOutputStream zip = new DeflaterOutputStream(encoded)) {
+            for (int rowIndex = 0; rowIndex < height; ++rowIndex) {
+                int pngFilter = predictedSamples && pngPredictor ? samples.read() : PNG_NONE_FILTER;
+                if (pngFilter < 0 || !readFully(samples, row)) {
+                    return null;
+                }
+                if (predictedSamples && pngPredictor) {
+                    if (!decodePngRow(pngFilter, row, previousRow, bytesPerPixel)) {
+                        return null;
+                    }
+                } else if (predictedSamples && tiffPredictor) {
+                    for (int i = colors; i < rowLength; ++i) {
+                        row[i] = (byte) (row[i] + row[i - colors]);
+                    }
+                }
+
+                System.arraycopy(row, 0, cleanedRow, 0, rowLength);
+                for (int[] rect : rectsToClean) {
+                    if (rowIndex < rect[2] || rect[3] <= rowIndex) {
+                        continue;
+                    }
+                    if (components == 1) {
+                        fillSamples(cleanedRow, 0, rect[0], rect[1], bpc, newSamples[0]);
+                    } else {
+                        for (int column = rect[0]; column < rect[1]; ++column) {
+                            for (int component = 0; component < components; ++component) {
+                                setSample(cleanedRow, 0, column * components + component, bpc, newSamples[component]);
+                            }
+                        }
+                    }
+                }
+
+                if (pngPredictor) {
+                    // the PNG predictors allow to choose the filter for each row independently
+                    encodedRow[0] = PNG_UP_FILTER;
+                    for (int i = 0; i < rowLength; ++i) {
+                        encodedRow[i + 1] = (byte) (cleanedRow[i] - previousCleanedRow[i]);
+                    }
+                    zip.write(encodedRow, 0, rowLength + 1);
+                } else if (tiffPredictor) {
+                    for (int i = 0; i < rowLength; ++i) {
+                        encodedRow[i] = i < colors ? cleanedRow[i] : (byte) (cleanedRow[i] - cleanedRow[i - colors]);
+                    }
+                    zip.write(encodedRow, 0, rowLength);
+                } else {
+                    zip.write(cleanedRow);
+                }
+
+                byte[] swap = previousRow;
+                previousRow = row;
+                row = swap;
+                swap = previousCleanedRow;
+                previousCleanedRow = cleanedRow;
+                cleanedRow = swap;
+            }
+        } catch (IOException e) {
+            // corrupted compressed data
+            return null;
+        }
+
+        PdfStream cleanedStream = new PdfStream(encoded.toByteArray());
+        for (PdfName key : imageStream.keySet()) {
+            cleanedStream.put(key, imageStream.get(key, false));
+        }
+        cleanedStream.remove(PdfName.Length);
+        cleanedStream.remove(PdfName.DL);
+        cleanedStream.remove(PdfName.SMask);
+        cleanedStream.remove(PdfName.Mask);
+        cleanedStream.remove(PdfName.SMaskInData);
+        cleanedStream.put(PdfName.Filter, PdfName.FlateDecode);
+        if (pngPredictor || tiffPredictor) {
+            cleanedStream.put(PdfName.DecodeParms, decodeParms.clone());
+        } else {
+            cleanedStream.remove(PdfName.DecodeParms);
+        }
+        return cleanedStream;
+    }
+
+    /**
+     * @return the cleaned pixel rectangles clamped to the image, each one as {left, right, top, bottom}.
+     */
+    static int[][] getRectsToClean(List<Rectangle> areasToBeCleaned, int width, int height) {
+        List<int[]> rects = new ArrayList<>(areasToBeCleaned.size());
+        for (Rectangle area : areasToBeCleaned) {
+            int[] rect = CleanUpHelperUtil.getImageRectToClean(area, width, height);
+            int left = Math.max(rect[0], 0);
+            int right = Math.min(rect[0] + rect[2], width);
+            int top = Math.max(rect[1], 0);
+            int bottom = Math.min(rect[1] + rect[3], height);
+            if (left < right && top < bottom) {
+                rects.add(new int[] {left, right, top, bottom});
+            }
+        }
+        return rects.toArray(new int[rects.size()][]);
+    }
+
+    private static InputStream openSamplesStream(PdfStream imageStream) {
+        InputStream rawStream = new ByteArrayInputStream(imageStream.getBytes(false));
+        return isFlateEncoded(imageStream) ? new InflaterInputStream(rawStream) : rawStream;
+    }
+
+    private static boolean readFully(InputStream stream, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = stream.read(buffer, offset, buffer.length - offset);
+            if (read < 0) {
+                return false;
+            }
+            offset += read;
+        }
+        return true;
+    }
+
+    /**
+     * Reverts the PNG filter of the row in place.
+     *
+     * @return false if the filter type is unknown
+     */
+    private static boolean decodePngRow(int filter, byte[] row, byte[] previousRow, int bytesPerPixel) {
+        switch (filter) {
+            case PNG_NONE_FILTER:
+                break;
+            case PNG_SUB_FILTER:
+                for (int i = bytesPerPixel; i < row.length; ++i) {
+                    row[i] += row[i - bytesPerPixel];
+                }
+                break;
+            case PNG_UP_FILTER:
+                for (int i = 0; i < row.length; ++i) {
+                    row[i] += previousRow[i];
+                }
+                break;
+            case PNG_AVERAGE_FILTER:
+                for (int i = 0; i < row.length; ++i) {
+                    int left = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xFF : 0;
+                    row[i] += (left + (previousRow[i] & 0xFF)) / 2;
+                }
+                break;
+            case PNG_PAETH_FILTER:
+                for (int i = 0; i < row.length; ++i) {
+                    int left = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xFF : 0;
+                    int above = previousRow[i] & 0xFF;
+                    int aboveLeft = i >= bytesPerPixel ? previousRow[i - bytesPerPixel] & 0xFF : 0;
+                    int estimate = left + above - aboveLeft;
+                    int leftDistance = Math.abs(estimate - left);
+                    int aboveDistance = Math.abs(estimate - above);
+                    int aboveLeftDistance = Math.abs(estimate - aboveLeft);
+                    if (leftDistance <= aboveDistance && leftDistance <= aboveLeftDistance) {
+                        row[i] += left;
+                    } else if (aboveDistance <= aboveLeftDistance) {
+                        row[i] += above;
+                    } else {
+                        row[i] += aboveLeft;
+                    }
+                }
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isFlateOrNotEncoded(PdfStream imageStream) {
+        PdfObject filter = imageStream.get(PdfName.Filter);
+        if (filter instanceof PdfArray) {
+            PdfArray filterArray = (PdfArray) filter;
+            if (filterArray.size() > 1) {
+                return false;
+            }
+            filter = filterArray.isEmpty() ? null : filterArray.get(0);
+        }
+        return filter == null || PdfName.FlateDecode.equals(filter) || PdfName.Fl.equals(filter);
+    }
+
+    private static boolean isFlateEncoded(PdfStream imageStream) {
+        PdfObject filter = imageStream.get(PdfName.Filter);
+        return filter != null && !(filter instanceof PdfArray && ((PdfArray) filter).isEmpty());
+    }
+
+    private static PdfDictionary getFlateDecodeParms(PdfStream imageStream) {
+        PdfObject decodeParms = imageStream.get(PdfName.DecodeParms);
+        if (decodeParms instanceof PdfArray) {
+            decodeParms = ((PdfArray) decodeParms).isEmpty() ? null : ((PdfArray) decodeParms).get(0);
+        }
+        return decodeParms instanceof PdfDictionary ? (PdfDictionary) decodeParms : null;
+    }
+
+    /**
+     * @return the bits per component of the image, 1 for the image masks without the entry,
+     * or 0 if the value is not supported.
+     */
+    private static int getBitsPerComponent(PdfStream imageStream) {
+        PdfNumber bpcNumber = imageStream.getAsNumber(PdfName.BitsPerComponent);
+        if (bpcNumber == null) {
+            return Boolean.TRUE.equals(imageStream.getAsBool(PdfName.ImageMask)) ? 1 : 0;
+        }
+        int bpc = bpcNumber.intValue();
+        return bpc == 1 || bpc == 2 || bpc == 4 || bpc == 8 || bpc == 16 ? bpc : 0;
+    }
+
+    /**
+     * Gets the samples which represent white color in the image color space.
+     *
+     * @return the sample value for each color component, or {@code null} if the image color space,
+     * decode array or bits per component are not supported.
+     */
+    private static int[] getWhiteSamples(PdfStream imageStream) {
+        int bpc = getBitsPerComponent(imageStream);
+        if (bpc == 0) {
+            return null;
+        }
+        PdfObject colorSpace = imageStream.get(PdfName.ColorSpace);
+        PdfArray decode = imageStream.getAsArray(PdfName.Decode);
+        if (colorSpace instanceof PdfArray && PdfName.Indexed.equals(((PdfArray) colorSpace).getAsName(0))) {
+            if (decode != null || bpc > 8) {
+                return null;
+            }
+            int whiteIndex = getWhitestColorIndex((PdfArray) colorSpace);
+            return whiteIndex < 0 || whiteIndex >= 1 << bpc ? null : new int[] {whiteIndex};
+        }
+        int components = getNumberOfComponents(colorSpace);
+        if (components == 0 || decode != null && decode.size() != 2 * components) {
+            return null;
+        }
+        boolean additive = isAdditive(colorSpace, components);
+        int maxSample = (1 << bpc) - 1;
+        int[] whiteSamples = new int[components];
+        for (int i = 0; i < components; ++i) {
+            boolean whiteIsMaxValue = additive;
+            if (decode != null) {
+                float dMin = decode.getAsNumber(2 * i).floatValue();
+                float dMax = decode.getAsNumber(2 * i + 1).floatValue();
+                if (dMin == 1 && dMax == 0) {
+                    whiteIsMaxValue = !whiteIsMaxValue;
+                } else if (dMin != 0 || dMax != 1) {
+                    return null;
+                }
+            }
+            whiteSamples[i] = whiteIsMaxValue ? maxSample : 0;
+        }
+        return whiteSamples;
+    }
+
+    /**
+     * @return the number of the color components for the supported non-indexed color spaces, 0 otherwise.
+     */
+    private static int getNumberOfComponents(PdfObject colorSpace) {
+        if (PdfName.DeviceRGB.equals(colorSpace)) {
+            return 3;
+        } else if (PdfName.DeviceCMYK.equals(colorSpace)) {
+            return 4;
+        } else if (colorSpace instanceof PdfArray && !((PdfArray) colorSpace).isEmpty()) {
+            PdfArray csArray = (PdfArray) colorSpace;
+            PdfName family = csArray.getAsName(0);
+            if (PdfName.CalRGB.equals(family)) {
+                return 3;
+            } else if (PdfName.ICCBased.equals(family)) {
+                PdfStream iccStream = csArray.getAsStream(1);
+                PdfNumber n = iccStream == null ? null : iccStream.getAsNumber(PdfName.N);
+                return n != null && (n.intValue() == 3 || n.intValue() == 4) ? n.intValue() : 0;
+            } else if (PdfName.Separation.equals(family)) {
+                return 1;
+            } else if (PdfName.DeviceN.equals(family)) {
+                PdfArray colorants = csArray.getAsArray(1);
+                return colorants == null ? 0 : colorants.size();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * RGB color spaces are additive: the maximal value is white. CMYK and special color spaces specify the amount
+     * of the colorants: zero is white (no colorant is applied).
+     */
+    private static boolean isAdditive(PdfObject colorSpace, int components) {
+        if (colorSpace instanceof PdfArray) {
+            PdfName family = ((PdfArray) colorSpace).getAsName(0);
+            if (PdfName.Separation.equals(family) || PdfName.DeviceN.equals(family)) {
+                return false;
+            }
+        }
+        return components != 4;
+    }
+
+    /**
+     * @return the index of the palette color which is the closest one to white, or -1 if the palette is not supported.
+     */
+    private static int getWhitestColorIndex(PdfArray indexedColorSpace) {
+        if (indexedColorSpace.size() != 4) {
+            return -1;
+        }
+        PdfObject baseColorSpace = indexedColorSpace.get(1);
+        int components = PdfName.DeviceGray.equals(baseColorSpace) ? 1 : getNumberOfComponents(baseColorSpace);
+        if (components != 1 && components != 3 && components != 4
+                || baseColorSpace instanceof PdfArray && !PdfName.ICCBased.equals(((PdfArray) baseColorSpace).getAsName(0))
+                && !PdfName.CalRGB.equals(((PdfArray) baseColorSpace).getAsName(0))) {
+            return -1;
+        }
+        PdfNumber hival = indexedColorSpace.getAsNumber(2);
+        PdfObject lookup = indexedColorSpace.get(3);
+        byte[] palette;
+        if (lookup instanceof PdfString) {
+            palette = ((PdfString) lookup).getValueBytes();
+        } else if (lookup instanceof PdfStream) {
+            palette = ((PdfStream) lookup).getBytes();
+        } else {
+            return -1;
+        }
+        if (hival == null || palette == null) {
+            return -1;
+        }
+        boolean additive = components != 4;
+        int numberOfColors = Math.min(hival.intValue() + 1, palette.length / components);
+        int whitestIndex = -1;
+        int maxWhiteness = Integer.MIN_VALUE;
+        for (int i = 0; i < numberOfColors; ++i) {
+            int sum = 0;
+            for (int j = 0; j < components; ++j) {
+                sum += palette[i * components + j] & 0xFF;
+            }
+            int whiteness = additive ? sum : -sum;
+            if (whiteness > maxWhiteness) {
+                maxWhiteness = whiteness;
+                whitestIndex = i;
+            }
+        }
+        return whitestIndex;
+    }
+
+    private static void setSample(byte[] samples, int rowOffset, int sampleIndex, int bpc, int value) {
+        if (bpc == 8) {
+            samples[rowOffset + sampleIndex] = (byte) value;
+        } else if (bpc == 16) {
+            samples[rowOffset + 2 * sampleIndex] = (byte) (value >> 8);
+            samples[rowOffset + 2 * sampleIndex + 1] = (byte) value;
+        } else {
+            int bitPosition = sampleIndex * bpc;
+            int byteIndex = rowOffset + bitPosition / 8;
+            int shift = 8 - bpc - bitPosition % 8;
+            int mask = ((1 << bpc) - 1) << shift;
+            samples[byteIndex] = (byte) ((samples[byteIndex] & ~mask) | (value << shift & mask));
+        }
+    }
+
+    /**
+     * Sets the same value to the span of the single component samples of the row. The whole bytes inside of the span
+     * are filled at once, only the bytes at the span edges, which are shared with the samples outside of it,
+     * are masked.
+     *
+     * @param samples     the samples of the image
+     * @param rowOffset   the offset of the row in the samples array
+     * @param fromSample  the index of the first sample of the span in the row, inclusive
+     * @param toSample    the index of the last sample of the span in the row, exclusive
+     * @param bpc         the bits per component of the samples, 1, 2, 4, 8 or 16
+     * @param value       the value of the samples
+     */
+    static void fillSamples(byte[] samples, int rowOffset, int fromSample, int toSample, int bpc, int value) {
+        if (fromSample >= toSample) {
+            return;
+        }
+        if (bpc == 8) {
+            Arrays.fill(samples, rowOffset + fromSample, rowOffset + toSample, (byte) value);
+        } else if (bpc == 16) {
+            if ((byte) (value >> 8) == (byte) value) {
+                Arrays.fill(samples, rowOffset + 2 * fromSample, rowOffset + 2 * toSample, (byte) value);
+            } else {
+                for (int i = fromSample; i < toSample; ++i) {
+                    samples[rowOffset + 2 * i] = (byte) (value >> 8);
+                    samples[rowOffset + 2 * i + 1] = (byte) value;
+                }
+            }
+        } else {
+            int sample = value & ((1 << bpc) - 1);
+            int pattern = 0;
+            for (int i = 0; i < 8; i += bpc) {
+                pattern = pattern << bpc | sample;
+            }
+            int fromBit = fromSample * bpc;
+            int toBit = toSample * bpc;
+            int fromByte = rowOffset + fromBit / 8;
+            int toByte = rowOffset + toBit / 8;
+            if (fromByte == toByte) {
+                setMaskedBits(samples, fromByte, LEADING_BITS_MASKS[fromBit % 8] & TRAILING_BITS_MASKS[toBit % 8],
+                        pattern);
+                return;
+            }
+            if (fromBit % 8 != 0) {
+                setMaskedBits(samples, fromByte, LEADING_BITS_MASKS[fromBit % 8], pattern);
+                ++fromByte;
+            }
+            Arrays.fill(samples, fromByte, toByte, (byte) pattern);
+            if (toBit % 8 != 0) {
+                setMaskedBits(samples, toByte, TRAILING_BITS_MASKS[toBit % 8], pattern);
+            }
+        }
+    }
+
+    private static void setMaskedBits(byte[] samples, int byteIndex, int mask, int pattern) {
+        samples[byteIndex] = (byte) ((samples[byteIndex] & ~mask) | (pattern & mask));
+    }
+
+    private static int getIntValue(PdfDictionary dictionary, PdfName key, int defaultValue) {
+        PdfNumber number = dictionary == null ? null : dictionary.getAsNumber(key);
+        return number == null ? defaultValue : number.intValue();
+    }
+
+    private static int getPredictorRowLength(PdfDictionary decodeParms) {
+        int colors = getIntValue(decodeParms, PdfName.Colors, 1);
+        int bpc = getIntValue(decodeParms, PdfName.BitsPerComponent, 8);
+        int columns = getIntValue(decodeParms, PdfName.Columns, 1);
+        return (colors * bpc * columns + 7) / 8;
+    }
+}
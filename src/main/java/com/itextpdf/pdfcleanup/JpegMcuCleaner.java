@@ -0,0 +1,719 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import com.itextpdf.pdfcleanup.util.CleanUpHelperUtil;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cleans the areas of the DCT encoded image XObjects in the DCT domain. The entropy coded data of the baseline
+ * (or extended sequential Huffman) JPEG is decoded into the quantized DCT coefficients, the coefficient blocks of
+ * the MCUs (minimum coded units) covering the cleaned areas are replaced with the flat white blocks and all the blocks
+ * are entropy coded back with the original Huffman tables. The quantization tables and the coefficients of the other
+ * blocks are kept as is, so the image is not recompressed and its quality and size are preserved.
+ * <p>
+ * The cleaned areas are rounded outward to the MCU boundaries. Only grayscale and three component (YCbCr or RGB)
+ * JPEGs with a single scan are supported, for other images {@link #cleanMcus(PdfImageXObject, List)} returns
+ * {@code null}. Implemented according to ITU-T T.81.
+ */
+final class JpegMcuCleaner {
+
+    private static final int SOF0 = 0xC0;
+    private static final int SOF1 = 0xC1;
+    private static final int DHT = 0xC4;
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOS = 0xDA;
+    private static final int DQT = 0xDB;
+    private static final int DRI = 0xDD;
+    private static final int APP14 = 0xEE;
+    private static final int RST0 = 0xD0;
+
+    /**
+     * The not quantized DC coefficient of the white block: 8 * (255 - 128).
+     */
+    private static final int WHITE_DC = 1016;
+
+    private static final int EOB = 0x00;
+    private static final int ZRL = 0xF0;
+
+    private JpegMcuCleaner() {
+    }
+
+    /**
+     * Checks whether the image is a DCT encoded image which might be cleaned in the DCT domain. The JPEG data itself
+     * is checked only when the image is cleaned.
+     *
+     * @param image the image to be checked
+     * @return true if the image dictionary is supported by {@link #cleanMcus(PdfImageXObject, List)}
+     */
+    static boolean isSupported(PdfImageXObject image) {
+        PdfStream imageStream = image.getPdfObject();
+        if (Boolean.TRUE.equals(imageStream.getAsBool(PdfName.ImageMask)) || imageStream.containsKey(PdfName.Decode)) {
+            return false;
+        }
+        PdfObject filter = imageStream.get(PdfName.Filter);
+        if (filter instanceof PdfArray) {
+            filter = ((PdfArray) filter).size() == 1 ? ((PdfArray) filter).get(0) : null;
+        }
+        if (!PdfName.DCTDecode.equals(filter) && !PdfName.DCT.equals(filter)) {
+            return false;
+        }
+        int components = getNumberOfComponents(imageStream.get(PdfName.ColorSpace));
+        return components == 1 || components == 3;
+    }
+
+    /**
+     * Creates the copy of the image with the MCUs covering the cleaned areas painted white. The copy doesn't contain
+     * the /SMask, /Mask and /SMaskInData entries, they shall be processed separately.
+     *
+     * @param image            the image to be cleaned, shall be supported according to {@link #isSupported(PdfImageXObject)}
+     * @param areasToBeCleaned the areas to be cleaned in the (0,1)x(0,1) image space
+     * @return the stream of the cleaned image, or {@code null} if the JPEG data is not supported or corrupted,
+     * in which case the image shall be processed in some other way.
+     */
+    static PdfStream cleanMcus(PdfImageXObject image, List<Rectangle> areasToBeCleaned) {
+        PdfStream imageStream = image.getPdfObject();
+        byte[] jpeg = imageStream.getBytes(false);
+        byte[] cleanedJpeg;
+        try {
+            cleanedJpeg = new JpegCoefficientsRewriter(jpeg, getColorTransform(imageStream))
+                    .rewrite(areasToBeCleaned, getNumberOfComponents(imageStream.get(PdfName.ColorSpace)));
+        } catch (UnsupportedJpegException e) {
+            return null;
+        } catch (IndexOutOfBoundsException e) {
+            // corrupted or truncated JPEG data
+            return null;
+        }
+        if (cleanedJpeg == null) {
+            return null;
+        }
+
+        PdfStream cleanedStream = new PdfStream(cleanedJpeg);
+        for (PdfName key : imageStream.keySet()) {
+            cleanedStream.put(key, imageStream.get(key, false));
+        }
+        cleanedStream.remove(PdfName.Length);
+        cleanedStream.remove(PdfName.SMask);
+        cleanedStream.remove(PdfName.Mask);
+        cleanedStream.remove(PdfName.SMaskInData);
+        return cleanedStream;
+    }
+
+    private static int getNumberOfComponents(PdfObject colorSpace) {
+        if (PdfName.DeviceGray.equals(colorSpace)) {
+            return 1;
+        } else if (PdfName.DeviceRGB.equals(colorSpace)) {
+            return 3;
+        } else if (colorSpace instanceof PdfArray && !((PdfArray) colorSpace).isEmpty()) {
+            PdfArray csArray = (PdfArray) colorSpace;
+            PdfName family = csArray.getAsName(0);
+            if (PdfName.CalGray.equals(family)) {
+                return 1;
+            } else if (PdfName.CalRGB.equals(family)) {
+                return 3;
+            } else if (PdfName.ICCBased.equals(family)) {
+                PdfStream iccStream = csArray.getAsStream(1);
+                PdfNumber n = iccStream == null ? null : iccStream.getAsNumber(PdfName.N);
+                return n == null ? 0 : n.intValue();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the /ColorTransform value of the decode parameters, or -1 if it's not specified.
+     */
+    private static int getColorTransform(PdfStream imageStream) {
+        PdfObject decodeParms = imageStream.get(PdfName.DecodeParms);
+        if (decodeParms instanceof PdfArray) {
+            decodeParms = ((PdfArray) decodeParms).isEmpty() ? null : ((PdfArray) decodeParms).get(0);
+        }
+        if (decodeParms instanceof PdfDictionary) {
+            PdfNumber colorTransform = ((PdfDictionary) decodeParms).getAsNumber(PdfName.ColorTransform);
+            if (colorTransform != null) {
+                return colorTransform.intValue();
+            }
+        }
+        return -1;
+    }
+
+    private static final class UnsupportedJpegException extends Exception {
+        UnsupportedJpegException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class FrameComponent {
+        int id;
+        int horizontalSampling;
+        int verticalSampling;
+        int quantizationTable;
+        HuffmanTable dcTable;
+        HuffmanTable acTable;
+        int whiteDc;
+    }
+
+    /**
+     * Canonical Huffman table which is used both for decoding and encoding, see ITU-T T.81, Annex C and F.2.2.3.
+     */
+    private static final class HuffmanTable {
+        private final int[] maxCode = new int[17];
+        private final int[] valueOffset = new int[17];
+        private final int[] symbols;
+        private final int[] symbolCodes = new int[256];
+        private final int[] symbolCodeLengths = new int[256];
+
+        HuffmanTable(int[] counts, int[] symbols) {
+            this.symbols = symbols;
+            int code = 0;
+            int k = 0;
+            for (int length = 1; length <= 16; ++length) {
+                valueOffset[length] = k - code;
+                for (int i = 0; i < counts[length - 1]; ++i) {
+                    symbolCodes[symbols[k]] = code;
+                    symbolCodeLengths[symbols[k]] = length;
+                    ++k;
+                    ++code;
+                }
+                maxCode[length] = counts[length - 1] > 0 ? code - 1 : -1;
+                code <<= 1;
+            }
+        }
+
+        int decode(EntropyReader reader) throws UnsupportedJpegException {
+            int code = 0;
+            for (int length = 1; length <= 16; ++length) {
+                code = (code << 1) | reader.readBit();
+                if (code <= maxCode[length]) {
+                    return symbols[code + valueOffset[length]];
+                }
+            }
+            throw new UnsupportedJpegException();
+        }
+
+        void encode(EntropyWriter writer, int symbol) throws UnsupportedJpegException {
+            if (symbolCodeLengths[symbol] == 0) {
+                // the symbol is not present in the (optimized) table, the block can't be encoded
+                throw new UnsupportedJpegException();
+            }
+            writer.writeBits(symbolCodes[symbol], symbolCodeLengths[symbol]);
+        }
+    }
+
+    private static final class EntropyReader {
+        private final byte[] data;
+        private int position;
+        private int bitBuffer;
+        private int bitCount;
+        private boolean markerReached;
+
+        EntropyReader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        int readBit() {
+            if (bitCount == 0) {
+                fillBuffer();
+            }
+            --bitCount;
+            return (bitBuffer >> bitCount) & 1;
+        }
+
+        int readBits(int count) {
+            int bits = 0;
+            for (int i = 0; i < count; ++i) {
+                bits = (bits << 1) | readBit();
+            }
+            return bits;
+        }
+
+        /**
+         * Skips the restart marker, which is expected at the current position.
+         */
+        void restart() throws UnsupportedJpegException {
+            bitCount = 0;
+            markerReached = false;
+            if ((data[position] & 0xFF) != 0xFF || ((data[position + 1] & 0xFF) & 0xF8) != RST0) {
+                throw new UnsupportedJpegException();
+            }
+            position += 2;
+        }
+
+        /**
+         * @return the position of the marker following the entropy coded data.
+         */
+        int getEndPosition() {
+            int end = position;
+            while (end + 1 < data.length && !((data[end] & 0xFF) == 0xFF && (data[end + 1] & 0xFF) != 0
+                    && (data[end + 1] & 0xFF) != 0xFF)) {
+                ++end;
+            }
+            return end;
+        }
+
+        private void fillBuffer() {
+            int value = 0;
+            if (!markerReached) {
+                value = data[position] & 0xFF;
+                if (value == 0xFF) {
+                    int next = data[position + 1] & 0xFF;
+                    if (next == 0) {
+                        position += 2;
+                    } else {
+                        // the decoder shall supply zeros after the marker is reached
+                        markerReached = true;
+                        value = 0;
+                    }
+                } else {
+                    ++position;
+                }
+            }
+            bitBuffer = value;
+            bitCount = 8;
+        }
+    }
+
+    private static final class EntropyWriter {
+        private final ByteArrayOutputStream output;
+        private int bitBuffer;
+        private int bitCount;
+
+        EntropyWriter(ByteArrayOutputStream output) {
+            this.output = output;
+        }
+
+        void writeBits(int bits, int count) {
+            for (int i = count - 1; i >= 0; --i) {
+                bitBuffer = (bitBuffer << 1) | ((bits >> i) & 1);
+                if (++bitCount == 8) {
+                    writeByte();
+                }
+            }
+        }
+
+        /**
+         * Pads the last byte with one bits.
+         */
+        void flush() {
+            while (bitCount != 0) {
+                writeBits(1, 1);
+            }
+        }
+
+        private void writeByte() {
+            output.write(bitBuffer);
+            if (bitBuffer == 0xFF) {
+                output.write(0);
+            }
+            bitBuffer = 0;
+            bitCount = 0;
+        }
+    }
+
+    private static final class JpegCoefficientsRewriter {
+        private final byte[] jpeg;
+        private final int pdfColorTransform;
+        private final int[][] quantizationTables = new int[4][];
+        private final HuffmanTable[] dcTables = new HuffmanTable[4];
+        private final HuffmanTable[] acTables = new HuffmanTable[4];
+        private int adobeColorTransform = -1;
+        private int restartInterval;
+        private int width;
+        private int height;
+        private FrameComponent[] frameComponents;
+
+        JpegCoefficientsRewriter(byte[] jpeg, int pdfColorTransform) {
+            this.jpeg = jpeg;
+            this.pdfColorTransform = pdfColorTransform;
+        }
+
+        byte[] rewrite(List<Rectangle> areasToBeCleaned, int expectedComponents) throws UnsupportedJpegException {
+            if ((jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != SOI) {
+                throw new UnsupportedJpegException();
+            }
+            int position = 2;
+            while (true) {
+                if ((jpeg[position] & 0xFF) != 0xFF) {
+                    throw new UnsupportedJpegException();
+                }
+                int marker = jpeg[position + 1] & 0xFF;
+                if (marker == 0xFF) {
+                    // fill byte
+                    ++position;
+                    continue;
+                }
+                int segmentStart = position + 4;
+                int segmentLength = readUnsignedShort(position + 2);
+                switch (marker) {
+                    case SOF0:
+                    case SOF1:
+                        readFrameHeader(segmentStart);
+                        break;
+                    case DHT:
+                        readHuffmanTables(segmentStart, position + 2 + segmentLength);
+                        break;
+                    case DQT:
+                        readQuantizationTables(segmentStart, position + 2 + segmentLength);
+                        break;
+                    case DRI:
+                        restartInterval = readUnsignedShort(segmentStart);
+                        break;
+                    case APP14:
+                        if (segmentLength >= 14 && jpeg[segmentStart] == 'A' && jpeg[segmentStart + 1] == 'd'
+                                && jpeg[segmentStart + 2] == 'o' && jpeg[segmentStart + 3] == 'b'
+                                && jpeg[segmentStart + 4] == 'e') {
+                            adobeColorTransform = jpeg[segmentStart + 11] & 0xFF;
+                        }
+                        break;
+                    case SOS:
+                        if (frameComponents == null || frameComponents.length != expectedComponents) {
+                            throw new UnsupportedJpegException();
+                        }
+                        return rewriteScan(position + 2 + segmentLength, segmentStart, areasToBeCleaned);
+                    default:
+                        if (marker >= 0xC2 && marker <= 0xCF && marker != DHT && marker != 0xC8 && marker != 0xCC) {
+                            // progressive, lossless or arithmetic coded JPEG
+                            throw new UnsupportedJpegException();
+                        }
+                        if (marker == EOI || marker >= RST0 && marker < RST0 + 8) {
+                            throw new UnsupportedJpegException();
+                        }
+                        break;
+                }
+                position += 2 + segmentLength;
+            }
+        }
+
+        private void readFrameHeader(int offset) throws UnsupportedJpegException {
+            int precision = jpeg[offset] & 0xFF;
+            height = readUnsignedShort(offset + 1);
+            width = readUnsignedShort(offset + 3);
+            int components = jpeg[offset + 5] & 0xFF;
+            if (precision != 8 || height == 0 || width == 0 || components != 1 && components != 3) {
+                throw new UnsupportedJpegException();
+            }
+            frameComponents = new FrameComponent[components];
+            for (int i = 0; i < components; ++i) {
+                FrameComponent component = new FrameComponent();
+                int componentOffset = offset + 6 + 3 * i;
+                component.id = jpeg[componentOffset] & 0xFF;
+                component.horizontalSampling = (jpeg[componentOffset + 1] & 0xFF) >> 4;
+                component.verticalSampling = jpeg[componentOffset + 1] & 0x0F;
+                component.quantizationTable = jpeg[componentOffset + 2] & 0x0F;
+                if (component.horizontalSampling < 1 || component.horizontalSampling > 4
+                        || component.verticalSampling < 1 || component.verticalSampling > 4
+                        || component.quantizationTable > 3) {
+                    throw new UnsupportedJpegException();
+                }
+                frameComponents[i] = component;
+            }
+        }
+
+        private void readHuffmanTables(int offset, int end) throws UnsupportedJpegException {
+            while (offset < end) {
+                int tableClass = (jpeg[offset] & 0xFF) >> 4;
+                int tableId = jpeg[offset] & 0x0F;
+                if (tableClass > 1 || tableId > 3) {
+                    throw new UnsupportedJpegException();
+                }
+                int[] counts = new int[16];
+                int symbolsCount = 0;
+                for (int i = 0; i < 16; ++i) {
+                    counts[i] = jpeg[offset + 1 + i] & 0xFF;
+                    symbolsCount += counts[i];
+                }
+                int[] symbols = new int[symbolsCount];
+                for (int i = 0; i < symbolsCount; ++i) {
+                    symbols[i] = jpeg[offset + 17 + i] & 0xFF;
+                }
+                HuffmanTable table = new HuffmanTable(counts, symbols);
+                if (tableClass == 0) {
+                    dcTables[tableId] = table;
+                } else {
+                    acTables[tableId] = table;
+                }
+                offset += 17 + symbolsCount;
+            }
+        }
+
+        private void readQuantizationTables(int offset, int end) {
+            while (offset < end) {
+                int precision = (jpeg[offset] & 0xFF) >> 4;
+                int tableId = jpeg[offset] & 0x0F;
+                int[] table = new int[64];
+                for (int i = 0; i < 64; ++i) {
+                    table[i] = precision == 0 ? jpeg[offset + 1 + i] & 0xFF : readUnsignedShort(offset + 1 + 2 * i);
+                }
+                quantizationTables[tableId & 3] = table;
+                offset += 1 + (precision == 0 ? 64 : 128);
+            }
+        }
+
+        private byte[] rewriteScan(int dataStart, int headerOffset, List<Rectangle> areasToBeCleaned)
+                throws UnsupportedJpegException {
+            int scanComponentsCount = jpeg[headerOffset] & 0xFF;
+            if (scanComponentsCount != frameComponents.length) {
+                // non-interleaved multi-scan image
+                throw new UnsupportedJpegException();
+            }
+            FrameComponent[] scanComponents = new FrameComponent[scanComponentsCount];
+            for (int i = 0; i < scanComponentsCount; ++i) {
+                int componentId = jpeg[headerOffset + 1 + 2 * i] & 0xFF;
+                int tables = jpeg[headerOffset + 2 + 2 * i] & 0xFF;
+                FrameComponent component = null;
+                for (FrameComponent frameComponent : frameComponents) {
+                    if (frameComponent.id == componentId) {
+                        component = frameComponent;
+                    }
+                }
+                if (component == null || dcTables[tables >> 4 & 3] == null || acTables[tables & 3] == null
+                        || quantizationTables[component.quantizationTable] == null) {
+                    throw new UnsupportedJpegException();
+                }
+                component.dcTable = dcTables[tables >> 4 & 3];
+                component.acTable = acTables[tables & 3];
+                scanComponents[i] = component;
+            }
+            int spectralStart = jpeg[headerOffset + 1 + 2 * scanComponentsCount] & 0xFF;
+            int spectralEnd = jpeg[headerOffset + 2 + 2 * scanComponentsCount] & 0xFF;
+            int approximation = jpeg[headerOffset + 3 + 2 * scanComponentsCount] & 0xFF;
+            if (spectralStart != 0 || spectralEnd != 63 || approximation != 0) {
+                throw new UnsupportedJpegException();
+            }
+            initWhiteDc();
+
+            int maxHorizontalSampling = 1;
+            int maxVerticalSampling = 1;
+            for (FrameComponent component : frameComponents) {
+                maxHorizontalSampling = Math.max(maxHorizontalSampling, component.horizontalSampling);
+                maxVerticalSampling = Math.max(maxVerticalSampling, component.verticalSampling);
+            }
+            if (scanComponentsCount == 1) {
+                // non-interleaved scan consists of the single blocks
+                FrameComponent component = scanComponents[0];
+                maxHorizontalSampling = maxHorizontalSampling / component.horizontalSampling;
+                maxVerticalSampling = maxVerticalSampling / component.verticalSampling;
+                component.horizontalSampling = 1;
+                component.verticalSampling = 1;
+            }
+            int mcuWidth = 8 * maxHorizontalSampling;
+            int mcuHeight = 8 * maxVerticalSampling;
+            int mcusPerLine = (width + mcuWidth - 1) / mcuWidth;
+            int mcuLines = (height + mcuHeight - 1) / mcuHeight;
+            boolean[] cleanedMcus = getCleanedMcus(areasToBeCleaned, mcuWidth, mcuHeight, mcusPerLine, mcuLines);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(jpeg.length);
+            output.write(jpeg, 0, dataStart);
+            EntropyReader reader = new EntropyReader(jpeg, dataStart);
+            EntropyWriter writer = new EntropyWriter(output);
+            int[] decodedPredictions = new int[scanComponentsCount];
+            int[] encodedPredictions = new int[scanComponentsCount];
+            int[] coefficients = new int[64];
+            int mcusCount = mcusPerLine * mcuLines;
+            for (int mcu = 0; mcu < mcusCount; ++mcu) {
+                if (restartInterval > 0 && mcu > 0 && mcu % restartInterval == 0) {
+                    reader.restart();
+                    writer.flush();
+                    output.write(0xFF);
+                    output.write(RST0 + (mcu / restartInterval - 1) % 8);
+                    for (int i = 0; i < scanComponentsCount; ++i) {
+                        decodedPredictions[i] = 0;
+                        encodedPredictions[i] = 0;
+                    }
+                }
+                for (int i = 0; i < scanComponentsCount; ++i) {
+                    FrameComponent component = scanComponents[i];
+                    int blocks = component.horizontalSampling * component.verticalSampling;
+                    for (int block = 0; block < blocks; ++block) {
+                        decodedPredictions[i] = decodeBlock(reader, component, decodedPredictions[i], coefficients);
+                        if (cleanedMcus[mcu]) {
+                            Arrays.fill(coefficients, 0);
+                            coefficients[0] = component.whiteDc;
+                        }
+                        encodedPredictions[i] = encodeBlock(writer, component, encodedPredictions[i], coefficients);
+                    }
+                }
+            }
+            writer.flush();
+
+            int scanEnd = reader.getEndPosition();
+            if (scanEnd + 1 >= jpeg.length || (jpeg[scanEnd + 1] & 0xFF) != EOI) {
+                // other scans or DNL segment follow the scan
+                throw new UnsupportedJpegException();
+            }
+            output.write(jpeg, scanEnd, jpeg.length - scanEnd);
+            return output.toByteArray();
+        }
+
+        private void initWhiteDc() {
+            boolean yCbCr = frameComponents.length == 3 && (pdfColorTransform >= 0 ? pdfColorTransform != 0
+                    : adobeColorTransform != 0);
+            for (int i = 0; i < frameComponents.length; ++i) {
+                FrameComponent component = frameComponents[i];
+                if (yCbCr && i > 0) {
+                    // neutral chrominance
+                    component.whiteDc = 0;
+                } else {
+                    int dcQuantization = quantizationTables[component.quantizationTable][0];
+                    // rounding up guarantees that the dequantized value is not less than white
+                    component.whiteDc = (WHITE_DC + dcQuantization - 1) / dcQuantization;
+                }
+            }
+        }
+
+        private boolean[] getCleanedMcus(List<Rectangle> areasToBeCleaned, int mcuWidth, int mcuHeight,
+                                         int mcusPerLine, int mcuLines) {
+            boolean[] cleanedMcus = new boolean[mcusPerLine * mcuLines];
+            for (Rectangle area : areasToBeCleaned) {
+                int[] rect = CleanUpHelperUtil.getImageRectToClean(area, width, height);
+                int left = Math.max(rect[0], 0);
+                int top = Math.max(rect[1], 0);
+                int right = Math.min(rect[0] + rect[2], width);
+                int bottom = Math.min(rect[1] + rect[3], height);
+                if (left >= right || top >= bottom) {
+                    continue;
+                }
+                for (int mcuLine = top / mcuHeight; mcuLine <= (bottom - 1) / mcuHeight; ++mcuLine) {
+                    for (int mcuColumn = left / mcuWidth; mcuColumn <= (right - 1) / mcuWidth; ++mcuColumn) {
+                        cleanedMcus[mcuLine * mcusPerLine + mcuColumn] = true;
+                    }
+                }
+            }
+            return cleanedMcus;
+        }
+
+        private static int decodeBlock(EntropyReader reader, FrameComponent component, int prediction,
+                                       int[] coefficients) throws UnsupportedJpegException {
+            Arrays.fill(coefficients, 0);
+            int category = component.dcTable.decode(reader);
+            if (category > 11) {
+                throw new UnsupportedJpegException();
+            }
+            int dc = prediction + extend(reader.readBits(category), category);
+            coefficients[0] = dc;
+            for (int k = 1; k < 64; ) {
+                int symbol = component.acTable.decode(reader);
+                int run = symbol >> 4;
+                int size = symbol & 0x0F;
+                if (size == 0) {
+                    if (run != 15) {
+                        break;
+                    }
+                    k += 16;
+                    continue;
+                }
+                k += run;
+                if (k > 63) {
+                    throw new UnsupportedJpegException();
+                }
+                coefficients[k++] = extend(reader.readBits(size), size);
+            }
+            return dc;
+        }
+
+        private static int encodeBlock(EntropyWriter writer, FrameComponent component, int prediction,
+                                       int[] coefficients) throws UnsupportedJpegException {
+            int difference = coefficients[0] - prediction;
+            int category = getCategory(difference);
+            component.dcTable.encode(writer, category);
+            writer.writeBits(getAdditionalBits(difference, category), category);
+            int run = 0;
+            for (int k = 1; k < 64; ++k) {
+                int coefficient = coefficients[k];
+                if (coefficient == 0) {
+                    ++run;
+                    continue;
+                }
+                while (run > 15) {
+                    component.acTable.encode(writer, ZRL);
+                    run -= 16;
+                }
+                int size = getCategory(coefficient);
+                component.acTable.encode(writer, (run << 4) | size);
+                writer.writeBits(getAdditionalBits(coefficient, size), size);
+                run = 0;
+            }
+            if (run > 0) {
+                component.acTable.encode(writer, EOB);
+            }
+            return coefficients[0];
+        }
+
+        private static int extend(int bits, int size) {
+            if (size == 0) {
+                return 0;
+            }
+            return bits < 1 << (size - 1) ? bits - (1 << size) + 1 : bits;
+        }
+
+        private static int getCategory(int value) {
+            int absValue = Math.abs(value);
+            int category = 0;
+            while (absValue > 0) {
+                ++category;
+                absValue >>= 1;
+            }
+            return category;
+        }
+
+        private static int getAdditionalBits(int value, int size) {
+            return (value < 0 ? value - 1 : value) & ((1 << size) - 1);
+        }
+
+        private int readUnsignedShort(int offset) {
+            return ((jpeg[offset] & 0xFF) << 8) | (jpeg[offset + 1] & 0xFF);
+        }
+    }
+}
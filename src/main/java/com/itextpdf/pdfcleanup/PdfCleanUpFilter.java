@@ -48,6 +48,7 @@ import com.itextpdf.io.util.MessageFormatUtil;
 import com.itextpdf.kernel.PdfException;
 import com.itextpdf.kernel.geom.AffineTransform;
 import com.itextpdf.kernel.geom.BezierCurve;
+import com.itextpdf.kernel.geom.IShape;
 import com.itextpdf.kernel.geom.Line;
 import com.itextpdf.kernel.geom.LineSegment;
 import com.itextpdf.kernel.geom.Matrix;
@@ -62,6 +63,7 @@ import com.itextpdf.kernel.pdf.PdfNumber;
 import com.itextpdf.kernel.pdf.PdfObject;
 import com.itextpdf.kernel.pdf.PdfStream;
 import com.itextpdf.kernel.pdf.PdfTextArray;
+import com.itextpdf.kernel.pdf.canvas.CanvasGraphicsState;
 import com.itextpdf.kernel.pdf.canvas.PdfCanvasConstants;
 import com.itextpdf.kernel.pdf.canvas.parser.clipper.ClipperBridge;
 import com.itextpdf.kernel.pdf.canvas.parser.clipper.ClipperOffset;
@@ -80,17 +82,23 @@ import com.itextpdf.kernel.pdf.canvas.parser.data.PathRenderInfo;
 import com.itextpdf.kernel.pdf.canvas.parser.data.TextRenderInfo;
 import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.itextpdf.pdfcleanup.util.CleanUpHelperUtil;
 import com.itextpdf.pdfcleanup.util.CleanUpImageUtil;
+import org.apache.commons.imaging.ImageInfo;
+import org.apache.commons.imaging.ImageReadException;
+import org.apache.commons.imaging.Imaging;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -112,20 +120,83 @@ public class PdfCleanUpFilter {
      */
     private static final double CIRCLE_APPROXIMATION_CONST = 0.55191502449;
 
-    private static final float EPS = 1e-4f;
+    private static final float EPS = (float) CleanUpProperties.DEFAULT_EPS;
+
+    /**
+     * The offset of the additional point which is used to represent a point-like area as a polyline
+     * for the intersection check.
+     */
+    private static final double DEGENERATE_POINT_OFFSET = 0.01;
+
+    private static final int MAX_CURVE_SUBDIVISION_DEPTH = 16;
 
     private static final Set<PdfName> NOT_SUPPORTED_FILTERS_FOR_DIRECT_CLEANUP = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
             PdfName.JBIG2Decode, PdfName.DCTDecode, PdfName.JPXDecode))
     );
 
+    /**
+     * The number of distinct transformation matrices for which the regions transformed into the path space are kept.
+     * Consecutive paths usually share the same ctm, so the small number is enough.
+     */
+    private static final int TRANSFORMED_REGIONS_CACHE_SIZE = 16;
+
     private List<Rectangle> regions;
+    private CleanUpRegionsIndex regionsIndex;
+
+    private double clipperScale;
+    private double arcTolerance;
+    private double curveFlatteningTolerance;
+    private float eps;
+    private boolean dctDomainImageCleanUp;
+    private long[] regionsKey;
+    /**
+     * The factor applied to the line art coordinates before they are passed to {@link ClipperBridge}, so that
+     * the coordinates in {@link IClipper} are multiplied by {@link CleanUpProperties#getClipperScale()} in total.
+     */
+    private double clipperScaleFactor;
 
+    private Map<Matrix, TransformedRegions> transformedRegionsCache = new LinkedHashMap<Matrix, TransformedRegions>(
+            TRANSFORMED_REGIONS_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Matrix, TransformedRegions> eldest) {
+            return size() > TRANSFORMED_REGIONS_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Creates the filter for the given regions. The precision of the geometric calculations is defined by
+     * the deprecated {@link PdfCleanUpTool#floatMultiplier} and {@link PdfCleanUpTool#arcTolerance} static fields.
+     *
+     * @param regions the regions to be cleaned up
+     */
     public PdfCleanUpFilter(List<Rectangle> regions) {
+        this(regions, new CleanUpProperties(PdfCleanUpTool.floatMultiplier, PdfCleanUpTool.arcTolerance,
+                CleanUpProperties.DEFAULT_CURVE_FLATTENING_TOLERANCE, CleanUpProperties.DEFAULT_EPS));
+    }
+
+    /**
+     * Creates the filter for the given regions.
+     *
+     * @param regions    the regions to be cleaned up
+     * @param properties the precision of the geometric calculations and the image clean up mode
+     */
+    public PdfCleanUpFilter(List<Rectangle> regions, CleanUpProperties properties) {
         this.regions = regions;
+        this.regionsIndex = new CleanUpRegionsIndex(regions);
+        this.clipperScale = properties.getClipperScale();
+        this.arcTolerance = properties.getArcTolerance();
+        this.curveFlatteningTolerance = properties.getCurveFlatteningTolerance();
+        this.eps = (float) properties.getEps();
+        this.dctDomainImageCleanUp = properties.isDctDomainImageCleanUp();
+        this.clipperScaleFactor = clipperScale / ClipperBridge.floatMultiplier;
     }
 
     /**
      * Filter a TextRenderInfo object.
+     * <p>
+     * The kept glyphs and the shifts replacing removed glyphs are collected into a {@link PdfTextArray},
+     * which coalesces adjacent strings into a single string run and adjacent numbers into a single number.
+     * If no glyph is removed, the text is reported as not modified and the original string is returned.
      *
      * @param text the TextRenderInfo to be filtered
      * @return a {@link FilterResult} object with filtered text.
@@ -133,29 +204,98 @@ public class PdfCleanUpFilter {
      */
     @Deprecated
     public FilterResult<PdfArray> filterText(TextRenderInfo text) {
-        PdfTextArray textArray = new PdfTextArray();
-
         if (isTextNotToBeCleaned(text)) {
             return new FilterResult<>(false, new PdfArray(text.getPdfString()));
         }
 
+        TextGlyphsLayout glyphsLayout = TextGlyphsLayout.create(text);
+        if (glyphsLayout != null) {
+            return filterTextGlyphs(text, glyphsLayout);
+        }
+        return filterTextCharacters(text);
+    }
+
+    /**
+     * Filters the text character by character via {@link TextRenderInfo#getCharacterRenderInfos()}. It is used
+     * when the glyphs layout of the text cannot be calculated. The text shall be affected by the cleanup regions
+     * as a whole, though its characters might be not.
+     */
+    FilterResult<PdfArray> filterTextCharacters(TextRenderInfo text) {
+        PdfTextArray textArray = new PdfTextArray();
+        boolean modified = false;
         for (TextRenderInfo ri : text.getCharacterRenderInfos()) {
             if (isTextNotToBeCleaned(ri)) {
                 textArray.add(ri.getPdfString());
             } else {
+                modified = true;
                 textArray.add(new PdfNumber(
                         -ri.getUnscaledWidth() * 1000f / (text.getFontSize() * text.getHorizontalScaling() / 100)
                 ));
             }
         }
 
+        if (!modified) {
+            return new FilterResult<>(false, new PdfArray(text.getPdfString()));
+        }
         return new FilterResult<PdfArray>(true, textArray);
     }
 
+    /**
+     * Checks whether the DCT encoded images are cleaned in the DCT domain,
+     * see {@link CleanUpProperties#withDctDomainImageCleanUp(boolean)}.
+     */
+    boolean isDctDomainImageCleanUp() {
+        return dctDomainImageCleanUp;
+    }
+
+    /**
+     * Gets the cleanup regions sorted and quantized the same way as the cleaned areas of the images,
+     * see {@link FilteredImagesCache}. The regions are the same for the whole lifetime of the filter.
+     */
+    long[] getRegionsKey() {
+        if (regionsKey == null) {
+            regionsKey = regions != null ? FilteredImagesCache.quantizeAreas(regions) : new long[0];
+        }
+        return regionsKey;
+    }
+
     FilteredImagesCache.FilteredImageKey createFilteredImageKey(PdfImageXObject image, Matrix imageCtm, PdfDocument document) {
         return FilteredImagesCache.createFilteredImageKey(image, getImageAreasToBeCleaned(imageCtm), document);
     }
 
+    /**
+     * Creates the key for the {@link FilteredFormXObjectsCache}: the cleanup regions are transformed into the space
+     * of the form XObject painted with the ctm of the given graphics state, the rest of the state is the one
+     * inherited by the form XObject content.
+     *
+     * @param formStream the form XObject stream
+     * @param formGs     the graphics state at the moment of the form XObject painting
+     * @return the key or {@code null} if the form XObject cleaning result cannot be cached, i.e. if the form stream
+     * is not an indirect object or the ctm is not invertible.
+     */
+    FilteredFormXObjectsCache.FilteredFormXObjectKey createFilteredFormXObjectKey(PdfStream formStream,
+            CanvasGraphicsState formGs) {
+        Matrix formCtm = formGs.getCtm();
+        if (formStream.getIndirectReference() == null) {
+            return null;
+        }
+        AffineTransform inverseCtm;
+        try {
+            inverseCtm = new AffineTransform(formCtm.get(Matrix.I11), formCtm.get(Matrix.I12),
+                    formCtm.get(Matrix.I21), formCtm.get(Matrix.I22),
+                    formCtm.get(Matrix.I31), formCtm.get(Matrix.I32)).createInverse();
+        } catch (NoninvertibleTransformException e) {
+            return null;
+        }
+        List<Point[]> areasInFormSpace = new ArrayList<>(regions.size());
+        for (Rectangle region : regions) {
+            Point[] vertices = getRectangleVertices(region);
+            inverseCtm.transform(vertices, 0, vertices, 0, vertices.length);
+            areasInFormSpace.add(vertices);
+        }
+        return new FilteredFormXObjectsCache.FilteredFormXObjectKey(formStream, areasInFormSpace, formGs);
+    }
+
     /**
      * Filter an ImageRenderInfo object.
      *
@@ -168,18 +308,68 @@ public class PdfCleanUpFilter {
         return filterImage(image.getImage(), getImageAreasToBeCleaned(image.getImageCtm()));
     }
 
-    FilterResult<ImageData> filterImage(FilteredImagesCache.FilteredImageKey imageKey) {
+    ImageFilterResult filterImage(FilteredImagesCache.FilteredImageKey imageKey) {
         return filterImage(imageKey.getImageXObject(), imageKey.getCleanedAreas());
     }
 
-    private FilterResult<ImageData> filterImage(PdfImageXObject image, List<Rectangle> imageAreasToBeCleaned) {
+    /**
+     * Filters the image by painting the samples of the cleaned areas directly in the decoded image stream, without
+     * converting the image into the common image format. Flate encoded images are processed row by row without
+     * decoding the whole image at once. CCITT fax encoded bilevel images are encoded back with CCITT Group 4
+     * compression. If {@link CleanUpProperties#isDctDomainImageCleanUp()} is set, DCT encoded images
+     * are cleaned in the DCT domain, the cleaned areas of such images are rounded outward to the MCU boundaries.
+     * The resultant image keeps the original image dictionary entries except for the masks, which shall be filtered
+     * separately.
+     *
+     * @param imageKey the key of the image to be filtered
+     * @return an {@link FilterResult} object with the filtered image, or {@code null} if the image samples
+     * can't be cleaned directly and {@link #filterImage(FilteredImagesCache.FilteredImageKey)} shall be used.
+     */
+    FilterResult<PdfImageXObject> filterImageSamples(FilteredImagesCache.FilteredImageKey imageKey) {
+        PdfImageXObject image = imageKey.getImageXObject();
+        boolean directCleanupSupported = imageSupportsDirectCleanup(image);
+        boolean ccittSupported = directCleanupSupported && CcittImageCleaner.isSupported(image);
+        boolean clearingSupported = directCleanupSupported && !ccittSupported
+                && ImageSamplesCleaner.isSupportedForClearing(image);
+        boolean samplesSupported = !directCleanupSupported && ImageSamplesCleaner.isSupported(image);
+        boolean mcusSupported = !directCleanupSupported && !samplesSupported && dctDomainImageCleanUp
+                && JpegMcuCleaner.isSupported(image);
+        if (!ccittSupported && !clearingSupported && !samplesSupported && !mcusSupported) {
+            return null;
+        }
+        List<Rectangle> imageAreasToBeCleaned = imageKey.getCleanedAreas();
         if (imageAreasToBeCleaned == null) {
             return new FilterResult<>(true, null);
         } else if (imageAreasToBeCleaned.isEmpty()) {
             return new FilterResult<>(false, null);
         }
+        PdfStream cleanedImageStream;
+        if (ccittSupported) {
+            cleanedImageStream = CcittImageCleaner.encodeSamples(image,
+                    processImageDirectly(image, imageAreasToBeCleaned));
+        } else if (clearingSupported) {
+            cleanedImageStream = ImageSamplesCleaner.clearSamples(image, imageAreasToBeCleaned);
+        } else if (samplesSupported) {
+            cleanedImageStream = ImageSamplesCleaner.cleanSamples(image, imageAreasToBeCleaned);
+        } else {
+            cleanedImageStream = JpegMcuCleaner.cleanMcus(image, imageAreasToBeCleaned);
+        }
+        if (cleanedImageStream == null) {
+            return null;
+        }
+        return new FilterResult<>(true, new PdfImageXObject(cleanedImageStream));
+    }
+
+    private ImageFilterResult filterImage(PdfImageXObject image, List<Rectangle> imageAreasToBeCleaned) {
+        if (imageAreasToBeCleaned == null) {
+            return new ImageFilterResult(true, null, null, null);
+        } else if (imageAreasToBeCleaned.isEmpty()) {
+            return new ImageFilterResult(false, null, null, null);
+        }
 
         byte[] filteredImageBytes;
+        ImageInfo originalImageInfo;
+        ImageInfo filteredImageInfo;
         if (imageSupportsDirectCleanup(image)) {
             byte[] imageStreamBytes = processImageDirectly(image, imageAreasToBeCleaned);
             // Creating imageXObject clone in order to avoid modification of the original XObject in the document.
@@ -192,11 +382,30 @@ public class PdfCleanUpFilter {
             PdfImageXObject tempImageClone = new PdfImageXObject((PdfStream) image.getPdfObject().clone());
             tempImageClone.getPdfObject().setData(imageStreamBytes);
             filteredImageBytes = tempImageClone.getImageBytes();
+            // only the samples are changed, so the image in the common format has the same properties
+            filteredImageInfo = getImageInfo(filteredImageBytes);
+            originalImageInfo = filteredImageInfo;
         } else {
             byte[] originalImageBytes = image.getImageBytes();
             filteredImageBytes = CleanUpImageUtil.cleanUpImage(originalImageBytes, imageAreasToBeCleaned);
+            originalImageInfo = getImageInfo(originalImageBytes);
+            filteredImageInfo = getImageInfo(filteredImageBytes);
+        }
+        return new ImageFilterResult(true, ImageDataFactory.create(filteredImageBytes), originalImageInfo,
+                filteredImageInfo);
+    }
+
+    /**
+     * Reads the properties of the image in the common image format from its header.
+     *
+     * @return the image info, or {@code null} if it can't be read
+     */
+    private static ImageInfo getImageInfo(byte[] imageBytes) {
+        try {
+            return Imaging.getImageInfo(imageBytes);
+        } catch (ImageReadException | IOException e) {
+            return null;
         }
-        return new FilterResult<>(true, ImageDataFactory.create(filteredImageBytes));
     }
 
     /**
@@ -244,20 +453,15 @@ public class PdfCleanUpFilter {
         path.closeAllSubpaths();
 
         IClipper clipper = new DefaultClipper();
-        ClipperBridge.addPath(clipper, path, PolyType.SUBJECT);
+        ClipperBridge.addPath(clipper, toClipperSpace(path), PolyType.SUBJECT);
 
-        for (Rectangle rectangle : regions) {
-            try {
-                Point[] transfRectVertices = transformPoints(ctm, true, getRectangleVertices(rectangle));
-                ClipperBridge.addRectToClipper(clipper, transfRectVertices, PolyType.CLIP);
-            } catch (PdfException e) {
-                if (!(e.getCause() instanceof NoninvertibleTransformException)) {
-                    throw e;
-                } else {
-                    logger.error(MessageFormatUtil.format(CleanUpLogMessageConstant.FAILED_TO_PROCESS_A_TRANSFORMATION_MATRIX));
-                }
+        TransformedRegions transformedRegions = getTransformedRegions(ctm);
+        if (transformedRegions.getClipPolygons() != null) {
+            clipper.addPaths(transformedRegions.getClipPolygons(), PolyType.CLIP, true);
+        } else {
+            for (int i = 0; i < regions.size(); ++i) {
+                logger.error(MessageFormatUtil.format(CleanUpLogMessageConstant.FAILED_TO_PROCESS_A_TRANSFORMATION_MATRIX));
             }
-
         }
 
         PolyFillType fillType = PolyFillType.NON_ZERO;
@@ -269,7 +473,89 @@ public class PdfCleanUpFilter {
         PolyTree resultTree = new PolyTree();
         clipper.execute(ClipType.DIFFERENCE, resultTree, fillType, PolyFillType.NON_ZERO);
 
-        return ClipperBridge.convertToPath(resultTree);
+        return fromClipperSpace(ClipperBridge.convertToPath(resultTree));
+    }
+
+    /**
+     * Defines the position of the painted path relatively to the cleanup regions, based on the path bounding box.
+     * The check is conservative: the bounding box of all the path points (including Bezier control points) is
+     * transformed into the regions space and, for the stroked path, expanded by the maximal possible extent of
+     * the stroke outline. This allows to avoid expensive path clipping for the paths which are far from the regions
+     * or completely covered by one of them.
+     *
+     * @param path   the PathRenderInfo object to be checked
+     * @param stroke true if the path is stroked
+     * @return {@link PathPosition#OUTSIDE} if the path is guaranteed to be left intact by filtering,
+     * {@link PathPosition#INSIDE} if the path is guaranteed to be removed completely and
+     * {@link PathPosition#STRADDLING} otherwise.
+     */
+    PathPosition classifyPath(PathRenderInfo path, boolean stroke) {
+        Matrix ctm = path.getCtm();
+        if (Math.abs(ctm.get(Matrix.I11) * ctm.get(Matrix.I22) - ctm.get(Matrix.I12) * ctm.get(Matrix.I21)) < 1e-10) {
+            // paths with noninvertible ctm are processed (and reported) by the clipping methods
+            return PathPosition.STRADDLING;
+        }
+        Rectangle pathBBox = getPathBoundingBox(path.getPath(), ctm);
+        if (pathBBox == null) {
+            // empty paths are left to the generic processing
+            return PathPosition.STRADDLING;
+        }
+        if (stroke) {
+            // the Frobenius norm is not less than the largest stretch of the ctm, also for the sheared ones
+            double scale = Math.sqrt(ctm.get(Matrix.I11) * ctm.get(Matrix.I11) + ctm.get(Matrix.I12) * ctm.get(Matrix.I12)
+                    + ctm.get(Matrix.I21) * ctm.get(Matrix.I21) + ctm.get(Matrix.I22) * ctm.get(Matrix.I22));
+            // miter joins might stick out up to miterLimit * lineWidth / 2, square caps - up to sqrt(2) * lineWidth / 2
+            float strokeExtent = (float) (Math.max(path.getLineWidth(), 1) / 2 * Math.max(path.getMiterLimit(), 2) * scale);
+            pathBBox = new Rectangle(pathBBox.getX() - strokeExtent, pathBBox.getY() - strokeExtent,
+                    pathBBox.getWidth() + 2 * strokeExtent, pathBBox.getHeight() + 2 * strokeExtent);
+        }
+        List<Rectangle> candidates = regionsIndex.getCandidates(pathBBox);
+        boolean intersects = false;
+        for (Rectangle region : candidates) {
+            if (region.contains(pathBBox)) {
+                return PathPosition.INSIDE;
+            }
+            intersects = intersects || intersects(pathBBox, region);
+        }
+        return intersects ? PathPosition.STRADDLING : PathPosition.OUTSIDE;
+    }
+
+    /**
+     * Checks whether the form XObject might be affected by filtering. The content of the form XObject is clipped
+     * by its bounding box, so if the bounding box transformed with the form matrix and the ctm doesn't intersect
+     * any of the regions, the form XObject is guaranteed to be left intact.
+     *
+     * @param formStream the form XObject stream to be checked
+     * @param formCtm    the ctm at the moment of the form XObject painting
+     * @return false if the form XObject is guaranteed to be left intact by filtering, true otherwise.
+     */
+    boolean isFormXObjectAffected(PdfStream formStream, Matrix formCtm) {
+        PdfArray bBox = formStream.getAsArray(PdfName.BBox);
+        if (bBox == null || bBox.size() != 4) {
+            return true;
+        }
+        Matrix formToUserSpace = formCtm;
+        PdfArray formMatrix = formStream.getAsArray(PdfName.Matrix);
+        if (formMatrix != null && formMatrix.size() == 6) {
+            float[] m = formMatrix.toFloatArray();
+            formToUserSpace = new Matrix(m[0], m[1], m[2], m[3], m[4], m[5]).multiply(formCtm);
+        }
+        Point[] transformedBBox = transformPoints(formToUserSpace, false, getRectangleVertices(bBox.toRectangle()));
+        return intersectsAnyRegion(Rectangle.calculateBBox(Arrays.asList(transformedBBox)));
+    }
+
+    private boolean intersectsAnyRegion(Rectangle rect) {
+        for (Rectangle region : regionsIndex.getCandidates(rect)) {
+            if (intersects(rect, region)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean intersects(Rectangle rect, Rectangle region) {
+        return rect.getLeft() <= region.getRight() && region.getLeft() <= rect.getRight()
+                && rect.getBottom() <= region.getTop() && region.getBottom() <= rect.getTop();
     }
 
     /**
@@ -280,12 +566,12 @@ public class PdfCleanUpFilter {
     private boolean isTextNotToBeCleaned(TextRenderInfo renderInfo) {
         Point[] textRect = getTextRectangle(renderInfo);
 
-        for (Rectangle region : regions) {
+        for (Rectangle region : regionsIndex.getCandidates(textRect)) {
             Point[] redactRect = getRectangleVertices(region);
 
             // Text rectangle might be rotated, hence we are using precise polygon intersection checker and not
             // just intersecting two rectangles that are parallel to the x and y coordinate vectors
-            if (checkIfRectanglesIntersect(textRect, redactRect)) {
+            if (checkIfRectanglesIntersect(textRect, redactRect, eps)) {
                 return false;
             }
         }
@@ -293,6 +579,57 @@ public class PdfCleanUpFilter {
         return true;
     }
 
+    /**
+     * Filters the text glyph by glyph only within the range of glyphs which might be affected by the cleanup regions.
+     * The glyphs before and after this range are kept as whole string runs.
+     */
+    private FilterResult<PdfArray> filterTextGlyphs(TextRenderInfo text, TextGlyphsLayout glyphsLayout) {
+        List<Point[]> candidateRegions = new ArrayList<>();
+        int firstAffected = glyphsLayout.getNumberOfGlyphs();
+        int lastAffected = -1;
+        for (Rectangle region : regionsIndex.getCandidates(getTextRectangle(text))) {
+            Point[] regionVertices = getRectangleVertices(region);
+            int[] range = glyphsLayout.getAffectedGlyphsRange(regionVertices, DEGENERATE_POINT_OFFSET + eps);
+            if (range[0] <= range[1]) {
+                candidateRegions.add(regionVertices);
+                firstAffected = Math.min(firstAffected, range[0]);
+                lastAffected = Math.max(lastAffected, range[1]);
+            }
+        }
+
+        PdfTextArray textArray = new PdfTextArray();
+        boolean modified = false;
+        if (firstAffected > 0) {
+            textArray.add(glyphsLayout.getGlyphsRun(0, Math.min(firstAffected, glyphsLayout.getNumberOfGlyphs())));
+        }
+        for (int i = firstAffected; i <= lastAffected; ++i) {
+            if (isGlyphNotToBeCleaned(glyphsLayout.getGlyphRectangle(i), candidateRegions, eps)) {
+                textArray.add(glyphsLayout.getGlyph(i));
+            } else {
+                modified = true;
+                textArray.add(new PdfNumber(
+                        -glyphsLayout.getGlyphAdvance(i) * 1000f / (text.getFontSize() * text.getHorizontalScaling() / 100)
+                ));
+            }
+        }
+        if (!modified) {
+            return new FilterResult<>(false, new PdfArray(text.getPdfString()));
+        }
+        if (lastAffected + 1 < glyphsLayout.getNumberOfGlyphs()) {
+            textArray.add(glyphsLayout.getGlyphsRun(lastAffected + 1, glyphsLayout.getNumberOfGlyphs()));
+        }
+        return new FilterResult<PdfArray>(true, textArray);
+    }
+
+    private static boolean isGlyphNotToBeCleaned(Point[] glyphRect, List<Point[]> regionsVertices, float eps) {
+        for (Point[] regionVertices : regionsVertices) {
+            if (checkIfRectanglesIntersect(glyphRect, regionVertices, eps)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Calculates intersection of the image and the render filter region in the coordinate system relative to the image.
      *
@@ -307,7 +644,7 @@ public class PdfCleanUpFilter {
 
         List<Rectangle> areasToBeCleaned = new ArrayList<>();
 
-        for (Rectangle region : regions) {
+        for (Rectangle region : regionsIndex.getCandidates(imageRect)) {
             Rectangle intersectionRect = getRectanglesIntersection(imageRect, region);
 
             if (intersectionRect != null) {
@@ -335,12 +672,16 @@ public class PdfCleanUpFilter {
             }
         }
 
-        ClipperOffset offset = new ClipperOffset(miterLimit, PdfCleanUpTool.arcTolerance * PdfCleanUpTool.floatMultiplier);
-        List<Subpath> degenerateSubpaths = ClipperBridge.addPath(offset, path, joinType, endType);
+        ClipperOffset offset = new ClipperOffset(miterLimit, arcTolerance * clipperScale);
+        com.itextpdf.kernel.geom.Path clipperSpacePath = toClipperSpace(path);
+        List<Subpath> degenerateSubpaths = ClipperBridge.addPath(offset, clipperSpacePath, joinType, endType);
+        if (clipperSpacePath != path) {
+            degenerateSubpaths = getSourceSubpaths(degenerateSubpaths, clipperSpacePath, path);
+        }
 
         PolyTree resultTree = new PolyTree();
-        offset.execute(resultTree, lineWidth * PdfCleanUpTool.floatMultiplier / 2);
-        com.itextpdf.kernel.geom.Path offsetedPath = ClipperBridge.convertToPath(resultTree);
+        offset.execute(resultTree, lineWidth * clipperScale / 2);
+        com.itextpdf.kernel.geom.Path offsetedPath = fromClipperSpace(ClipperBridge.convertToPath(resultTree));
 
         if (degenerateSubpaths.size() > 0) {
             if (endType == EndType.OPEN_ROUND) {
@@ -356,7 +697,128 @@ public class PdfCleanUpFilter {
     }
 
     /**
-     * Return true if two given rectangles (specified by an array of points) intersect.
+     * Prepares the line art path to be passed to {@link ClipperBridge}: flattens the curves with the configured
+     * tolerance and scales the coordinates by {@link #clipperScaleFactor}. The subpaths of the resultant path
+     * correspond to the subpaths of the source path one to one.
+     *
+     * @return the same path if the default precision is used, the new path otherwise.
+     */
+    private com.itextpdf.kernel.geom.Path toClipperSpace(com.itextpdf.kernel.geom.Path path) {
+        if (curveFlatteningTolerance == 0 && clipperScaleFactor == 1) {
+            return path;
+        }
+        return transformPath(path, clipperScaleFactor, true);
+    }
+
+    private com.itextpdf.kernel.geom.Path fromClipperSpace(com.itextpdf.kernel.geom.Path path) {
+        if (clipperScaleFactor == 1) {
+            return path;
+        }
+        return transformPath(path, 1 / clipperScaleFactor, false);
+    }
+
+    private com.itextpdf.kernel.geom.Path transformPath(com.itextpdf.kernel.geom.Path path, double scale,
+                                                        boolean flattenCurves) {
+        com.itextpdf.kernel.geom.Path transformed = new com.itextpdf.kernel.geom.Path();
+        for (Subpath subpath : path.getSubpaths()) {
+            Subpath transformedSubpath = new Subpath();
+            if (subpath.getStartPoint() != null) {
+                transformedSubpath.setStartPoint(scalePoint(subpath.getStartPoint(), scale));
+            }
+            for (IShape segment : subpath.getSegments()) {
+                List<Point> points = segment.getBasePoints();
+                if (segment instanceof BezierCurve && flattenCurves) {
+                    List<Point> flattened = flattenCurve((BezierCurve) segment);
+                    for (int i = 1; i < flattened.size(); ++i) {
+                        transformedSubpath.addSegment(new Line(scalePoint(flattened.get(i - 1), scale),
+                                scalePoint(flattened.get(i), scale)));
+                    }
+                } else if (segment instanceof BezierCurve) {
+                    transformedSubpath.addSegment(new BezierCurve(Arrays.asList(scalePoint(points.get(0), scale),
+                            scalePoint(points.get(1), scale), scalePoint(points.get(2), scale),
+                            scalePoint(points.get(3), scale))));
+                } else {
+                    transformedSubpath.addSegment(new Line(scalePoint(points.get(0), scale),
+                            scalePoint(points.get(1), scale)));
+                }
+            }
+            transformedSubpath.setClosed(subpath.isClosed());
+            transformed.addSubpath(transformedSubpath);
+        }
+        return transformed;
+    }
+
+    private static Point scalePoint(Point point, double scale) {
+        return new Point(point.getX() * scale, point.getY() * scale);
+    }
+
+    /**
+     * Approximates the curve by the polyline. If the curve flattening tolerance is not set,
+     * the default approximation of {@link BezierCurve} is used.
+     */
+    private List<Point> flattenCurve(BezierCurve curve) {
+        if (curveFlatteningTolerance == 0) {
+            return curve.getPiecewiseLinearApproximation();
+        }
+        List<Point> controlPoints = curve.getBasePoints();
+        List<Point> points = new ArrayList<>();
+        points.add(controlPoints.get(0));
+        flattenCurve(controlPoints.get(0), controlPoints.get(1), controlPoints.get(2), controlPoints.get(3),
+                points, 0);
+        return points;
+    }
+
+    private void flattenCurve(Point p0, Point p1, Point p2, Point p3, List<Point> points, int depth) {
+        if (depth >= MAX_CURVE_SUBDIVISION_DEPTH || (getDistanceToChord(p1, p0, p3) <= curveFlatteningTolerance
+                && getDistanceToChord(p2, p0, p3) <= curveFlatteningTolerance)) {
+            points.add(p3);
+            return;
+        }
+        // de Casteljau subdivision in the middle of the curve
+        Point p01 = getMiddlePoint(p0, p1);
+        Point p12 = getMiddlePoint(p1, p2);
+        Point p23 = getMiddlePoint(p2, p3);
+        Point p012 = getMiddlePoint(p01, p12);
+        Point p123 = getMiddlePoint(p12, p23);
+        Point middle = getMiddlePoint(p012, p123);
+        flattenCurve(p0, p01, p012, middle, points, depth + 1);
+        flattenCurve(middle, p123, p23, p3, points, depth + 1);
+    }
+
+    private static double getDistanceToChord(Point point, Point chordStart, Point chordEnd) {
+        double dx = chordEnd.getX() - chordStart.getX();
+        double dy = chordEnd.getY() - chordStart.getY();
+        double chordLength = Math.hypot(dx, dy);
+        if (chordLength == 0) {
+            return point.distance(chordStart);
+        }
+        return Math.abs(dx * (chordStart.getY() - point.getY()) - dy * (chordStart.getX() - point.getX())) / chordLength;
+    }
+
+    private static Point getMiddlePoint(Point first, Point second) {
+        return new Point((first.getX() + second.getX()) / 2, (first.getY() + second.getY()) / 2);
+    }
+
+    /**
+     * Maps the subpaths of the path, which was built by {@link #toClipperSpace}, to the source path subpaths.
+     */
+    private static List<Subpath> getSourceSubpaths(List<Subpath> subpaths, com.itextpdf.kernel.geom.Path transformedPath,
+                                                   com.itextpdf.kernel.geom.Path sourcePath) {
+        List<Subpath> transformedSubpaths = transformedPath.getSubpaths();
+        List<Subpath> sourceSubpaths = sourcePath.getSubpaths();
+        List<Subpath> result = new ArrayList<>(subpaths.size());
+        int index = 0;
+        for (Subpath subpath : subpaths) {
+            while (transformedSubpaths.get(index) != subpath) {
+                ++index;
+            }
+            result.add(sourceSubpaths.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * Return true if two given rectangles (specified by an array of points) intersect with the default tolerance.
      *
      * @param rect1 the first rectangle, considered as a subject of intersection. Even if it's width is zero,
      *              it still can be intersected by second rectangle.
@@ -365,6 +827,40 @@ public class PdfCleanUpFilter {
      * @return true if the rectangles intersect, false otherwise
      */
     static boolean checkIfRectanglesIntersect(Point[] rect1, Point[] rect2) {
+        return checkIfRectanglesIntersect(rect1, rect2, EPS);
+    }
+
+    /**
+     * Return true if two given rectangles (specified by an array of points) intersect.
+     *
+     * @param rect1 the first rectangle, considered as a subject of intersection. Even if it's width is zero,
+     *              it still can be intersected by second rectangle.
+     * @param rect2 the second rectangle, considered as intersecting rectangle. If it has zero width rectangles
+     *              are never considered as intersecting.
+     * @param eps   the tolerance of the comparisons
+     * @return true if the rectangles intersect, false otherwise
+     */
+    static boolean checkIfRectanglesIntersect(Point[] rect1, Point[] rect2, float eps) {
+        double[] bBox1 = getBoundingBox(rect1);
+        double[] bBox2 = getBoundingBox(rect2);
+        // Degenerate rectangles might be considered as intersecting even if they only touch each other,
+        // or (for a point-like subject) are not further than DEGENERATE_POINT_OFFSET from each other
+        double rejectDistance = DEGENERATE_POINT_OFFSET + eps;
+        if (bBox1[0] > bBox2[2] + rejectDistance || bBox2[0] > bBox1[2] + rejectDistance
+                || bBox1[1] > bBox2[3] + rejectDistance || bBox2[1] > bBox1[3] + rejectDistance) {
+            return false;
+        }
+        if (isNotDegenerateAxisAlignedRectangle(rect1, bBox1, eps) && isNotDegenerateAxisAlignedRectangle(rect2, bBox2, eps)) {
+            // The same result as the one of the Clipper intersection: the intersection is considered
+            // to be degenerate if either of its sides is less than eps
+            double intersectionWidth = Math.min(bBox1[2], bBox2[2]) - Math.max(bBox1[0], bBox2[0]);
+            double intersectionHeight = Math.min(bBox1[3], bBox2[3]) - Math.max(bBox1[1], bBox2[1]);
+            return intersectionWidth >= eps && intersectionHeight >= eps;
+        }
+        return checkIfRectanglesIntersectWithClipper(rect1, rect2, eps);
+    }
+
+    private static boolean checkIfRectanglesIntersectWithClipper(Point[] rect1, Point[] rect2, float eps) {
         IClipper clipper = new DefaultClipper();
         // If the redaction area is degenerate, the result will be false
         if (!ClipperBridge.addPolygonToClipper(clipper, rect2, PolyType.CLIP)) {
@@ -389,13 +885,13 @@ public class PdfCleanUpFilter {
                 Point startPoint = rect2[0];
                 Point endPoint = rect2[0];
                 for (int i = 1; i < rect2.length; i++) {
-                    if (rect2[i].distance(startPoint) > EPS) {
+                    if (rect2[i].distance(startPoint) > eps) {
                         endPoint = rect2[i];
                         break;
                     }
                 }
                 for (int i = 0; i < rect1.length; i++) {
-                    if (isPointOnALineSegment(rect1[i], startPoint, endPoint, true)) {
+                    if (isPointOnALineSegment(rect1[i], startPoint, endPoint, true, eps)) {
                         return true;
                     }
                 }
@@ -416,7 +912,7 @@ public class PdfCleanUpFilter {
             // working with paths is considered to be a bit faster in terms of performance.
             Paths paths = new Paths();
             clipper.execute(ClipType.INTERSECTION, paths, PolyFillType.NON_ZERO, PolyFillType.NON_ZERO);
-            return !checkIfIntersectionRectangleDegenerate(paths.getBounds(), false)
+            return !checkIfIntersectionRectangleDegenerate(paths.getBounds(), false, eps)
                     && !paths.isEmpty();
         } else {
             int rect1Size = rect1.length;
@@ -426,9 +922,8 @@ public class PdfCleanUpFilter {
                 // this could have happened only if all four passed points are actually the same point.
                 // Adding here a point really close to the original point, to make sure it's not covered by the
                 // intersecting rectangle.
-                double smallDiff = 0.01;
                 List<Point> rect1List = new ArrayList<Point>(Arrays.asList(rect1));
-                rect1List.add(new Point(rect1[0].getX() + smallDiff, rect1[0].getY()));
+                rect1List.add(new Point(rect1[0].getX() + DEGENERATE_POINT_OFFSET, rect1[0].getY()));
                 rect1 = rect1List.toArray(new Point[rect1Size]);
                 intersectionSubjectAdded = ClipperBridge.addPolylineSubjectToClipper(clipper, rect1);
                 assert intersectionSubjectAdded;
@@ -436,11 +931,46 @@ public class PdfCleanUpFilter {
             PolyTree polyTree = new PolyTree();
             clipper.execute(ClipType.INTERSECTION, polyTree, PolyFillType.NON_ZERO, PolyFillType.NON_ZERO);
             Paths paths = Paths.makePolyTreeToPaths(polyTree);
-            return !checkIfIntersectionRectangleDegenerate(paths.getBounds(), true)
+            return !checkIfIntersectionRectangleDegenerate(paths.getBounds(), true, eps)
                     && !paths.isEmpty();
         }
     }
 
+    /**
+     * @return the bounding box of the points as an array of left, bottom, right and top coordinates.
+     */
+    private static double[] getBoundingBox(Point[] points) {
+        double[] bBox = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (Point point : points) {
+            bBox[0] = Math.min(bBox[0], point.getX());
+            bBox[1] = Math.min(bBox[1], point.getY());
+            bBox[2] = Math.max(bBox[2], point.getX());
+            bBox[3] = Math.max(bBox[3], point.getY());
+        }
+        return bBox;
+    }
+
+    /**
+     * Checks if the four points form a rectangle with sides parallel to the coordinate axes,
+     * each of the sides being not less than eps.
+     */
+    private static boolean isNotDegenerateAxisAlignedRectangle(Point[] rect, double[] bBox, float eps) {
+        if (rect.length != 4 || bBox[2] - bBox[0] < eps || bBox[3] - bBox[1] < eps) {
+            return false;
+        }
+        // sides shall be alternately horizontal and vertical
+        boolean firstSideHorizontal = rect[0].getY() == rect[1].getY();
+        for (int i = 0; i < 4; ++i) {
+            Point start = rect[i];
+            Point end = rect[(i + 1) % 4];
+            boolean horizontal = (i % 2 == 0) == firstSideHorizontal;
+            if (horizontal ? start.getY() != end.getY() : start.getX() != end.getX()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Checks if the input intersection rectangle is degenerate.
      * In case of intersection subject is degenerate (isIntersectSubjectDegenerate
@@ -453,13 +983,13 @@ public class PdfCleanUpFilter {
      * @return true - if the intersection rectangle is degenerate.
      */
     private static boolean checkIfIntersectionRectangleDegenerate(LongRect rect,
-                                                                  boolean isIntersectSubjectDegenerate) {
+                                                                  boolean isIntersectSubjectDegenerate, float eps) {
         float width = (float)(Math.abs(rect.left - rect.right) / ClipperBridge.floatMultiplier);
         float height = (float)(Math.abs(rect.top - rect.bottom) / ClipperBridge.floatMultiplier);
-        return isIntersectSubjectDegenerate ? (width < EPS && height < EPS) : (width < EPS || height < EPS);
+        return isIntersectSubjectDegenerate ? (width < eps && height < eps) : (width < eps || height < eps);
     }
 
-    private static boolean isPointOnALineSegment(Point currPoint, Point linePoint1, Point linePoint2, boolean isBetweenLinePoints) {
+    private static boolean isPointOnALineSegment(Point currPoint, Point linePoint1, Point linePoint2, boolean isBetweenLinePoints, float eps) {
         double dxc = currPoint.x - linePoint1.x;
         double dyc = currPoint.y - linePoint1.y;
 
@@ -469,16 +999,16 @@ public class PdfCleanUpFilter {
         double cross = dxc * dyl - dyc * dxl;
 
         // if point is on a line, let's check whether it's between provided line points
-        if (Math.abs(cross) <= EPS) {
+        if (Math.abs(cross) <= eps) {
             if (isBetweenLinePoints) {
                 if (Math.abs(dxl) >= Math.abs(dyl)) {
                     return dxl > 0 ?
-                            linePoint1.x - EPS <= currPoint.x && currPoint.x <= linePoint2.x + EPS :
-                            linePoint2.x - EPS <= currPoint.x && currPoint.x <= linePoint1.x + EPS;
+                            linePoint1.x - eps <= currPoint.x && currPoint.x <= linePoint2.x + eps :
+                            linePoint2.x - eps <= currPoint.x && currPoint.x <= linePoint1.x + eps;
                 } else {
                     return dyl > 0 ?
-                            linePoint1.y - EPS <= currPoint.y && currPoint.y <= linePoint2.y + EPS :
-                            linePoint2.y - EPS <= currPoint.y && currPoint.y <= linePoint1.y + EPS;
+                            linePoint1.y - eps <= currPoint.y && currPoint.y <= linePoint2.y + eps :
+                            linePoint2.y - eps <= currPoint.y && currPoint.y <= linePoint1.y + eps;
                 }
             } else {
                 return true;
@@ -548,11 +1078,6 @@ public class PdfCleanUpFilter {
      * @return raw bytes of the PDF image samples stream which is already cleaned.
      */
     private byte[] processImageDirectly(PdfImageXObject image, List<Rectangle> imageAreasToBeCleaned) {
-        int X = 0;
-        int Y = 1;
-        int W = 2;
-        int H = 3;
-
         byte[] originalImageBytes = image.getPdfObject().getBytes();
 
         PdfNumber bpcVal = image.getPdfObject().getAsNumber(PdfName.BitsPerComponent);
@@ -564,37 +1089,13 @@ public class PdfCleanUpFilter {
             throw new IllegalArgumentException("/BitsPerComponent only allowed values are: 1, 2, 4, 8 and 16.");
         }
 
-        double bytesInComponent = (double)bpc / 8;
-        int firstComponentInByte = 0;
-        if (bpc < 16) {
-            for (int i = 0; i < bpc; ++i) {
-                firstComponentInByte += (int) Math.pow(2, 7 - i);
-            }
-        }
-
-        double width = image.getWidth();
-        double height = image.getHeight();
-        int rowPadding = 0;
-        if ((width * bpc) % 8 > 0) {
-            rowPadding = (int) (8 - (width * bpc) % 8);
-        }
-        for (Rectangle rect : imageAreasToBeCleaned) {
-            int[] cleanImgRect = CleanUpHelperUtil.getImageRectToClean(rect, (int)width, (int)height);
-            for (int j = cleanImgRect[Y]; j < cleanImgRect[Y] + cleanImgRect[H]; ++j) {
-                for (int i = cleanImgRect[X]; i < cleanImgRect[X] + cleanImgRect[W]; ++i) {
-                    // based on assumption that numOfComponents always equals 1, because this method is only for monochrome and grayscale images
-                    double pixelPos = j * ((width * bpc + rowPadding) / 8) + i * bytesInComponent;
-                    int pixelByteInd = (int) pixelPos;
-                    byte byteWithSample = originalImageBytes[pixelByteInd];
-
-                    if (bpc == 16) {
-                        originalImageBytes[pixelByteInd] = 0;
-                        originalImageBytes[pixelByteInd + 1] = 0;
-                    } else {
-                        int reset = ~(firstComponentInByte >> (int) ((pixelPos - pixelByteInd) * 8)) & 0xFF;
-                        originalImageBytes[pixelByteInd] = (byte) (byteWithSample & reset);
-                    }
-                }
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        // based on assumption that numOfComponents always equals 1, because this method is only for monochrome and grayscale images
+        int rowLength = (width * bpc + 7) / 8;
+        for (int[] rect : ImageSamplesCleaner.getRectsToClean(imageAreasToBeCleaned, width, height)) {
+            for (int j = rect[2]; j < rect[3]; ++j) {
+                ImageSamplesCleaner.fillSamples(originalImageBytes, j * rowLength, rect[0], rect[1], bpc, 0);
             }
         }
 
@@ -778,6 +1279,40 @@ public class PdfCleanUpFilter {
         return transformed;
     }
 
+    /**
+     * Gets the cleanup regions transformed into the space of the path drawn with the given ctm. The result is cached,
+     * because thousands of consecutive paths might be drawn with the same ctm.
+     */
+    private TransformedRegions getTransformedRegions(Matrix ctm) {
+        TransformedRegions transformedRegions = transformedRegionsCache.get(ctm);
+        if (transformedRegions == null) {
+            transformedRegions = new TransformedRegions(ctm, regions, clipperScaleFactor);
+            transformedRegionsCache.put(ctm, transformedRegions);
+        }
+        return transformedRegions;
+    }
+
+    /**
+     * Calculates the bounding box of all the path points (including Bezier control points) transformed with the ctm.
+     *
+     * @return the bounding box or {@code null} if the path is empty.
+     */
+    private static Rectangle getPathBoundingBox(com.itextpdf.kernel.geom.Path path, Matrix ctm) {
+        List<Point> points = new ArrayList<>();
+        for (Subpath subpath : path.getSubpaths()) {
+            if (subpath.getStartPoint() != null) {
+                points.add(subpath.getStartPoint());
+            }
+            for (IShape segment : subpath.getSegments()) {
+                points.addAll(segment.getBasePoints());
+            }
+        }
+        if (points.isEmpty()) {
+            return null;
+        }
+        return Rectangle.calculateBBox(Arrays.asList(transformPoints(ctm, false, points.toArray(new Point[points.size()]))));
+    }
+
     /**
      * Get the bounding box of a TextRenderInfo object
      *
@@ -848,6 +1383,59 @@ public class PdfCleanUpFilter {
         }
     }
 
+    /**
+     * The cleanup regions transformed into the path space, prepared to be used as the clip polygons in {@link IClipper}.
+     */
+    private static class TransformedRegions {
+        private Paths clipPolygons;
+
+        TransformedRegions(Matrix ctm, List<Rectangle> regions, double clipperScaleFactor) {
+            try {
+                Paths polygons = new Paths();
+                for (Rectangle region : regions) {
+                    Point[] transfRectVertices = transformPoints(ctm, true, getRectangleVertices(region));
+                    if (clipperScaleFactor != 1) {
+                        for (int i = 0; i < transfRectVertices.length; ++i) {
+                            transfRectVertices[i] = scalePoint(transfRectVertices[i], clipperScaleFactor);
+                        }
+                    }
+                    polygons.add(new com.itextpdf.kernel.pdf.canvas.parser.clipper.Path(
+                            ClipperBridge.convertToLongPoints(Arrays.asList(transfRectVertices))));
+                }
+                clipPolygons = polygons;
+            } catch (PdfException e) {
+                if (!(e.getCause() instanceof NoninvertibleTransformException)) {
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * @return the regions polygons or {@code null} if the ctm is noninvertible.
+         */
+        Paths getClipPolygons() {
+            return clipPolygons;
+        }
+    }
+
+    /**
+     * Position of the painted path relatively to the cleanup regions.
+     */
+    enum PathPosition {
+        /**
+         * The path doesn't intersect any of the regions.
+         */
+        OUTSIDE,
+        /**
+         * The path is completely covered by one of the regions.
+         */
+        INSIDE,
+        /**
+         * The path might be partially covered by the regions.
+         */
+        STRADDLING
+    }
+
     /**
      * Generic class representing the result of filtering an object of type T
      * @deprecated this class will be changed to package-private in 7.2.
@@ -885,6 +1473,41 @@ public class PdfCleanUpFilter {
         }
     }
 
+    /**
+     * The result of the image filtering in the common image format. Keeps the properties of the original and
+     * the filtered images read while filtering, so that their compatibility can be checked without converting
+     * the images into the common format again.
+     */
+    static class ImageFilterResult extends FilterResult<ImageData> {
+        private final ImageInfo originalImageInfo;
+        private final ImageInfo filteredImageInfo;
+
+        ImageFilterResult(boolean isModified, ImageData filterResult, ImageInfo originalImageInfo,
+                ImageInfo filteredImageInfo) {
+            super(isModified, filterResult);
+            this.originalImageInfo = originalImageInfo;
+            this.filteredImageInfo = filteredImageInfo;
+        }
+
+        /**
+         * Gets the properties of the original image in the common image format.
+         *
+         * @return the image info, or {@code null} if the image isn't filtered or its info can't be read
+         */
+        ImageInfo getOriginalImageInfo() {
+            return originalImageInfo;
+        }
+
+        /**
+         * Gets the properties of the filtered image in the common image format.
+         *
+         * @return the image info, or {@code null} if the image isn't filtered or its info can't be read
+         */
+        ImageInfo getFilteredImageInfo() {
+            return filteredImageInfo;
+        }
+    }
+
     // Constants from the standard line representation: Ax+By+C
     private static class StandardLine {
 
@@ -56,16 +56,20 @@ import com.itextpdf.kernel.geom.Point;
 import com.itextpdf.kernel.geom.Rectangle;
 import com.itextpdf.kernel.geom.Subpath;
 import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfBoolean;
 import com.itextpdf.kernel.pdf.PdfDictionary;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfIndirectReference;
 import com.itextpdf.kernel.pdf.PdfLiteral;
 import com.itextpdf.kernel.pdf.PdfName;
 import com.itextpdf.kernel.pdf.PdfNumber;
 import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfOutputStream;
 import com.itextpdf.kernel.pdf.PdfPage;
 import com.itextpdf.kernel.pdf.PdfResources;
 import com.itextpdf.kernel.pdf.PdfStream;
 import com.itextpdf.kernel.pdf.PdfTextArray;
+import com.itextpdf.kernel.pdf.PdfVersion;
 import com.itextpdf.kernel.pdf.annot.PdfAnnotation;
 import com.itextpdf.kernel.pdf.annot.PdfLineAnnotation;
 import com.itextpdf.kernel.pdf.annot.PdfLinkAnnotation;
@@ -88,6 +92,7 @@ import com.itextpdf.kernel.pdf.colorspace.PdfShading;
 import com.itextpdf.kernel.pdf.tagutils.TagTreePointer;
 import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
 import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import com.itextpdf.kernel.pdf.xobject.PdfXObject;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -95,13 +100,19 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.itextpdf.pdfcleanup.util.CleanUpCsCompareUtil;
+import org.apache.commons.imaging.ImageInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -134,6 +145,16 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
     // these operators are processed via PdfCanvasProcessor graphics state and event listener
     private static final Set<String> IGNORED_OPERATORS;
 
+    // color spaces which might be used in inline images without referring to resources, including abbreviations
+    private static final Set<PdfName> INLINE_IMAGE_DEVICE_COLOR_SPACES = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList(PdfName.DeviceGray, PdfName.DeviceRGB, PdfName.DeviceCMYK,
+                    new PdfName("G"), new PdfName("RGB"), new PdfName("CMYK"))));
+    private static final PdfName INLINE_IMAGE_INDEXED_ABBREVIATION = new PdfName("I");
+
+    private static final byte[] BI = ByteUtils.getIsoBytes("BI\n");
+    private static final byte[] ID = ByteUtils.getIsoBytes("ID\n");
+    private static final byte[] EI = ByteUtils.getIsoBytes("EI\n");
+
     static {
         // HashSet is required in order to autoport correctly in .Net
         HashSet<String> tempSet = new HashSet<>();
@@ -184,11 +205,22 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
     private boolean isInText;
     private TextPositioning textPositioning;
     private FilteredImagesCache filteredImagesCache;
+    private FilteredFormXObjectsCache filteredFormXObjectsCache;
+    private List<PdfXObject> createdXObjects;
+    private boolean contentModified;
+    private ExecutorService imageFilteringExecutor;
+    private SharedFilteredImagesCache sharedFilteredImagesCache;
+    private List<PendingImage> pendingImages;
+    private Map<PdfStream, byte[]> preloadedStreamBytes;
 
     PdfCleanUpProcessor(List<Rectangle> cleanUpRegions, PdfDocument document) {
+        this(cleanUpRegions, document, new CleanUpProperties());
+    }
+
+    PdfCleanUpProcessor(List<Rectangle> cleanUpRegions, PdfDocument document, CleanUpProperties properties) {
         super(new PdfCleanUpEventListener());
         this.document = document;
-        this.filter = new PdfCleanUpFilter(cleanUpRegions);
+        this.filter = new PdfCleanUpFilter(cleanUpRegions, properties);
         this.canvasStack = new Stack<>();
         this.notAppliedGsParams = new ArrayDeque<>();
         this.notAppliedGsParams.push(new NotAppliedGsParams());
@@ -197,6 +229,9 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         this.btEncountered = false;
         this.isInText = false;
         this.textPositioning = new TextPositioning();
+        this.createdXObjects = new ArrayList<>();
+        this.contentModified = false;
+        this.pendingImages = new ArrayList<>();
     }
 
     @Override
@@ -205,6 +240,30 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         super.processPageContent(page);
     }
 
+    /**
+     * Processes the content of the page which has already been read from the document. This method is used
+     * when several pages are processed concurrently: the objects reachable from the page resources shall be
+     * loaded beforehand, the rest of the reading of the document (fonts, not preloaded streams) happening during
+     * the processing is performed under the document lock.
+     *
+     * @param page                 the page to process
+     * @param contentBytes         the bytes of the page content streams
+     * @param preloadedStreamBytes the decoded bytes of the form XObjects and the encoded bytes of the image
+     *                             XObjects reachable from the page resources
+     */
+    void processPageContent(PdfPage page, byte[] contentBytes, Map<PdfStream, byte[]> preloadedStreamBytes) {
+        currentPage = page;
+        this.preloadedStreamBytes = preloadedStreamBytes;
+        try {
+            Path clippingPath = new Path();
+            clippingPath.rectangle(page.getCropBox());
+            getGraphicsState().setClippingPath(clippingPath);
+            processContent(contentBytes, page.getResources());
+        } finally {
+            this.preloadedStreamBytes = null;
+        }
+    }
+
     /**
      * Process the annotations of a page.
      * Default process behaviour is to remove the annotation if there is (partial) overlap with a redaction region
@@ -226,6 +285,7 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
      * @param redactRedactAnnotations true if annotation with subtype /Redact should also be removed
      */
     public void processPageAnnotations(PdfPage page, List<Rectangle> regions, boolean redactRedactAnnotations) {
+        CleanUpRegionsIndex regionsIndex = new CleanUpRegionsIndex(regions);
         // Iterate over annotations
         for (PdfAnnotation annot : page.getAnnotations()) {
             PdfName annotSubtype = annot.getSubtype();
@@ -236,8 +296,17 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
             if (!redactRedactAnnotations && PdfName.Redact.equals(annotSubtype)) {
                 continue;
             }
+            if (PdfName.Watermark.equals(annotSubtype) && !regions.isEmpty()) {
+                // TODO /FixedPrint entry effect is not fully investigated: DEVSIX-2471
+                Logger logger = LoggerFactory.getLogger(PdfCleanUpProcessor.class);
+                logger.warn(CleanUpLogMessageConstant.REDACTION_OF_ANNOTATION_TYPE_WATERMARK_IS_NOT_SUPPORTED);
+            }
+            Rectangle annotBBox = getAnnotationBoundingBox(annot);
+            if (annotBBox == null) {
+                continue;
+            }
             // Check against regions
-            for (Rectangle region : regions) {
+            for (Rectangle region : regionsIndex.getCandidates(annotBBox)) {
                 if (annotationIsToBeRedacted(annot, region)) {
                     if (annot instanceof PdfMarkupAnnotation) {
                         PdfPopupAnnotation popup = ((PdfMarkupAnnotation) annot).getPopup();
@@ -256,6 +325,52 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         this.filteredImagesCache = cache;
     }
 
+    void setFilteredFormXObjectsCache(FilteredFormXObjectsCache cache) {
+        this.filteredFormXObjectsCache = cache;
+    }
+
+    /**
+     * Sets the executor which filters the partially cleaned images while the content processing goes on.
+     * The placeholders of such images are written to the content, they shall be filled by
+     * {@link #resolvePendingImages()}. If the executor is not set, images are filtered synchronously.
+     *
+     * @param executor the executor to filter the images, or {@code null}
+     */
+    void setImageFilteringExecutor(ExecutorService executor) {
+        this.imageFilteringExecutor = executor;
+    }
+
+    /**
+     * Sets the cache of the image filtering results which is shared with other documents.
+     * It is consulted before the partially cleaned image is filtered.
+     *
+     * @param cache the shared cache, or {@code null}
+     */
+    void setSharedFilteredImagesCache(SharedFilteredImagesCache cache) {
+        this.sharedFilteredImagesCache = cache;
+    }
+
+    /**
+     * Returns form and image XObjects which were created while processing the content,
+     * i.e. cleaned form XObjects and filtered images (including their masks).
+     *
+     * @return the list of created XObjects.
+     */
+    List<PdfXObject> getCreatedXObjects() {
+        return createdXObjects;
+    }
+
+    /**
+     * Checks whether any of the processed content has been affected by the cleanup, i.e. some text, image
+     * or path was (or might have been) modified or removed, or some marked content was removed from the tag structure.
+     * If it was not, the original content stream is visually equivalent to the cleaned one and can be kept.
+     *
+     * @return true if the processed content has been modified.
+     */
+    boolean isContentModified() {
+        return contentModified;
+    }
+
     /**
      * @param contentBytes the bytes of a content stream
      * @param resources    the resources of the content stream. Must not be null.
@@ -290,8 +405,11 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         String operatorString = operator.toString();
 
         writeGsParamsIfFormXObject(operatorString, operands);
-        super.invokeOperator(operator, operands);
-        popCanvasIfFormXObject(operatorString, operands);
+        if ("Do".equals(operatorString)) {
+            invokeDoOperator(operator, operands);
+        } else {
+            super.invokeOperator(operator, operands);
+        }
 
         filterContent(operatorString, operands);
     }
@@ -328,6 +446,13 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         return new Matrix(a, b, c, d, e, f);
     }
 
+    @Override
+    protected PdfFont getFont(PdfDictionary fontDict) {
+        synchronized (document) {
+            return super.getFont(fontDict);
+        }
+    }
+
     @Override
     protected void eventOccurred(IEventData data, EventType type) {
         if (supportedEvents == null || supportedEvents.contains(type)) {
@@ -369,11 +494,6 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         removeAnnotIfPartOverlap = true;
 
         PdfName annotationType = annotation.getPdfObject().getAsName(PdfName.Subtype);
-        if (annotationType.equals(PdfName.Watermark)) {
-            // TODO /FixedPrint entry effect is not fully investigated: DEVSIX-2471
-            Logger logger = LoggerFactory.getLogger(PdfCleanUpProcessor.class);
-            logger.warn(CleanUpLogMessageConstant.REDACTION_OF_ANNOTATION_TYPE_WATERMARK_IS_NOT_SUPPORTED);
-        }
 
         PdfArray rectAsArray = annotation.getRectangle();
         Rectangle rect = null;
@@ -413,6 +533,35 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         return annotationIsToBeRedacted;
     }
 
+    /**
+     * Calculates the area which is checked against redaction regions in {@link #annotationIsToBeRedacted}:
+     * the annotation rectangle, its quad points and, for line annotations, the line.
+     *
+     * @return the bounding box of the annotation or {@code null} if there is no area to be checked.
+     */
+    private static Rectangle getAnnotationBoundingBox(PdfAnnotation annotation) {
+        List<Rectangle> areas = new ArrayList<>();
+        PdfArray rectAsArray = annotation.getRectangle();
+        if (rectAsArray != null) {
+            areas.add(rectAsArray.toRectangle());
+        }
+        PdfArray quadPoints = annotation.getPdfObject().getAsArray(PdfName.QuadPoints);
+        if (quadPoints != null && !quadPoints.isEmpty() && quadPoints.size() % 8 == 0) {
+            try {
+                areas.addAll(Rectangle.createBoundingRectanglesFromQuadPoint(quadPoints));
+            } catch (PdfException ignored) {
+                // if quad points array cannot be processed, it is ignored by the redaction check as well
+            }
+        }
+        if (PdfName.Line.equals(annotation.getSubtype())) {
+            PdfArray line = annotation.getPdfObject().getAsArray(PdfName.L);
+            if (line != null) {
+                areas.add(line.toRectangle());
+            }
+        }
+        return areas.isEmpty() ? null : Rectangle.getCommonRectangle(areas.toArray(new Rectangle[areas.size()]));
+    }
+
     private boolean processAnnotationQuadPoints(Rectangle redactRegion, PdfArray quadPoints) {
         List<Rectangle> boundingRectangles = Rectangle.createBoundingRectanglesFromQuadPoint(quadPoints);
         boolean bboxOverlapped = false;
@@ -488,23 +637,113 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         }
     }
 
-    private void popCanvasIfFormXObject(String operator, List<PdfObject> operands) {
-        if ("Do".equals(operator)) {
-            PdfStream formStream = getXObjectStream((PdfName) operands.get(0));
-            if (PdfName.Form.equals(formStream.getAsName(PdfName.Subtype))) {
-                PdfCanvas cleanedCanvas = popCleanedCanvas();
+    private void invokeDoOperator(PdfLiteral operator, List<PdfObject> operands) {
+        PdfStream xObjectStream = getXObjectStream((PdfName) operands.get(0));
+        if (!PdfName.Form.equals(xObjectStream.getAsName(PdfName.Subtype))) {
+            // only the image dictionary is read here, the image is accessed under the document lock when cleaned
+            super.invokeOperator(operator, operands);
+            return;
+        }
 
-                PdfFormXObject newFormXObject = new PdfFormXObject((Rectangle) null);
-                newFormXObject.getPdfObject().putAll(formStream);
-                if (formStream.containsKey(PdfName.Resources)) {
-                    newFormXObject.put(PdfName.Resources, cleanedCanvas.getResources().getPdfObject());
-                }
-                newFormXObject.getPdfObject().setData(cleanedCanvas.getContentStream().getBytes());
+        Matrix formCtm = getGraphicsState().getCtm();
+        if (!filter.isFormXObjectAffected(xObjectStream, formCtm)) {
+            // the whole form XObject lies outside the cleanup regions, so it is referenced without any processing
+            writeFormXObject(new PdfFormXObject(xObjectStream));
+            return;
+        }
+
+        FilteredFormXObjectsCache.FilteredFormXObjectKey formKey = null;
+        PdfFormXObject formToWrite = null;
+        // Marked content of the form XObject is removed from the tag structure during processing,
+        // so in tagged documents every form XObject invocation shall be processed.
+        if (!document.isTagged()) {
+            formKey = filter.createFilteredFormXObjectKey(xObjectStream, getGraphicsState());
+        }
+        if (formKey != null) {
+            // The cache is shared between pages, which might be processed by several threads
+            synchronized (document) {
+                formToWrite = getFilteredFormXObjectsCache().get(formKey);
+            }
+        }
 
-                PdfName name = getCanvas().getResources().addForm(newFormXObject);
-                getCanvas().getContentStream().getOutputStream().write(name).writeSpace().writeBytes(ByteUtils.getIsoBytes("Do\n"));
+        if (formToWrite == null) {
+            boolean modifiedBeforeForm = contentModified;
+            contentModified = false;
+            processFormXObject(xObjectStream);
+            PdfCanvas cleanedCanvas = popCleanedCanvas();
+            if (contentModified) {
+                formToWrite = createCleanedFormXObject(xObjectStream, cleanedCanvas);
+            } else {
+                // nothing has been cleaned in the form, so the original form XObject can be used as is
+                formToWrite = new PdfFormXObject(xObjectStream);
+            }
+            if (formKey != null) {
+                synchronized (document) {
+                    getFilteredFormXObjectsCache().put(formKey, formToWrite);
+                }
             }
+            contentModified |= modifiedBeforeForm;
+        } else if (formToWrite.getPdfObject() != xObjectStream) {
+            contentModified = true;
+        }
+
+        writeFormXObject(formToWrite);
+    }
+
+    /**
+     * Processes the content of the form XObject the same way the form XObject do handler of
+     * {@link PdfCanvasProcessor} does, but the content bytes are taken from the preloaded ones if possible,
+     * so that the form is processed without the document lock.
+     */
+    private void processFormXObject(PdfStream formStream) {
+        PdfDictionary resourcesDic = formStream.getAsDictionary(PdfName.Resources);
+        PdfResources resources = resourcesDic == null ? getResources() : new PdfResources(resourcesDic);
+        // the content bytes are read up here so if it fails the graphics state stack isn't left corrupted
+        byte[] contentBytes = getStreamBytes(formStream, true);
+        PdfArray matrix = formStream.getAsArray(PdfName.Matrix);
+        super.invokeOperator(new PdfLiteral("q"), Collections.<PdfObject>emptyList());
+        if (matrix != null) {
+            getGraphicsState().updateCtm(new Matrix(matrix.getAsNumber(0).floatValue(),
+                    matrix.getAsNumber(1).floatValue(), matrix.getAsNumber(2).floatValue(),
+                    matrix.getAsNumber(3).floatValue(), matrix.getAsNumber(4).floatValue(),
+                    matrix.getAsNumber(5).floatValue()));
         }
+        processContent(contentBytes, resources);
+        super.invokeOperator(new PdfLiteral("Q"), Collections.<PdfObject>emptyList());
+    }
+
+    /**
+     * Gets the preloaded bytes of the stream, or reads them from the document under the document lock.
+     *
+     * @param stream  the form or image XObject stream
+     * @param decoded true for the decoded bytes, which are preloaded for the form XObjects,
+     *                false for the encoded ones, which are preloaded for the image XObjects
+     * @return the bytes of the stream
+     */
+    private byte[] getStreamBytes(PdfStream stream, boolean decoded) {
+        byte[] bytes = preloadedStreamBytes == null ? null : preloadedStreamBytes.get(stream);
+        if (bytes != null) {
+            return bytes;
+        }
+        synchronized (document) {
+            return stream.getBytes(decoded);
+        }
+    }
+
+    private void writeFormXObject(PdfFormXObject form) {
+        PdfName name = getCanvas().getResources().addForm(form);
+        getCanvas().getContentStream().getOutputStream().write(name).writeSpace().writeBytes(ByteUtils.getIsoBytes("Do\n"));
+    }
+
+    private PdfFormXObject createCleanedFormXObject(PdfStream formStream, PdfCanvas cleanedCanvas) {
+        PdfFormXObject newFormXObject = new PdfFormXObject((Rectangle) null);
+        newFormXObject.getPdfObject().putAll(formStream);
+        if (formStream.containsKey(PdfName.Resources)) {
+            newFormXObject.put(PdfName.Resources, cleanedCanvas.getResources().getPdfObject());
+        }
+        newFormXObject.getPdfObject().setData(cleanedCanvas.getContentStream().getBytes());
+        createdXObjects.add(newFormXObject);
+        return newFormXObject;
     }
 
     private void filterContent(String operator, List<PdfObject> operands) {
@@ -572,8 +811,11 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
                     if (null == textChunks) {
                         textChunks = ((PdfCleanUpEventListener) getEventListener()).getEncounteredText();
                     }
-                    PdfArray filteredText = filter.filterText(textChunks.get(i++)).getFilterResult();
-                    newTJ.addAll(filteredText);
+                    PdfCleanUpFilter.FilterResult<PdfArray> filterResult = filter.filterText(textChunks.get(i++));
+                    if (filterResult.isModified()) {
+                        contentModified = true;
+                    }
+                    newTJ.addAll(filterResult.getFilterResult());
                 } else {
                     newTJ.add(e);
                 }
@@ -584,6 +826,7 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
             textChunks = ((PdfCleanUpEventListener) getEventListener()).getEncounteredText();
             PdfCleanUpFilter.FilterResult<PdfArray> filterResult = filter.filterText(textChunks.get(0));
             if (filterResult.isModified()) {
+                contentModified = true;
                 cleanedText = filterResult.getFilterResult();
             }
         }
@@ -647,7 +890,10 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         PdfFont currFont = currGs.getFont();
         if (currFont == null || currFont.getPdfObject() != text.getFont().getPdfObject()
                 || currGs.getFontSize() != text.getFontSize()) {
-            canvas.setFontAndSize(text.getFont(), text.getFontSize());
+            // the font is registered in the document
+            synchronized (document) {
+                canvas.setFontAndSize(text.getFont(), text.getFontSize());
+            }
         }
         if (currGs.getTextRenderingMode() != text.getTextRenderMode()) {
             canvas.setTextRenderingMode(text.getTextRenderMode());
@@ -683,8 +929,28 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         if (PdfName.Image.equals(imageStream.getAsName(PdfName.Subtype))) {
             ImageRenderInfo encounteredImage = ((PdfCleanUpEventListener) getEventListener()).getEncounteredImage();
 
-            FilteredImagesCache.FilteredImageKey key = filter.createFilteredImageKey(encounteredImage.getImage(), encounteredImage.getImageCtm(), document);
-            PdfImageXObject imageToWrite = getFilteredImage(key, encounteredImage.getImageCtm());
+            PdfImageXObject imageToWrite;
+            // Image samples are read from the document and filtered images are shared between pages via cache
+            synchronized (document) {
+                PdfImageXObject image = encounteredImage.getImage();
+                Matrix imageCtm = encounteredImage.getImageCtm();
+                PdfIndirectReference imageIndRef = image.getPdfObject().getIndirectReference();
+                FilteredImagesCache.ImageDecision decision = getFilteredImagesCache().getDecision(imageIndRef,
+                        imageCtm, filter.getRegionsKey());
+                if (decision == FilteredImagesCache.ImageDecision.KEPT) {
+                    imageToWrite = image;
+                } else if (decision == FilteredImagesCache.ImageDecision.REMOVED) {
+                    imageToWrite = null;
+                    contentModified = true;
+                } else {
+                    imageToWrite = cleanImage(image, imageCtm);
+                }
+                if (imageToWrite != null && getFilteredImagesCache().addPlaceholderUsage(imageToWrite,
+                        getCanvas().getResources())) {
+                    // the resource name is to be known when the placeholder is resolved
+                    getCanvas().getResources().addImage(imageToWrite);
+                }
+            }
 
             if (imageToWrite != null) {
                 float[] ctm = pollNotAppliedCtm();
@@ -695,63 +961,335 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         }
     }
 
+    private PdfImageXObject cleanImage(PdfImageXObject image, Matrix imageCtm) {
+        FilteredImagesCache.FilteredImageKey key = filter.createFilteredImageKey(image, imageCtm, document);
+        PdfImageXObject imageToWrite;
+        if (imageFilteringExecutor != null) {
+            imageToWrite = getFilteredImageAsync(key, imageCtm);
+        } else {
+            imageToWrite = getFilteredImage(key, imageCtm);
+        }
+        if (imageToWrite != key.getImageXObject()) {
+            contentModified = true;
+        }
+
+        List<Rectangle> cleanedAreas = key.getCleanedAreas();
+        if (cleanedAreas == null && imageToWrite == null) {
+            getFilteredImagesCache().putDecision(key.getImageIndRef(), imageCtm, filter.getRegionsKey(),
+                    FilteredImagesCache.ImageDecision.REMOVED);
+        } else if (cleanedAreas != null && cleanedAreas.isEmpty() && imageToWrite == key.getImageXObject()) {
+            getFilteredImagesCache().putDecision(key.getImageIndRef(), imageCtm, filter.getRegionsKey(),
+                    FilteredImagesCache.ImageDecision.KEPT);
+        }
+        return imageToWrite;
+    }
+
     private PdfImageXObject getFilteredImage(FilteredImagesCache.FilteredImageKey filteredImageKey, Matrix ctmForMasksFiltering) {
         PdfImageXObject originalImage = filteredImageKey.getImageXObject();
         PdfImageXObject imageToWrite = getFilteredImagesCache().get(filteredImageKey);
 
         if (imageToWrite == null) {
-            PdfCleanUpFilter.FilterResult<ImageData> imageFilterResult = filter.filterImage(filteredImageKey);
-            if (imageFilterResult.isModified()) {
-                ImageData filteredImageData = imageFilterResult.getFilterResult();
-                if (Boolean.TRUE.equals(originalImage.getPdfObject().getAsBool(PdfName.ImageMask))) {
-                    if (!PdfCleanUpFilter.imageSupportsDirectCleanup(originalImage)) {
-                        Logger logger = LoggerFactory.getLogger(PdfCleanUpProcessor.class);
-                        logger.error(CleanUpLogMessageConstant.IMAGE_MASK_CLEAN_UP_NOT_SUPPORTED);
-                    } else {
-                        filteredImageData.makeMask();
-                    }
+            FilteredImage filteredImage = computeFilteredImage(filteredImageKey);
+            if (!filteredImage.isModified()) {
+                return originalImage;
+            }
+            imageToWrite = filteredImage.getImage();
+            if (imageToWrite != null) {
+                getFilteredImagesCache().put(filteredImageKey, imageToWrite);
+                createdXObjects.add(imageToWrite);
+                completeFilteredImage(originalImage, filteredImage, imageToWrite, ctmForMasksFiltering);
+            }
+        }
+        return imageToWrite;
+    }
+
+    /**
+     * Same as {@link #getFilteredImage(FilteredImagesCache.FilteredImageKey, Matrix)}, but the image, which is to be
+     * partially cleaned, is filtered by {@link #imageFilteringExecutor}. The placeholder XObject is returned instead,
+     * it is filled with the filtered image by {@link #resolvePendingImages()}. Shall be called under the document lock.
+     */
+    private PdfImageXObject getFilteredImageAsync(FilteredImagesCache.FilteredImageKey filteredImageKey, Matrix ctmForMasksFiltering) {
+        PdfImageXObject originalImage = filteredImageKey.getImageXObject();
+        List<Rectangle> cleanedAreas = filteredImageKey.getCleanedAreas();
+        if (cleanedAreas == null || cleanedAreas.isEmpty()) {
+            // the image is either to be removed or kept as a whole, no heavy work is required
+            return getFilteredImage(filteredImageKey, ctmForMasksFiltering);
+        }
+        PdfImageXObject imageToWrite = getFilteredImagesCache().get(filteredImageKey);
+        if (imageToWrite != null) {
+            return imageToWrite;
+        }
+
+        // the detached copy doesn't refer to the document, so it can be processed in any thread
+        final FilteredImagesCache.FilteredImageKey detachedImageKey = new FilteredImagesCache.FilteredImageKey(
+                detachImage(originalImage, getStreamBytes(originalImage.getPdfObject(), false)), cleanedAreas);
+        Future<FilteredImage> filteredImage = imageFilteringExecutor.submit(new Callable<FilteredImage>() {
+            @Override
+            public FilteredImage call() {
+                return computeFilteredImage(detachedImageKey);
+            }
+        });
+
+        PdfStream placeholderStream = new PdfStream();
+        placeholderStream.put(PdfName.Type, PdfName.XObject);
+        placeholderStream.put(PdfName.Subtype, PdfName.Image);
+        placeholderStream.put(PdfName.Width, originalImage.getPdfObject().get(PdfName.Width));
+        placeholderStream.put(PdfName.Height, originalImage.getPdfObject().get(PdfName.Height));
+        imageToWrite = new PdfImageXObject(placeholderStream);
+        getFilteredImagesCache().putPlaceholder(filteredImageKey, imageToWrite);
+        createdXObjects.add(imageToWrite);
+        pendingImages.add(new PendingImage(filteredImageKey, detachedImageKey.getImageXObject(), imageToWrite,
+                filteredImage, ctmForMasksFiltering));
+        return imageToWrite;
+    }
+
+    /**
+     * Waits for the images, which are being filtered asynchronously, and fills their placeholder XObjects.
+     * Shall be called after the content is processed and before the created XObjects are written.
+     */
+    void resolvePendingImages() {
+        for (PendingImage pendingImage : pendingImages) {
+            FilteredImage filteredImage;
+            try {
+                filteredImage = pendingImage.filteredImage.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PdfException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
                 }
-                if (filteredImageData != null) {
-                    imageToWrite = new PdfImageXObject(filteredImageData);
-                    getFilteredImagesCache().put(filteredImageKey, imageToWrite);
-
-                    // While having been processed with java libraries, only the number of components mattered.
-                    // However now we should put the correct color space dictionary as an image's resource,
-                    // because it'd be have been considered by pdf browsers before rendering it.
-                    // Additional checks required as if an image format has been changed,
-                    // then the old colorspace may produce an error with the new image data.
-                    if (areColorSpacesDifferent(originalImage, imageToWrite)
-                            && CleanUpCsCompareUtil.isOriginalCsCompatible(originalImage, imageToWrite)) {
-                        PdfObject originalCS = originalImage.getPdfObject().get(PdfName.ColorSpace);
-                        if (originalCS != null) {
-                            imageToWrite.put(PdfName.ColorSpace, originalCS);
-                        }
-                    }
+                throw new PdfException(e.getCause());
+            }
 
-                    if (ctmForMasksFiltering != null && !filteredImageData.isMask()) {
-                        filterImageMask(originalImage, PdfName.SMask, ctmForMasksFiltering, imageToWrite);
-                        filterImageMask(originalImage, PdfName.Mask, ctmForMasksFiltering, imageToWrite);
-
-                        PdfArray colourKeyMaskingArr = originalImage.getPdfObject().getAsArray(PdfName.Mask);
-                        if (colourKeyMaskingArr != null) {
-                            // In general we should be careful about images that might have changed their color space
-                            // or have been converted to lossy format during filtering.
-                            // However we have been copying Mask entry non-conditionally before and also I'm not sure
-                            // that cases described above indeed take place.
-                            imageToWrite.put(PdfName.Mask, colourKeyMaskingArr);
-                        }
+            synchronized (document) {
+                resolvePendingImage(pendingImage, filteredImage);
+            }
+        }
+        pendingImages.clear();
+    }
 
-                        if (originalImage.getPdfObject().containsKey(PdfName.SMaskInData)) {
-                            // This entry will likely lose meaning after image conversion to bitmap and back again, but let's leave as is for now.
-                            imageToWrite.put(PdfName.SMaskInData, originalImage.getPdfObject().get(PdfName.SMaskInData));
-                        }
-                    }
+    private void resolvePendingImage(PendingImage pendingImage, FilteredImage filteredImage) {
+        PdfImageXObject placeholder = pendingImage.placeholder;
+        PdfStream placeholderStream = placeholder.getPdfObject();
+        PdfStream originalStream = pendingImage.originalImage.getPdfObject();
+        Set<PdfResources> placeholderUsages = getFilteredImagesCache().resolvePlaceholder(placeholder);
+        if (!filteredImage.isModified()) {
+            // the image is partially cleaned, so normally it is always modified
+            if (replacePlaceholderUsages(placeholderUsages, placeholderStream, originalStream)) {
+                createdXObjects.remove(placeholder);
+                getFilteredImagesCache().replace(pendingImage.imageKey, pendingImage.originalImage);
+                return;
+            }
+            // some of the resources are already flushed, the copy of the original image is written
+            placeholderStream.setData(originalStream.getBytes(false));
+            for (PdfName key : originalStream.keySet()) {
+                placeholderStream.put(key, originalStream.get(key, false));
+            }
+        } else if (filteredImage.getImage() == null) {
+            // the placeholder is already written to the content, so the image which paints nothing is written
+            placeholderStream.setData(new byte[] {(byte) 0xFF});
+            placeholderStream.put(PdfName.Width, new PdfNumber(1));
+            placeholderStream.put(PdfName.Height, new PdfNumber(1));
+            placeholderStream.put(PdfName.ImageMask, PdfBoolean.TRUE);
+            placeholderStream.put(PdfName.BitsPerComponent, new PdfNumber(1));
+        } else {
+            PdfStream filteredStream = filteredImage.getImage().getPdfObject();
+            PdfStream detachedStream = pendingImage.detachedImage.getPdfObject();
+            placeholderStream.setData(filteredStream.getBytes(false));
+            for (PdfName key : filteredStream.keySet()) {
+                PdfObject value = filteredStream.get(key, false);
+                if (value != null && value == detachedStream.get(key, false)) {
+                    // the entry is taken from the detached copy, so the original object is referred instead
+                    value = originalStream.get(key, false);
                 }
+                placeholderStream.put(key, value);
+            }
+            completeFilteredImage(pendingImage.originalImage, filteredImage, placeholder,
+                    pendingImage.ctmForMasksFiltering);
+        }
+        placeholderStream.remove(PdfName.Length);
+        getFilteredImagesCache().updateSize(pendingImage.imageKey);
+    }
+
+    /**
+     * Makes the XObject resources, the placeholder was added to, refer to the original image instead.
+     *
+     * @return false if nothing was replaced, because some of the resources are already flushed
+     */
+    private static boolean replacePlaceholderUsages(Set<PdfResources> placeholderUsages, PdfStream placeholderStream,
+            PdfStream originalStream) {
+        for (PdfResources resources : placeholderUsages) {
+            PdfDictionary xObjects = resources.getResource(PdfName.XObject);
+            if (resources.getPdfObject().isFlushed() || xObjects != null && xObjects.isFlushed()) {
+                return false;
+            }
+        }
+        for (PdfResources resources : placeholderUsages) {
+            PdfDictionary xObjects = resources.getResource(PdfName.XObject);
+            if (xObjects == null) {
+                continue;
+            }
+            for (PdfName name : new ArrayList<>(xObjects.keySet())) {
+                PdfObject xObject = xObjects.get(name, false);
+                if (xObject == placeholderStream
+                        || xObject != null && xObject == placeholderStream.getIndirectReference()) {
+                    xObjects.put(name, originalStream);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Filters the image or takes the filtering result from the {@link #sharedFilteredImagesCache}.
+     * Doesn't access the processed document if the image doesn't refer to it, so might be called
+     * in any thread for the detached images.
+     */
+    FilteredImage computeFilteredImage(FilteredImagesCache.FilteredImageKey filteredImageKey) {
+        List<Rectangle> cleanedAreas = filteredImageKey.getCleanedAreas();
+        if (sharedFilteredImagesCache == null || cleanedAreas == null || cleanedAreas.isEmpty()) {
+            return filterImageXObject(filteredImageKey);
+        }
+        PdfImageXObject image = filteredImageKey.getImageXObject();
+        String sharedKey = SharedFilteredImagesCache.createKey(image, cleanedAreas, filter.isDctDomainImageCleanUp());
+        if (sharedKey == null) {
+            return filterImageXObject(filteredImageKey);
+        }
+        SharedFilteredImagesCache.CachedFilteredImage cached = sharedFilteredImagesCache.get(sharedKey, image);
+        if (cached != null) {
+            return new FilteredImage(cached.isModified(), cached.getImage(), cached.isConverted(), cached.isMask());
+        }
+        FilteredImage filteredImage = filterImageXObject(filteredImageKey);
+        sharedFilteredImagesCache.put(sharedKey, image, filteredImage.isModified(), filteredImage.getImage(),
+                filteredImage.isConverted(), filteredImage.isMask());
+        return filteredImage;
+    }
+
+    private FilteredImage filterImageXObject(FilteredImagesCache.FilteredImageKey filteredImageKey) {
+        PdfImageXObject originalImage = filteredImageKey.getImageXObject();
+        PdfCleanUpFilter.FilterResult<PdfImageXObject> samplesFilterResult = filter.filterImageSamples(filteredImageKey);
+        if (samplesFilterResult != null) {
+            return new FilteredImage(samplesFilterResult.isModified(), samplesFilterResult.getFilterResult(), false, false);
+        }
+
+        PdfCleanUpFilter.ImageFilterResult imageFilterResult = filter.filterImage(filteredImageKey);
+        if (!imageFilterResult.isModified()) {
+            return new FilteredImage(false, null, false, false);
+        }
+        ImageData filteredImageData = imageFilterResult.getFilterResult();
+        if (Boolean.TRUE.equals(originalImage.getPdfObject().getAsBool(PdfName.ImageMask))) {
+            if (!PdfCleanUpFilter.imageSupportsDirectCleanup(originalImage)) {
+                Logger logger = LoggerFactory.getLogger(PdfCleanUpProcessor.class);
+                logger.error(CleanUpLogMessageConstant.IMAGE_MASK_CLEAN_UP_NOT_SUPPORTED);
             } else {
-                imageToWrite = originalImage;
+                filteredImageData.makeMask();
             }
         }
-        return imageToWrite;
+        if (filteredImageData == null) {
+            return new FilteredImage(true, null, true, false);
+        }
+        return new FilteredImage(true, new PdfImageXObject(filteredImageData), true, filteredImageData.isMask(),
+                imageFilterResult.getOriginalImageInfo(), imageFilterResult.getFilteredImageInfo());
+    }
+
+    /**
+     * Sets the original color space and filters the masks of the filtered image.
+     */
+    private void completeFilteredImage(PdfImageXObject originalImage, FilteredImage filteredImage,
+            PdfImageXObject imageToWrite, Matrix ctmForMasksFiltering) {
+        if (filteredImage.isConverted()) {
+            // While having been processed with java libraries, only the number of components mattered.
+            // However now we should put the correct color space dictionary as an image's resource,
+            // because it'd be have been considered by pdf browsers before rendering it.
+            // Additional checks required as if an image format has been changed,
+            // then the old colorspace may produce an error with the new image data.
+            if (areColorSpacesDifferent(originalImage, imageToWrite)
+                    && isOriginalCsCompatible(originalImage, filteredImage, imageToWrite)) {
+                PdfObject originalCS = originalImage.getPdfObject().get(PdfName.ColorSpace);
+                if (originalCS != null) {
+                    imageToWrite.put(PdfName.ColorSpace, originalCS);
+                }
+            }
+        }
+        if (ctmForMasksFiltering != null && !filteredImage.isMask()) {
+            filterImageMasks(originalImage, ctmForMasksFiltering, imageToWrite);
+        }
+    }
+
+    private static boolean isOriginalCsCompatible(PdfImageXObject originalImage, FilteredImage filteredImage,
+            PdfImageXObject imageToWrite) {
+        if (filteredImage.getOriginalImageInfo() != null && filteredImage.getFilteredImageInfo() != null) {
+            // the infos are obtained while filtering, no need to convert the images into the common format again
+            return CleanUpCsCompareUtil.isOriginalCsCompatible(originalImage, filteredImage.getOriginalImageInfo(),
+                    filteredImage.getFilteredImageInfo());
+        }
+        return CleanUpCsCompareUtil.isOriginalCsCompatible(originalImage, imageToWrite);
+    }
+
+    /**
+     * Creates the copy of the image which doesn't refer to the document: all the objects referred by the image
+     * dictionary (except for the stream masks, which are filtered separately) are copied as direct objects and
+     * the streams are copied with their encoded bytes.
+     */
+    private static PdfImageXObject detachImage(PdfImageXObject image, byte[] encodedBytes) {
+        PdfStream imageStream = image.getPdfObject();
+        Map<PdfObject, PdfObject> detachedObjects = new IdentityHashMap<>();
+        PdfStream detachedStream = new PdfStream(encodedBytes);
+        for (PdfName key : imageStream.keySet()) {
+            PdfObject value = imageStream.get(key);
+            if ((PdfName.SMask.equals(key) || PdfName.Mask.equals(key)) && value != null && value.isStream()) {
+                continue;
+            }
+            detachedStream.put(key, detachObject(value, detachedObjects));
+        }
+        return new PdfImageXObject(detachedStream);
+    }
+
+    private static PdfObject detachObject(PdfObject object, Map<PdfObject, PdfObject> detachedObjects) {
+        if (object == null || !(object.isDictionary() || object.isStream() || object.isArray())) {
+            return object;
+        }
+        PdfObject detached = detachedObjects.get(object);
+        if (detached != null) {
+            return detached;
+        }
+        if (object.isArray()) {
+            PdfArray array = (PdfArray) object;
+            PdfArray detachedArray = new PdfArray();
+            detachedObjects.put(object, detachedArray);
+            for (int i = 0; i < array.size(); ++i) {
+                detachedArray.add(detachObject(array.get(i), detachedObjects));
+            }
+            return detachedArray;
+        }
+        PdfDictionary dictionary = (PdfDictionary) object;
+        PdfDictionary detachedDictionary = object.isStream()
+                ? new PdfStream(((PdfStream) object).getBytes(false)) : new PdfDictionary();
+        detachedObjects.put(object, detachedDictionary);
+        for (PdfName key : dictionary.keySet()) {
+            detachedDictionary.put(key, detachObject(dictionary.get(key), detachedObjects));
+        }
+        return detachedDictionary;
+    }
+
+    private void filterImageMasks(PdfImageXObject originalImage, Matrix ctmForMasksFiltering, PdfImageXObject imageToWrite) {
+        filterImageMask(originalImage, PdfName.SMask, ctmForMasksFiltering, imageToWrite);
+        filterImageMask(originalImage, PdfName.Mask, ctmForMasksFiltering, imageToWrite);
+
+        PdfArray colourKeyMaskingArr = originalImage.getPdfObject().getAsArray(PdfName.Mask);
+        if (colourKeyMaskingArr != null) {
+            // In general we should be careful about images that might have changed their color space
+            // or have been converted to lossy format during filtering.
+            // However we have been copying Mask entry non-conditionally before and also I'm not sure
+            // that cases described above indeed take place.
+            imageToWrite.put(PdfName.Mask, colourKeyMaskingArr);
+        }
+
+        if (originalImage.getPdfObject().containsKey(PdfName.SMaskInData)) {
+            // This entry will likely lose meaning after image conversion to bitmap and back again, but let's leave as is for now.
+            imageToWrite.put(PdfName.SMaskInData, originalImage.getPdfObject().get(PdfName.SMaskInData));
+        }
     }
 
     private void filterImageMask(PdfImageXObject originalImage, PdfName maskKey, Matrix ctmForMasksFiltering, PdfImageXObject imageToWrite) {
@@ -776,13 +1314,24 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         return filteredImagesCache != null ? filteredImagesCache : new FilteredImagesCache();
     }
 
+    private FilteredFormXObjectsCache getFilteredFormXObjectsCache() {
+        return filteredFormXObjectsCache != null ? filteredFormXObjectsCache : new FilteredFormXObjectsCache();
+    }
+
     private void cleanInlineImage() {
         ImageRenderInfo encounteredImage = ((PdfCleanUpEventListener) getEventListener()).getEncounteredImage();
         PdfCleanUpFilter.FilterResult<ImageData> imageFilterResult = filter.filterImage(encounteredImage);
         ImageData filteredImage;
         if (imageFilterResult.isModified()) {
+            contentModified = true;
             filteredImage = imageFilterResult.getFilterResult();
         } else {
+            PdfDictionary inlineImageDictionary = copyInlineImageDictionary(encounteredImage.getImage().getPdfObject());
+            if (inlineImageDictionary != null) {
+                // the image is not changed, so it is written just as it was in the original content stream
+                writeInlineImage(inlineImageDictionary, encounteredImage.getImage().getPdfObject().getBytes(false));
+                return;
+            }
             filteredImage = ImageDataFactory.create(encounteredImage.getImage().getImageBytes());
         }
         if (filteredImage != null) {
@@ -797,13 +1346,85 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
 
             getCanvas().addImage(filteredImage, ctm[0], ctm[1], ctm[2], ctm[3], ctm[4], ctm[5], true);
         }
+    }
 
-        // TODO
-        // PdfCanvas doesn't have a method that writes inline image using pdf stream, and only have method which
-        // accepts Image as parameter. That's why we can't write image just as it was in original file, we convert it to Image.
+    /**
+     * Copies the dictionary of the inline image to be written to the cleaned content stream. The color space
+     * referring to the resources of the original content is added to the resources of the cleaned canvas.
+     *
+     * @return the dictionary, or {@code null} if the image color space can't be carried over and the image
+     * shall be converted instead
+     */
+    private PdfDictionary copyInlineImageDictionary(PdfStream inlineImage) {
+        PdfDictionary dictionary = new PdfDictionary();
+        for (PdfName key : inlineImage.keySet()) {
+            if (!PdfName.Type.equals(key) && !PdfName.Subtype.equals(key) && !PdfName.Length.equals(key)) {
+                dictionary.put(key, inlineImage.get(key, false));
+            }
+        }
+        PdfObject colorSpace = inlineImage.get(PdfName.ColorSpace, false);
+        if (colorSpace != null) {
+            PdfObject copiedColorSpace = copyInlineImageColorSpace(colorSpace);
+            if (copiedColorSpace == null) {
+                return null;
+            }
+            dictionary.put(PdfName.ColorSpace, copiedColorSpace);
+        }
+        return dictionary;
+    }
 
-        // IMPORTANT: If writing of pdf stream of not changed inline image will be implemented, don't forget to ensure that
-        // inline image color space is present in new resources if necessary.
+    private PdfObject copyInlineImageColorSpace(PdfObject colorSpace) {
+        if (colorSpace.isName()) {
+            if (INLINE_IMAGE_DEVICE_COLOR_SPACES.contains(colorSpace)) {
+                return colorSpace;
+            }
+            PdfDictionary colorSpaces = getResources().getResource(PdfName.ColorSpace);
+            PdfObject resourceColorSpace = colorSpaces != null ? colorSpaces.get((PdfName) colorSpace) : null;
+            if (resourceColorSpace == null) {
+                return null;
+            }
+            return getCanvas().getResources().addColorSpace(resourceColorSpace);
+        }
+        if (colorSpace.isArray()) {
+            PdfArray array = (PdfArray) colorSpace;
+            PdfName family = array.getAsName(0);
+            if (array.size() != 4 || !(PdfName.Indexed.equals(family) || INLINE_IMAGE_INDEXED_ABBREVIATION.equals(family))) {
+                return null;
+            }
+            PdfObject base = array.get(1, false);
+            PdfObject copiedBase = base != null && base.isName() ? copyInlineImageColorSpace(base) : null;
+            if (copiedBase == null) {
+                return null;
+            }
+            PdfArray copiedArray = new PdfArray();
+            for (int i = 0; i < array.size(); ++i) {
+                copiedArray.add(i == 1 ? copiedBase : array.get(i, false));
+            }
+            return copiedArray;
+        }
+        return null;
+    }
+
+    private void writeInlineImage(PdfDictionary inlineImageDictionary, byte[] imageBytes) {
+        float[] ctm = pollNotAppliedCtm();
+        writeNotAppliedGsParams(false, false);
+        openNotWrittenTags();
+
+        PdfCanvas canvas = getCanvas();
+        canvas.saveState();
+        canvas.concatMatrix(ctm[0], ctm[1], ctm[2], ctm[3], ctm[4], ctm[5]);
+        PdfOutputStream os = canvas.getContentStream().getOutputStream();
+        os.writeBytes(BI);
+        for (PdfName key : inlineImageDictionary.keySet()) {
+            os.write(key).writeSpace();
+            os.write(inlineImageDictionary.get(key, false)).writeNewLine();
+        }
+        if (document.getPdfVersion().compareTo(PdfVersion.PDF_2_0) >= 0) {
+            os.write(PdfName.Length).writeSpace().write(new PdfNumber(imageBytes.length)).writeNewLine();
+        }
+        os.writeBytes(ID);
+        os.writeBytes(imageBytes).writeNewLine().writeBytes(EI);
+        canvas.restoreState();
     }
 
     private void writePath() {
@@ -812,6 +1433,23 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         boolean stroke = (path.getOperation() & PathRenderInfo.STROKE) == PathRenderInfo.STROKE;
         boolean fill = (path.getOperation() & PathRenderInfo.FILL) == PathRenderInfo.FILL;
         boolean clip = path.isPathModifiesClippingPath();
+        if (!fill && !stroke && !clip) {
+            return;
+        }
+
+        PdfCanvas canvas = getCanvas();
+        PdfCleanUpFilter.PathPosition pathPosition = filter.classifyPath(path, stroke);
+        if (pathPosition == PdfCleanUpFilter.PathPosition.OUTSIDE) {
+            writeOriginalPath(path, fill, stroke, clip);
+            return;
+        }
+        contentModified = true;
+        if (pathPosition == PdfCleanUpFilter.PathPosition.INSIDE) {
+            if (clip) {
+                writeDegenerateClippingPath();
+            }
+            return;
+        }
 
         // Here we intentionally draw all three paths separately and not combining them in any way:
 
@@ -830,7 +1468,6 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         // but this is the only generic solution.
 
         Path fillPath = null;
-        PdfCanvas canvas = getCanvas();
         if (fill) {
             fillPath = filter.filterFillPath(path, path.getRule());
             if (!fillPath.isEmpty()) {
@@ -871,21 +1508,62 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
                 } else { // FillingRule.EVEN_ODD
                     canvas.eoClip();
                 }
+                canvas.newPath();
+            } else {
+                writeDegenerateClippingPath();
+            }
+        }
+    }
+
+    /**
+     * Writes the path exactly as it was in the original content stream. It is used for the paths which
+     * are not touched by the cleanup regions, which allows to keep strokes as strokes and to avoid
+     * flattening and offsetting of the path.
+     */
+    private void writeOriginalPath(PathRenderInfo path, boolean fill, boolean stroke, boolean clip) {
+        PdfCanvas canvas = getCanvas();
+        writeNotAppliedGsParams(fill, stroke);
+        openNotWrittenTags();
+        writePath(path.getPath());
+        if (clip) {
+            if (path.getClippingRule() == FillingRule.NONZERO_WINDING) {
+                canvas.clip();
+            } else { // FillingRule.EVEN_ODD
+                canvas.eoClip();
+            }
+        }
+        boolean evenOdd = path.getRule() == FillingRule.EVEN_ODD;
+        if (fill && stroke) {
+            if (evenOdd) {
+                canvas.eoFillStroke();
             } else {
-                // If the clipping path from the source document is cleaned (it happens when reduction
-                // area covers the path completely), then you should treat it as an empty set (no points
-                // are included in the path). Then the current clipping path (which is the intersection
-                // between previous clipping path and the new one) is also empty set, which means that
-                // there is no visible content at all. But at the same time as we removed the clipping
-                // path, the invisible content would become visible. So, to emulate the correct result,
-                // we would simply put a degenerate clipping path which consists of a single point at (0, 0).
-                writeNotAppliedGsParams(false, false); // we still need to open all q operators
-                canvas.moveTo(0, 0).clip();
+                canvas.fillStroke();
             }
+        } else if (fill) {
+            if (evenOdd) {
+                canvas.eoFill();
+            } else {
+                canvas.fill();
+            }
+        } else if (stroke) {
+            canvas.stroke();
+        } else {
             canvas.newPath();
         }
     }
 
+    private void writeDegenerateClippingPath() {
+        // If the clipping path from the source document is cleaned (it happens when reduction
+        // area covers the path completely), then you should treat it as an empty set (no points
+        // are included in the path). Then the current clipping path (which is the intersection
+        // between previous clipping path and the new one) is also empty set, which means that
+        // there is no visible content at all. But at the same time as we removed the clipping
+        // path, the invisible content would become visible. So, to emulate the correct result,
+        // we would simply put a degenerate clipping path which consists of a single point at (0, 0).
+        writeNotAppliedGsParams(false, false); // we still need to open all q operators
+        getCanvas().moveTo(0, 0).clip().newPath();
+    }
+
     private void writePath(Path path) {
         PdfCanvas canvas = getCanvas();
         for (Subpath subpath : path.getSubpaths()) {
@@ -928,6 +1606,8 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         if (notWrittenTags.size() > 0) {
             CanvasTag tag = notWrittenTags.pop();
             if (tag.hasMcid() && document.isTagged()) {
+                // the tag structure is modified, so the original content cannot be kept
+                contentModified = true;
                 TagTreePointer pointer = document.getTagStructureContext().removeContentItem(currentPage, tag.getMcid());
                 if (pointer != null) {
                     while (pointer.getKidsRoles().size() == 0) {
@@ -1049,6 +1729,92 @@ public class PdfCleanUpProcessor extends PdfCanvasProcessor {
         return true;
     }
 
+    /**
+     * The result of the image filtering, which doesn't depend on the processed document.
+     */
+    static final class FilteredImage {
+        private final boolean modified;
+        private final PdfImageXObject image;
+        private final boolean converted;
+        private final boolean mask;
+        private final ImageInfo originalImageInfo;
+        private final ImageInfo filteredImageInfo;
+
+        /**
+         * @param modified  whether the image is affected by the clean up
+         * @param image     the filtered image, or {@code null} if the image is to be removed
+         * @param converted whether the image was converted into the common image format and back
+         * @param mask      whether the image was converted into the image mask
+         */
+        FilteredImage(boolean modified, PdfImageXObject image, boolean converted, boolean mask) {
+            this(modified, image, converted, mask, null, null);
+        }
+
+        /**
+         * @param modified          whether the image is affected by the clean up
+         * @param image             the filtered image, or {@code null} if the image is to be removed
+         * @param converted         whether the image was converted into the common image format and back
+         * @param mask              whether the image was converted into the image mask
+         * @param originalImageInfo the info of the original image in the common image format, if known
+         * @param filteredImageInfo the info of the filtered image in the common image format, if known
+         */
+        FilteredImage(boolean modified, PdfImageXObject image, boolean converted, boolean mask,
+                ImageInfo originalImageInfo, ImageInfo filteredImageInfo) {
+            this.modified = modified;
+            this.image = image;
+            this.converted = converted;
+            this.mask = mask;
+            this.originalImageInfo = originalImageInfo;
+            this.filteredImageInfo = filteredImageInfo;
+        }
+
+        boolean isModified() {
+            return modified;
+        }
+
+        PdfImageXObject getImage() {
+            return image;
+        }
+
+        boolean isConverted() {
+            return converted;
+        }
+
+        boolean isMask() {
+            return mask;
+        }
+
+        ImageInfo getOriginalImageInfo() {
+            return originalImageInfo;
+        }
+
+        ImageInfo getFilteredImageInfo() {
+            return filteredImageInfo;
+        }
+    }
+
+    /**
+     * The image which is being filtered asynchronously and the placeholder XObject which is written instead of it.
+     */
+    private static final class PendingImage {
+        final FilteredImagesCache.FilteredImageKey imageKey;
+        final PdfImageXObject originalImage;
+        final PdfImageXObject detachedImage;
+        final PdfImageXObject placeholder;
+        final Future<FilteredImage> filteredImage;
+        final Matrix ctmForMasksFiltering;
+
+        PendingImage(FilteredImagesCache.FilteredImageKey imageKey, PdfImageXObject detachedImage,
+                PdfImageXObject placeholder, Future<FilteredImage> filteredImage, Matrix ctmForMasksFiltering) {
+            this.imageKey = imageKey;
+            this.originalImage = imageKey.getImageXObject();
+            this.detachedImage = detachedImage;
+            this.placeholder = placeholder;
+            this.filteredImage = filteredImage;
+            this.ctmForMasksFiltering = ctmForMasksFiltering;
+        }
+    }
+
     /**
      * Single instance of this class represents not applied graphics state params of the single q/Q nesting level.
      * For example:
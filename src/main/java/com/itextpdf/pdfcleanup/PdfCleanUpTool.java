@@ -71,6 +71,7 @@ import com.itextpdf.kernel.pdf.annot.PdfRedactAnnotation;
 import com.itextpdf.kernel.pdf.canvas.CanvasArtifact;
 import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
 import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.kernel.pdf.xobject.PdfXObject;
 import com.itextpdf.layout.Canvas;
 import com.itextpdf.layout.element.Paragraph;
 import com.itextpdf.layout.layout.LayoutArea;
@@ -80,11 +81,23 @@ import com.itextpdf.pdfcleanup.events.PdfSweepEvent;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Represents the main mechanism for cleaning a PDF document.
@@ -96,7 +109,9 @@ public class PdfCleanUpTool {
      * calculations with floating point numbers. All of them are translated
      * into fixed point numbers by multiplying by this coefficient. Vary it
      * to adjust the preciseness of the calculations.
-     * @deprecated
+     * <p>
+     * The value is only read when a {@link PdfCleanUpTool} is created without {@link CleanUpProperties}.
+     * @deprecated use {@link CleanUpProperties#getClipperScale()} instead.
      */
     @Deprecated
     public static double floatMultiplier = Math.pow(10, 14);
@@ -104,7 +119,9 @@ public class PdfCleanUpTool {
     /**
      * Used as the criterion of a good approximation of rounded line joins
      * and line caps.
-     * @deprecated
+     * <p>
+     * The value is only read when a {@link PdfCleanUpTool} is created without {@link CleanUpProperties}.
+     * @deprecated use {@link CleanUpProperties#getArcTolerance()} instead.
      */
     @Deprecated
     public static double arcTolerance = 0.0025;
@@ -115,6 +132,12 @@ public class PdfCleanUpTool {
 
     private IMetaInfo cleanupMetaInfo;
 
+    private int parallelism = 1;
+
+    private boolean flushCleanedPages;
+
+    private CleanUpProperties cleanUpProperties;
+
     /**
      * Check if page annotations will be processed
      * Default: True
@@ -137,6 +160,7 @@ public class PdfCleanUpTool {
 
     /**
      * Key - page number, value - list of locations related to the page.
+     * Pages are processed in the ascending order.
      */
     private Map<Integer, List<PdfCleanUpLocation>> pdfCleanUpLocations;
 
@@ -148,6 +172,16 @@ public class PdfCleanUpTool {
 
     private FilteredImagesCache filteredImagesCache;
 
+    private FilteredFormXObjectsCache filteredFormXObjectsCache;
+
+    private SharedFilteredImagesCache sharedFilteredImagesCache;
+
+    /**
+     * Filters the partially cleaned images concurrently with the content processing, exists only while
+     * {@link #cleanUp()} is running with the parallelism greater than 1.
+     */
+    private ExecutorService imageFilteringExecutor;
+
     /**
      * Creates a {@link PdfCleanUpTool} object. No regions for erasing are specified.
      * Use {@link PdfCleanUpTool#addCleanupLocation(PdfCleanUpLocation)} method
@@ -173,14 +207,34 @@ public class PdfCleanUpTool {
      *                               inside the given document.
      */
     public PdfCleanUpTool(PdfDocument pdfDocument, boolean cleanRedactAnnotations) {
+        this(pdfDocument, cleanRedactAnnotations, new CleanUpProperties(floatMultiplier, arcTolerance,
+                CleanUpProperties.DEFAULT_CURVE_FLATTENING_TOLERANCE, CleanUpProperties.DEFAULT_EPS));
+    }
+
+    /**
+     * Creates a {@link PdfCleanUpTool} object. If {@code cleanRedactAnnotations} is true,
+     * regions to be erased are extracted from the redact annotations contained inside the given document.
+     * Those redact annotations will be removed from the resultant document. If {@code cleanRedactAnnotations} is false,
+     * then no regions for erasing are specified. In that case use {@link PdfCleanUpTool#addCleanupLocation(PdfCleanUpLocation)}
+     * method to set regions to be erased from the document.
+     *
+     * @param pdfDocument            A {@link PdfDocument} object representing the document
+     *                               to which redaction applies.
+     * @param cleanRedactAnnotations if true - regions to be erased are extracted from the redact annotations contained
+     *                               inside the given document.
+     * @param cleanUpProperties      the precision of the geometric calculations performed during the clean up.
+     */
+    public PdfCleanUpTool(PdfDocument pdfDocument, boolean cleanRedactAnnotations, CleanUpProperties cleanUpProperties) {
         ReflectionUtils.scheduledLicenseCheck();
 
         if (pdfDocument.getReader() == null || pdfDocument.getWriter() == null) {
             throw new PdfException(PdfException.PdfDocumentMustBeOpenedInStampingMode);
         }
         this.pdfDocument = pdfDocument;
-        this.pdfCleanUpLocations = new HashMap<>();
+        this.cleanUpProperties = cleanUpProperties;
+        this.pdfCleanUpLocations = new TreeMap<>();
         this.filteredImagesCache = new FilteredImagesCache();
+        this.filteredFormXObjectsCache = new FilteredFormXObjectsCache();
 
         if (cleanRedactAnnotations) {
             addCleanUpLocationsBasedOnRedactAnnotations();
@@ -203,6 +257,23 @@ public class PdfCleanUpTool {
         }
     }
 
+    /**
+     * Creates a {@link PdfCleanUpTool} object based on the given {@link java.util.List}
+     * of {@link PdfCleanUpLocation}s representing regions to be erased from the document.
+     *
+     * @param cleanUpLocations  list of locations to be cleaned up {@link PdfCleanUpLocation}
+     * @param pdfDocument       A {@link PdfDocument} object representing the document
+     *                          to which redaction applies.
+     * @param cleanUpProperties the precision of the geometric calculations performed during the clean up.
+     */
+    public PdfCleanUpTool(PdfDocument pdfDocument, List<PdfCleanUpLocation> cleanUpLocations,
+            CleanUpProperties cleanUpProperties) {
+        this(pdfDocument, false, cleanUpProperties);
+        for (PdfCleanUpLocation location : cleanUpLocations) {
+            addCleanupLocation(location);
+        }
+    }
+
     public PdfCleanUpTool addCleanupLocation(PdfCleanUpLocation cleanUpLocation) {
         List<PdfCleanUpLocation> pgLocations = this.pdfCleanUpLocations.get(cleanUpLocation.getPage());
         if (pgLocations == null) {
@@ -226,6 +297,120 @@ public class PdfCleanUpTool {
         return this;
     }
 
+    /**
+     * Sets the number of threads which are used to process the content of different pages concurrently.
+     * Only content parsing and filtering are performed concurrently, all the modifications of the document
+     * are performed in the calling thread in the ascending page order. Tagged documents are always
+     * processed sequentially, because the tag structure is modified while content is being parsed.
+     * If the value is greater than 1, the partially cleaned images are also filtered by a separate pool of
+     * the same number of threads while the content of the page is being processed, including tagged documents.
+     * Default: 1, which means that pages are processed one by one in the calling thread.
+     *
+     * @param parallelism the number of threads, must be positive
+     * @return this instance
+     */
+    public PdfCleanUpTool setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism level must be positive.");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Check if pages are flushed right after they have been cleaned up.
+     * Default: False
+     *
+     * @return True if pages are flushed right after they have been cleaned up
+     */
+    public boolean isFlushCleanedPages() {
+        return flushCleanedPages;
+    }
+
+    /**
+     * Sets whether each page is flushed right after it has been cleaned up, together with its cleaned
+     * content stream and newly created form and image XObjects. Pages are cleaned up in the ascending order,
+     * so the memory consumed by the cleaned content is bounded by the largest page rather than by the whole document.
+     * Note that flushed pages cannot be modified after the clean up.
+     *
+     * @param flushCleanedPages true if pages shall be flushed right after they have been cleaned up
+     * @return this instance
+     */
+    public PdfCleanUpTool setFlushCleanedPages(boolean flushCleanedPages) {
+        this.flushCleanedPages = flushCleanedPages;
+        return this;
+    }
+
+    /**
+     * Sets the maximal total size of the data of the filtered images which are kept to be reused when the same
+     * image is cleaned with the same areas again, e.g. when it is shown on several pages. When the size is exceeded,
+     * the least recently used images are evicted. The evicted images are still written to the document, but their
+     * data is released as soon as they are flushed. Note that the image which doesn't fit the cache alone is
+     * still kept until the next one is cached.
+     * Default: {@link Long#MAX_VALUE}, which means that the filtered images are kept until the tool is discarded.
+     *
+     * @param maxSize the maximal size in bytes, must not be negative
+     * @return this instance
+     */
+    public PdfCleanUpTool setFilteredImagesCacheSize(long maxSize) {
+        filteredImagesCache.setMaxSize(maxSize);
+        return this;
+    }
+
+    /**
+     * Sets the cache of the image filtering results which is shared with other {@link PdfCleanUpTool} instances,
+     * e.g. the ones processing other documents with the same logos or signatures. The image which is not found
+     * in the cache of this tool is looked up in the shared cache by the digest of its content and the cleaned areas
+     * before being filtered.
+     * Default: null, which means that the filtering results are reused within this tool only.
+     *
+     * @param sharedFilteredImagesCache the shared cache, or null
+     * @return this instance
+     */
+    public PdfCleanUpTool setSharedFilteredImagesCache(SharedFilteredImagesCache sharedFilteredImagesCache) {
+        this.sharedFilteredImagesCache = sharedFilteredImagesCache;
+        return this;
+    }
+
+    /**
+     * Gets the maximal total size of the data of the filtered images which are kept to be reused,
+     * see {@link #setFilteredImagesCacheSize(long)}.
+     *
+     * @return the maximal size in bytes
+     */
+    public long getFilteredImagesCacheSize() {
+        return filteredImagesCache.getMaxSize();
+    }
+
+    /**
+     * Gets the number of times the partially cleaned image was reused from the filtered images cache.
+     *
+     * @return the number of the cache hits
+     */
+    public long getFilteredImagesCacheHits() {
+        return filteredImagesCache.getHits();
+    }
+
+    /**
+     * Gets the number of times the partially cleaned image wasn't found in the filtered images cache
+     * and had to be filtered.
+     *
+     * @return the number of the cache misses
+     */
+    public long getFilteredImagesCacheMisses() {
+        return filteredImagesCache.getMisses();
+    }
+
+    /**
+     * Gets the number of filtered images evicted from the cache because of its size limit,
+     * see {@link #setFilteredImagesCacheSize(long)}.
+     *
+     * @return the number of the cache evictions
+     */
+    public long getFilteredImagesCacheEvictions() {
+        return filteredImagesCache.getEvictions();
+    }
+
     /**
      * Cleans the document by erasing all the areas which are either provided or
      * extracted from redaction annotations.
@@ -233,8 +418,22 @@ public class PdfCleanUpTool {
      * @throws IOException IOException
      */
     public void cleanUp() throws IOException {
-        for (Map.Entry<Integer, List<PdfCleanUpLocation>> entry : pdfCleanUpLocations.entrySet()) {
-            cleanUpPage(entry.getKey(), entry.getValue());
+        if (parallelism > 1) {
+            imageFilteringExecutor = Executors.newFixedThreadPool(parallelism);
+        }
+        try {
+            if (parallelism > 1 && pdfCleanUpLocations.size() > 1 && !pdfDocument.isTagged()) {
+                cleanUpPagesConcurrently();
+            } else {
+                for (Map.Entry<Integer, List<PdfCleanUpLocation>> entry : pdfCleanUpLocations.entrySet()) {
+                    cleanUpPage(entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            if (imageFilteringExecutor != null) {
+                imageFilteringExecutor.shutdownNow();
+                imageFilteringExecutor = null;
+            }
         }
 
         if (redactAnnotations != null) { // if it isn't null, then we are in "extract locations from redact annots" mode
@@ -250,29 +449,213 @@ public class PdfCleanUpTool {
      * @param pageNumber       the page to be cleaned up
      * @param cleanUpLocations the locations to be cleaned up
      */
-    private void cleanUpPage(int pageNumber, List<PdfCleanUpLocation> cleanUpLocations) {
+    private void cleanUpPage(int pageNumber, List<PdfCleanUpLocation> cleanUpLocations) throws IOException {
         if (cleanUpLocations.size() == 0) {
             return;
         }
 
+        PdfPage page = pdfDocument.getPage(pageNumber);
+        PdfCleanUpProcessor cleanUpProcessor = createCleanUpProcessor(cleanUpLocations);
+        cleanUpProcessor.processPageContent(page);
+        cleanUpProcessor.resolvePendingImages();
+        applyCleanedContent(page, cleanUpProcessor, cleanUpLocations);
+        if (flushCleanedPages) {
+            flushCleanedPage(page, cleanUpProcessor);
+        }
+    }
+
+    /**
+     * Cleans the pages of the document concurrently. Before the page content is parsed, the content and all the
+     * objects reachable from the page resources, including the bytes of form and image XObjects, are read under
+     * the document lock, so that parsing threads do not read the document themselves, except the cases when it is
+     * done under the document lock by {@link PdfCleanUpProcessor}. Cleaned content is set to the pages in the
+     * ascending page order. At most {@link #parallelism} pages are processed ahead of the page which is to be
+     * set the cleaned content next, and the processing results are released as soon as they are applied,
+     * so that the pages which are being kept in memory are limited in number.
+     */
+    private void cleanUpPagesConcurrently() throws IOException {
+        List<Integer> pageNumbers = new ArrayList<>(pdfCleanUpLocations.size());
+        for (Map.Entry<Integer, List<PdfCleanUpLocation>> entry : pdfCleanUpLocations.entrySet()) {
+            if (entry.getValue().size() != 0) {
+                pageNumbers.add(entry.getKey());
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Deque<Future<PdfCleanUpProcessor>> window = new ArrayDeque<>(parallelism);
+            int nextPageToSubmit = 0;
+            for (int i = 0; i < pageNumbers.size(); ++i) {
+                while (nextPageToSubmit < pageNumbers.size() && window.size() < parallelism) {
+                    window.addLast(pool.submit(createPageCleanUpTask(pageNumbers.get(nextPageToSubmit++))));
+                }
+                PdfCleanUpProcessor cleanUpProcessor = window.pollFirst().get();
+                synchronized (pdfDocument) {
+                    PdfPage page = pdfDocument.getPage((int) pageNumbers.get(i));
+                    applyCleanedContent(page, cleanUpProcessor, pdfCleanUpLocations.get(pageNumbers.get(i)));
+                    if (flushCleanedPages) {
+                        flushCleanedPage(page, cleanUpProcessor);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PdfException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new PdfException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Callable<PdfCleanUpProcessor> createPageCleanUpTask(final int pageNumber) {
+        final PdfCleanUpProcessor cleanUpProcessor = createCleanUpProcessor(pdfCleanUpLocations.get(pageNumber));
+        return new Callable<PdfCleanUpProcessor>() {
+            @Override
+            public PdfCleanUpProcessor call() {
+                PdfPage page;
+                byte[] contentBytes;
+                Map<PdfStream, byte[]> streamBytes = new IdentityHashMap<>();
+                synchronized (pdfDocument) {
+                    page = pdfDocument.getPage(pageNumber);
+                    contentBytes = page.getContentBytes();
+                    loadPageResources(page, streamBytes);
+                }
+                cleanUpProcessor.processPageContent(page, contentBytes, streamBytes);
+                cleanUpProcessor.resolvePendingImages();
+                return cleanUpProcessor;
+            }
+        };
+    }
+
+    private PdfCleanUpProcessor createCleanUpProcessor(List<PdfCleanUpLocation> cleanUpLocations) {
         List<Rectangle> regions = new ArrayList<>();
         for (PdfCleanUpLocation cleanUpLocation : cleanUpLocations) {
             regions.add(cleanUpLocation.getRegion());
         }
 
-        PdfPage page = pdfDocument.getPage(pageNumber);
-        PdfCleanUpProcessor cleanUpProcessor = new PdfCleanUpProcessor(regions, pdfDocument);
+        PdfCleanUpProcessor cleanUpProcessor = new PdfCleanUpProcessor(regions, pdfDocument, cleanUpProperties);
         cleanUpProcessor.setFilteredImagesCache(filteredImagesCache);
-        cleanUpProcessor.processPageContent(page);
+        cleanUpProcessor.setFilteredFormXObjectsCache(filteredFormXObjectsCache);
+        cleanUpProcessor.setImageFilteringExecutor(imageFilteringExecutor);
+        cleanUpProcessor.setSharedFilteredImagesCache(sharedFilteredImagesCache);
+        return cleanUpProcessor;
+    }
+
+    /**
+     * Sets the cleaned content to the page, processes page annotations and draws colored cleaned locations.
+     *
+     * @param page             the page to which cleaned content belongs
+     * @param cleanUpProcessor the processor which has already processed the page content
+     * @param cleanUpLocations the locations to be cleaned up
+     */
+    private void applyCleanedContent(PdfPage page, PdfCleanUpProcessor cleanUpProcessor,
+            List<PdfCleanUpLocation> cleanUpLocations) {
+        List<Rectangle> regions = new ArrayList<>();
+        for (PdfCleanUpLocation cleanUpLocation : cleanUpLocations) {
+            regions.add(cleanUpLocation.getRegion());
+        }
+
         if (processAnnotations) {
             cleanUpProcessor.processPageAnnotations(page, regions, redactAnnotations != null);
         }
 
         PdfCanvas pageCleanedContents = cleanUpProcessor.popCleanedCanvas();
-        page.put(PdfName.Contents, pageCleanedContents.getContentStream());
-        page.setResources(pageCleanedContents.getResources());
+        if (cleanUpProcessor.isContentModified()) {
+            page.put(PdfName.Contents, pageCleanedContents.getContentStream());
+            page.setResources(pageCleanedContents.getResources());
+            colorCleanedLocations(pageCleanedContents, cleanUpLocations);
+        } else if (hasCleanUpColor(cleanUpLocations)) {
+            // nothing has been cleaned, so the original content and resources are kept as is
+            colorCleanedLocations(new PdfCanvas(page), cleanUpLocations);
+        }
+    }
+
+    private static boolean hasCleanUpColor(List<PdfCleanUpLocation> cleanUpLocations) {
+        for (PdfCleanUpLocation location : cleanUpLocations) {
+            if (location.getCleanUpColor() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Flushes the cleaned page together with its content stream and XObjects created during the clean up.
+     * Redact annotations of the page are removed beforehand, because the page cannot be modified after flushing.
+     *
+     * @param page             the cleaned page
+     * @param cleanUpProcessor the processor which has processed the page content
+     */
+    private void flushCleanedPage(PdfPage page, PdfCleanUpProcessor cleanUpProcessor) throws IOException {
+        if (redactAnnotations != null) {
+            List<PdfRedactAnnotation> pageRedactAnnotations = new ArrayList<>();
+            for (PdfRedactAnnotation annotation : redactAnnotations.keySet()) {
+                PdfPage annotationPage = annotation.getPage();
+                if (annotationPage != null && annotationPage.getPdfObject() == page.getPdfObject()) {
+                    pageRedactAnnotations.add(annotation);
+                }
+            }
+            for (PdfRedactAnnotation annotation : pageRedactAnnotations) {
+                removeRedactAnnot(annotation);
+                redactAnnotations.remove(annotation);
+            }
+        }
+
+        if (cleanUpProcessor.isContentModified()) {
+            // otherwise created XObjects are not used by the page
+            for (PdfXObject xObject : cleanUpProcessor.getCreatedXObjects()) {
+                xObject.getPdfObject().makeIndirect(pdfDocument).flush();
+            }
+        }
+        for (int i = 0; i < page.getContentStreamCount(); ++i) {
+            page.getContentStream(i).makeIndirect(pdfDocument).flush();
+        }
+        page.flush();
+    }
 
-        colorCleanedLocations(pageCleanedContents, cleanUpLocations);
+    /**
+     * Loads all the objects reachable from the page resources, so that the page content could be parsed
+     * without reading objects from the document.
+     *
+     * @param page        the page which resources are to be loaded
+     * @param streamBytes the map to put the decoded bytes of the form XObjects and the encoded bytes
+     *                    of the image XObjects to
+     */
+    private static void loadPageResources(PdfPage page, Map<PdfStream, byte[]> streamBytes) {
+        page.getCropBox();
+        Set<PdfObject> loadedObjects = Collections.newSetFromMap(new IdentityHashMap<PdfObject, Boolean>());
+        loadObject(page.getResources().getPdfObject(), loadedObjects, streamBytes);
+    }
+
+    private static void loadObject(PdfObject object, Set<PdfObject> loadedObjects, Map<PdfStream, byte[]> streamBytes) {
+        if (object == null || !(object.isDictionary() || object.isStream() || object.isArray())
+                || !loadedObjects.add(object)) {
+            return;
+        }
+        if (object.isArray()) {
+            PdfArray array = (PdfArray) object;
+            for (int i = 0; i < array.size(); ++i) {
+                loadObject(array.get(i), loadedObjects, streamBytes);
+            }
+        } else {
+            PdfDictionary dictionary = (PdfDictionary) object;
+            for (PdfName key : dictionary.keySet()) {
+                loadObject(dictionary.get(key), loadedObjects, streamBytes);
+            }
+            if (object.isStream()) {
+                PdfStream stream = (PdfStream) object;
+                PdfName subtype = stream.getAsName(PdfName.Subtype);
+                if (PdfName.Form.equals(subtype)) {
+                    streamBytes.put(stream, stream.getBytes());
+                } else if (PdfName.Image.equals(subtype)) {
+                    streamBytes.put(stream, stream.getBytes(false));
+                }
+            }
+        }
     }
 
     /**
@@ -399,26 +782,30 @@ public class PdfCleanUpTool {
      */
     private void removeRedactAnnots() throws IOException {
         for (PdfRedactAnnotation annotation : redactAnnotations.keySet()) {
-            PdfPage page = annotation.getPage();
-            if (page != null) {
-                page.removeAnnotation(annotation);
+            removeRedactAnnot(annotation);
+        }
+    }
 
-                PdfPopupAnnotation popup = annotation.getPopup();
-                if (popup != null) {
-                    page.removeAnnotation(popup);
-                }
+    private void removeRedactAnnot(PdfRedactAnnotation annotation) throws IOException {
+        PdfPage page = annotation.getPage();
+        if (page != null) {
+            page.removeAnnotation(annotation);
+
+            PdfPopupAnnotation popup = annotation.getPopup();
+            if (popup != null) {
+                page.removeAnnotation(popup);
             }
+        }
 
-            PdfCanvas canvas = new PdfCanvas(page);
-            PdfStream redactRolloverAppearance = annotation.getRedactRolloverAppearance();
-            PdfString overlayText = annotation.getOverlayText();
-            Rectangle annotRect = annotation.getRectangle().toRectangle();
+        PdfCanvas canvas = new PdfCanvas(page);
+        PdfStream redactRolloverAppearance = annotation.getRedactRolloverAppearance();
+        PdfString overlayText = annotation.getOverlayText();
+        Rectangle annotRect = annotation.getRectangle().toRectangle();
 
-            if (redactRolloverAppearance != null) {
-                drawRolloverAppearance(canvas, redactRolloverAppearance, annotRect, redactAnnotations.get(annotation));
-            } else if (overlayText != null && !overlayText.toUnicodeString().isEmpty()) {
-                drawOverlayText(canvas, overlayText.toUnicodeString(), annotRect, annotation.getRepeat(), annotation.getDefaultAppearance(), annotation.getJustification());
-            }
+        if (redactRolloverAppearance != null) {
+            drawRolloverAppearance(canvas, redactRolloverAppearance, annotRect, redactAnnotations.get(annotation));
+        } else if (overlayText != null && !overlayText.toUnicodeString().isEmpty()) {
+            drawOverlayText(canvas, overlayText.toUnicodeString(), annotRect, annotation.getRepeat(), annotation.getDefaultAppearance(), annotation.getJustification());
         }
     }
 
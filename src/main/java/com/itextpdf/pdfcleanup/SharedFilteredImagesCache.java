@@ -0,0 +1,691 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.io.util.MessageFormatUtil;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfBoolean;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfIndirectReference;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNull;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.PdfString;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The cache of the image filtering results which might be shared between {@link PdfCleanUpTool} instances,
+ * including the ones processing different documents concurrently. Unlike the per document cache, the images
+ * are identified by the digest of their encoded data and dictionary, so the same logo or signature cleaned
+ * with the same areas in many documents is filtered only once.
+ * <p>
+ * The results are kept in memory within the given size limit. If the spill directory is set, the results
+ * evicted from memory are stored there and read back when requested again, so they might be reused
+ * by the tools in other processes as well. The directory is never cleared by the cache.
+ * <p>
+ * Each spill file contains the key and the digest of the stored result, so the corrupted or misplaced files
+ * are detected and deleted. The digest doesn't protect from the deliberate substitution though: anyone who
+ * can write to the spill directory can make the cache return the result which is not redacted, so the directory
+ * must be accessible only to the trusted processes which share the cache.
+ */
+public final class SharedFilteredImagesCache {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final String SPILL_FILE_EXTENSION = ".fic";
+    private static final int FORMAT_VERSION = 1;
+
+    // the length prefix of the UTF encoded key
+    private static final int MIN_KEY_SIZE = 2;
+    private static final int MAX_NESTING_DEPTH = 256;
+
+    private static final int MODIFIED_FLAG = 1;
+    private static final int IMAGE_FLAG = 2;
+    private static final int CONVERTED_FLAG = 4;
+    private static final int MASK_FLAG = 8;
+
+    private static final byte NULL_TYPE = 0;
+    private static final byte BOOLEAN_TYPE = 1;
+    private static final byte NUMBER_TYPE = 2;
+    private static final byte STRING_TYPE = 3;
+    private static final byte NAME_TYPE = 4;
+    private static final byte ARRAY_TYPE = 5;
+    private static final byte DICTIONARY_TYPE = 6;
+    private static final byte STREAM_TYPE = 7;
+
+    private final long maxMemorySize;
+    private final File spillDirectory;
+
+    /**
+     * Serialized filtering results in the least recently used first order.
+     */
+    private final Map<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memorySize;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates the cache which keeps the filtering results in memory only.
+     *
+     * @param maxMemorySize the maximal total size in bytes of the filtering results kept in memory, must not be negative
+     */
+    public SharedFilteredImagesCache(long maxMemorySize) {
+        this(maxMemorySize, null);
+    }
+
+    /**
+     * Creates the cache which stores the filtering results evicted from memory in the given directory.
+     *
+     * @param maxMemorySize  the maximal total size in bytes of the filtering results kept in memory,
+     *                       must not be negative
+     * @param spillDirectory the existing directory to store the filtering results evicted from memory,
+     *                       null if they shall be discarded, the directory must be writable only by the trusted
+     *                       processes
+     */
+    public SharedFilteredImagesCache(long maxMemorySize, File spillDirectory) {
+        if (maxMemorySize < 0) {
+            throw new IllegalArgumentException("Filtered images cache size must not be negative.");
+        }
+        if (spillDirectory != null && !spillDirectory.isDirectory()) {
+            throw new IllegalArgumentException("Filtered images cache spill directory must exist.");
+        }
+        this.maxMemorySize = maxMemorySize;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Gets the number of times the filtering result was found in the cache, either in memory or in the spill directory.
+     *
+     * @return the number of the cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of times the filtering result wasn't found in the cache.
+     *
+     * @return the number of the cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the total size of the filtering results kept in memory.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getMemorySize() {
+        return memorySize;
+    }
+
+    /**
+     * Creates the key of the filtering case: the digest of the image encoded data, its dictionary (the objects
+     * it refers to are resolved, the stream masks are ignored as they are filtered separately) and the normalized
+     * cleaned areas.
+     *
+     * @param image                 the image to be filtered
+     * @param cleanedAreas          the areas to be cleaned in the image space
+     * @param dctDomainImageCleanUp whether the DCT encoded images are cleaned in the DCT domain
+     * @return the key, or null if the image can't be identified by its content, e.g. it has cyclic references
+     */
+    static String createKey(PdfImageXObject image, List<Rectangle> cleanedAreas, boolean dctDomainImageCleanUp) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        try {
+            DataOutputStream out = new DataOutputStream(new DigestOutputStream(new NullOutputStream(), digest));
+            out.writeInt(FORMAT_VERSION);
+            out.writeBoolean(dctDomainImageCleanUp);
+            long[] quantizedAreas = FilteredImagesCache.quantizeAreas(cleanedAreas);
+            out.writeInt(quantizedAreas.length);
+            for (long coordinate : quantizedAreas) {
+                out.writeLong(coordinate);
+            }
+            PdfStream imageStream = image.getPdfObject();
+            Map<PdfObject, Boolean> visited = new IdentityHashMap<>();
+            visited.put(imageStream, Boolean.TRUE);
+            writeBytes(out, imageStream.getBytes(false));
+            List<PdfName> keys = sortedKeys(imageStream);
+            out.writeInt(keys.size());
+            for (PdfName key : keys) {
+                PdfObject value = imageStream.get(key);
+                if ((PdfName.SMask.equals(key) || PdfName.Mask.equals(key)) && value != null && value.isStream()) {
+                    value = null;
+                }
+                out.writeUTF(key.getValue());
+                writeObject(out, value, visited);
+            }
+            out.flush();
+        } catch (IOException e) {
+            return null;
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Retrieves the saved filtering result. The entry which can't be restored, e.g. the corrupted spill file,
+     * is dropped from the cache and is counted as a miss.
+     *
+     * @param key         the filtering case key created by {@link #createKey(PdfImageXObject, List, boolean)}
+     * @param sourceImage the image which is being filtered, the entries of the filtered image dictionary which
+     *                    were copied from the filtered image are taken from it
+     * @return the filtering result or null if it wasn't saved
+     */
+    CachedFilteredImage get(String key, PdfImageXObject sourceImage) {
+        byte[] entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        boolean spilled = false;
+        if (entry == null && spillDirectory != null) {
+            // the disk is accessed outside of the monitor, so that the other tools aren't blocked meanwhile
+            entry = readSpilledEntry(key);
+            spilled = entry != null;
+        }
+        CachedFilteredImage cachedImage = null;
+        if (entry != null) {
+            try {
+                cachedImage = readEntry(entry, sourceImage);
+            } catch (IOException | RuntimeException e) {
+                cachedImage = null;
+            }
+        }
+        List<Map.Entry<String, byte[]>> evicted = Collections.<Map.Entry<String, byte[]>>emptyList();
+        synchronized (this) {
+            if (cachedImage == null) {
+                ++misses;
+                if (entry != null && !spilled && entries.get(key) == entry) {
+                    entries.remove(key);
+                    memorySize -= entry.length;
+                }
+            } else {
+                ++hits;
+                if (spilled) {
+                    evicted = putEntry(key, entry);
+                }
+            }
+        }
+        if (entry != null && cachedImage == null && spillDirectory != null) {
+            deleteSpilledEntry(key);
+        }
+        writeSpilledEntries(evicted);
+        return cachedImage;
+    }
+
+    /**
+     * Saves the filtering result.
+     *
+     * @param key           the filtering case key created by {@link #createKey(PdfImageXObject, List, boolean)}
+     * @param sourceImage   the image which has been filtered
+     * @param modified      whether the image has been modified by the filtering
+     * @param filteredImage the filtered image or null if it has been removed
+     * @param converted     whether the filtered image has been decoded and encoded with the java libraries
+     * @param mask          whether the filtered image is a mask
+     */
+    void put(String key, PdfImageXObject sourceImage, boolean modified, PdfImageXObject filteredImage,
+            boolean converted, boolean mask) {
+        byte[] entry;
+        try {
+            entry = writeEntry(sourceImage, modified, filteredImage, converted, mask);
+        } catch (IOException e) {
+            // the filtered image refers to the objects which can't be stored, it just won't be reused
+            return;
+        }
+        List<Map.Entry<String, byte[]>> evicted;
+        synchronized (this) {
+            evicted = putEntry(key, entry);
+        }
+        writeSpilledEntries(evicted);
+    }
+
+    /**
+     * Puts the entry to memory and evicts the least recently used entries exceeding the memory size limit.
+     *
+     * @return the evicted entries which shall be written to the spill directory, if it is set
+     */
+    private List<Map.Entry<String, byte[]>> putEntry(String key, byte[] entry) {
+        byte[] replaced = entries.put(key, entry);
+        memorySize += entry.length - (replaced != null ? replaced.length : 0);
+        List<Map.Entry<String, byte[]>> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, byte[]>> iterator = entries.entrySet().iterator();
+        while (memorySize > maxMemorySize && iterator.hasNext()) {
+            Map.Entry<String, byte[]> eldest = iterator.next();
+            evicted.add(new AbstractMap.SimpleImmutableEntry<>(eldest.getKey(), eldest.getValue()));
+            iterator.remove();
+            memorySize -= eldest.getValue().length;
+        }
+        return evicted;
+    }
+
+    private void writeSpilledEntries(List<Map.Entry<String, byte[]>> evicted) {
+        if (spillDirectory != null) {
+            for (Map.Entry<String, byte[]> entry : evicted) {
+                writeSpilledEntry(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads the entry from the spill file. The file contains the key and the digest of the entry,
+     * so the file which is corrupted or which is stored under the wrong name is not used.
+     */
+    private byte[] readSpilledEntry(String key) {
+        File file = getSpillFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        byte[] fileBytes;
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.min(file.length(), Integer.MAX_VALUE));
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    bytes.write(buffer, 0, read);
+                }
+                fileBytes = bytes.toByteArray();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            logFileAccessFailure(file);
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(fileBytes));
+            if (in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF())) {
+                throw new IOException("The spill file doesn't match the key.");
+            }
+            byte[] storedDigest = readBytes(in);
+            byte[] entry = readBytes(in);
+            if (!MessageDigest.isEqual(storedDigest, digest(entry))) {
+                throw new IOException("The spill file is corrupted.");
+            }
+            return entry;
+        } catch (IOException e) {
+            logFileAccessFailure(file);
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeSpilledEntry(String key, byte[] entry) {
+        File file = getSpillFile(key);
+        if (file.isFile()) {
+            return;
+        }
+        File tempFile = null;
+        try {
+            // the entry is written to the uniquely named temporary file first, so that the concurrent readers
+            // (including the ones in the other processes) never see a partial entry
+            tempFile = File.createTempFile(key, ".tmp", spillDirectory);
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(tempFile));
+            try {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(key);
+                writeBytes(out, digest(entry));
+                writeBytes(out, entry);
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(file) && !file.isFile()) {
+                throw new IOException("Cannot rename " + tempFile);
+            }
+        } catch (IOException e) {
+            logFileAccessFailure(file);
+        } finally {
+            if (tempFile != null && tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private void deleteSpilledEntry(String key) {
+        File file = getSpillFile(key);
+        if (file.isFile() && !file.delete()) {
+            logFileAccessFailure(file);
+        }
+    }
+
+    private File getSpillFile(String key) {
+        return new File(spillDirectory, key + SPILL_FILE_EXTENSION);
+    }
+
+    private static byte[] digest(byte[] bytes) throws IOException {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM).digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void logFileAccessFailure(File file) {
+        Logger logger = LoggerFactory.getLogger(SharedFilteredImagesCache.class);
+        logger.warn(MessageFormatUtil.format(CleanUpLogMessageConstant.SHARED_FILTERED_IMAGES_CACHE_FILE_ACCESS_FAILED,
+                file.getAbsolutePath()));
+    }
+
+    /**
+     * Serializes the filtering result. The filtered image dictionary entries, which are the same objects as
+     * the source image ones, are stored by their keys only. The other ones are stored with all the objects
+     * they refer to, so the result doesn't depend on the document.
+     */
+    private static byte[] writeEntry(PdfImageXObject sourceImage, boolean modified, PdfImageXObject filteredImage,
+            boolean converted, boolean mask) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        int flags = (modified ? MODIFIED_FLAG : 0) | (filteredImage != null ? IMAGE_FLAG : 0)
+                | (converted ? CONVERTED_FLAG : 0) | (mask ? MASK_FLAG : 0);
+        out.writeByte(flags);
+        if (filteredImage != null) {
+            PdfStream sourceStream = sourceImage.getPdfObject();
+            PdfStream filteredStream = filteredImage.getPdfObject();
+            writeBytes(out, filteredStream.getBytes(false));
+            List<PdfName> inheritedKeys = new ArrayList<>();
+            List<PdfName> ownKeys = new ArrayList<>();
+            for (PdfName key : filteredStream.keySet()) {
+                if (PdfName.Length.equals(key)) {
+                    continue;
+                }
+                if (filteredStream.get(key, false) == sourceStream.get(key, false)) {
+                    inheritedKeys.add(key);
+                } else {
+                    ownKeys.add(key);
+                }
+            }
+            out.writeInt(inheritedKeys.size());
+            for (PdfName key : inheritedKeys) {
+                out.writeUTF(key.getValue());
+            }
+            out.writeInt(ownKeys.size());
+            Map<PdfObject, Boolean> visited = new IdentityHashMap<>();
+            for (PdfName key : ownKeys) {
+                out.writeUTF(key.getValue());
+                writeObject(out, filteredStream.get(key), visited);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static CachedFilteredImage readEntry(byte[] entry, PdfImageXObject sourceImage) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry));
+        int flags = in.readUnsignedByte();
+        PdfImageXObject filteredImage = null;
+        if ((flags & IMAGE_FLAG) != 0) {
+            PdfStream sourceStream = sourceImage.getPdfObject();
+            PdfStream filteredStream = new PdfStream(readBytes(in));
+            int inheritedKeysCount = readLength(in, MIN_KEY_SIZE);
+            for (int i = 0; i < inheritedKeysCount; ++i) {
+                PdfName key = new PdfName(in.readUTF());
+                PdfObject value = sourceStream.get(key, false);
+                if (value == null) {
+                    throw new IOException("The source image doesn't match the cached one.");
+                }
+                filteredStream.put(key, value);
+            }
+            int ownKeysCount = readLength(in, MIN_KEY_SIZE);
+            for (int i = 0; i < ownKeysCount; ++i) {
+                PdfName key = new PdfName(in.readUTF());
+                filteredStream.put(key, readObject(in, 0));
+            }
+            filteredImage = new PdfImageXObject(filteredStream);
+        }
+        return new CachedFilteredImage((flags & MODIFIED_FLAG) != 0, filteredImage,
+                (flags & CONVERTED_FLAG) != 0, (flags & MASK_FLAG) != 0);
+    }
+
+    /**
+     * Writes the object with all the objects it refers to. The dictionary entries are written in the order
+     * of their keys, so the output is the same for the equal objects and might be used to compute their digest.
+     */
+    private static void writeObject(DataOutputStream out, PdfObject object, Map<PdfObject, Boolean> visited)
+            throws IOException {
+        if (object != null && object.isIndirectReference()) {
+            object = ((PdfIndirectReference) object).getRefersTo();
+        }
+        if (object == null || object.isNull()) {
+            out.writeByte(NULL_TYPE);
+        } else if (object.isBoolean()) {
+            out.writeByte(BOOLEAN_TYPE);
+            out.writeBoolean(((PdfBoolean) object).getValue());
+        } else if (object.isNumber()) {
+            out.writeByte(NUMBER_TYPE);
+            out.writeDouble(((PdfNumber) object).getValue());
+        } else if (object.isString()) {
+            out.writeByte(STRING_TYPE);
+            out.writeBoolean(((PdfString) object).isHexWriting());
+            writeBytes(out, ((PdfString) object).getValueBytes());
+        } else if (object.isName()) {
+            out.writeByte(NAME_TYPE);
+            out.writeUTF(((PdfName) object).getValue());
+        } else if (object.isArray() || object.isDictionary() || object.isStream()) {
+            if (visited.put(object, Boolean.TRUE) != null) {
+                throw new IOException("Cyclic references can't be stored.");
+            }
+            if (object.isArray()) {
+                PdfArray array = (PdfArray) object;
+                out.writeByte(ARRAY_TYPE);
+                out.writeInt(array.size());
+                for (int i = 0; i < array.size(); ++i) {
+                    writeObject(out, array.get(i, false), visited);
+                }
+            } else {
+                PdfDictionary dictionary = (PdfDictionary) object;
+                if (object.isStream()) {
+                    out.writeByte(STREAM_TYPE);
+                    writeBytes(out, ((PdfStream) object).getBytes(false));
+                } else {
+                    out.writeByte(DICTIONARY_TYPE);
+                }
+                List<PdfName> keys = sortedKeys(dictionary);
+                out.writeInt(keys.size());
+                for (PdfName key : keys) {
+                    out.writeUTF(key.getValue());
+                    writeObject(out, dictionary.get(key, false), visited);
+                }
+            }
+            visited.remove(object);
+        } else {
+            throw new IOException("Unexpected object type.");
+        }
+    }
+
+    private static PdfObject readObject(DataInputStream in, int depth) throws IOException {
+        if (depth > MAX_NESTING_DEPTH) {
+            throw new IOException("The serialized object is nested too deeply.");
+        }
+        byte type = in.readByte();
+        switch (type) {
+            case NULL_TYPE:
+                return PdfNull.PDF_NULL;
+            case BOOLEAN_TYPE:
+                return PdfBoolean.valueOf(in.readBoolean());
+            case NUMBER_TYPE:
+                double value = in.readDouble();
+                if (value == Math.rint(value) && Math.abs(value) <= Integer.MAX_VALUE) {
+                    return new PdfNumber((int) value);
+                }
+                return new PdfNumber(value);
+            case STRING_TYPE:
+                boolean hexWriting = in.readBoolean();
+                return new PdfString(readBytes(in), hexWriting);
+            case NAME_TYPE:
+                return new PdfName(in.readUTF());
+            case ARRAY_TYPE:
+                int size = readLength(in, 1);
+                PdfArray array = new PdfArray();
+                for (int i = 0; i < size; ++i) {
+                    array.add(readObject(in, depth + 1));
+                }
+                return array;
+            case DICTIONARY_TYPE:
+            case STREAM_TYPE:
+                PdfDictionary dictionary = type == STREAM_TYPE ? new PdfStream(readBytes(in)) : new PdfDictionary();
+                int count = readLength(in, MIN_KEY_SIZE + 1);
+                for (int i = 0; i < count; ++i) {
+                    PdfName key = new PdfName(in.readUTF());
+                    dictionary.put(key, readObject(in, depth + 1));
+                }
+                if (type == STREAM_TYPE) {
+                    dictionary.remove(PdfName.Length);
+                }
+                return dictionary;
+            default:
+                throw new IOException("Unexpected object type.");
+        }
+    }
+
+    private static List<PdfName> sortedKeys(PdfDictionary dictionary) {
+        List<PdfName> keys = new ArrayList<>(dictionary.keySet());
+        Collections.sort(keys);
+        return keys;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in, 1)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads the length of the serialized data checking that it isn't longer than the data left, the input
+     * stream shall be created over a byte array.
+     *
+     * @param minItemSize the minimal size in bytes of the serialized item
+     */
+    private static int readLength(DataInputStream in, int minItemSize) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available() / minItemSize) {
+            throw new IOException("Unexpected length of the serialized data.");
+        }
+        return length;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * The filtering result restored from the cache.
+     */
+    static final class CachedFilteredImage {
+        private final boolean modified;
+        private final PdfImageXObject image;
+        private final boolean converted;
+        private final boolean mask;
+
+        CachedFilteredImage(boolean modified, PdfImageXObject image, boolean converted, boolean mask) {
+            this.modified = modified;
+            this.image = image;
+            this.converted = converted;
+            this.mask = mask;
+        }
+
+        boolean isModified() {
+            return modified;
+        }
+
+        PdfImageXObject getImage() {
+            return image;
+        }
+
+        boolean isConverted() {
+            return converted;
+        }
+
+        boolean isMask() {
+            return mask;
+        }
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.io.font.otf.GlyphLine;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfType0Font;
+import com.itextpdf.kernel.geom.LineSegment;
+import com.itextpdf.kernel.geom.Point;
+import com.itextpdf.kernel.geom.Vector;
+import com.itextpdf.kernel.pdf.PdfString;
+import com.itextpdf.kernel.pdf.canvas.parser.data.TextRenderInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Layout of the glyphs of a shown text string along its baseline. It is calculated from the advance widths
+ * of the glyphs the same way as {@link TextRenderInfo#getCharacterRenderInfos()} does it, but without creating
+ * a {@link TextRenderInfo} per glyph. This allows to find the range of glyphs, which might be affected by a cleanup
+ * region, with a binary search and to keep the other glyphs as whole string runs.
+ * <p>
+ * Horizontal positions of the glyphs are expressed in the unscaled text space units, i.e. the units
+ * of {@link TextRenderInfo#getUnscaledWidth()}.
+ */
+class TextGlyphsLayout {
+    private static final float WIDTH_EPS = 1e-3f;
+
+    private final TextRenderInfo text;
+    private final List<PdfString> glyphs;
+    private final boolean simpleFont;
+
+    private final float[] glyphStarts;
+    private final float[] glyphWidths;
+    private final float[] glyphAdvances;
+
+    /**
+     * Glyph ends maximum over the glyphs preceding (inclusively) the given glyph, non-decreasing.
+     */
+    private final float[] maxEndsBefore;
+
+    /**
+     * Glyph starts minimum over the glyphs following (inclusively) the given glyph, non-decreasing.
+     */
+    private final float[] minStartsAfter;
+
+    // text space to user space mapping: point(x, y) = descentStart + x * xAxis + y * yAxis, where y is in [0, 1]
+    private final Point ascentStart;
+    private final Point descentStart;
+    private final Point xAxis;
+    private final Point yAxis;
+
+    private TextGlyphsLayout(TextRenderInfo text, List<PdfString> glyphs, boolean simpleFont, float[] glyphStarts,
+                             float[] glyphWidths, float[] glyphAdvances, Point ascentStart, Point descentStart,
+                             Point xAxis, Point yAxis) {
+        this.text = text;
+        this.glyphs = glyphs;
+        this.simpleFont = simpleFont;
+        this.glyphStarts = glyphStarts;
+        this.glyphWidths = glyphWidths;
+        this.glyphAdvances = glyphAdvances;
+        this.ascentStart = ascentStart;
+        this.descentStart = descentStart;
+        this.xAxis = xAxis;
+        this.yAxis = yAxis;
+
+        int size = glyphs.size();
+        maxEndsBefore = new float[size];
+        minStartsAfter = new float[size];
+        for (int i = 0; i < size; ++i) {
+            float end = glyphStarts[i] + glyphWidths[i];
+            maxEndsBefore[i] = i == 0 ? end : Math.max(maxEndsBefore[i - 1], end);
+        }
+        for (int i = size - 1; i >= 0; --i) {
+            minStartsAfter[i] = i == size - 1 ? glyphStarts[i] : Math.min(minStartsAfter[i + 1], glyphStarts[i]);
+        }
+    }
+
+    /**
+     * Calculates the glyphs layout of the text.
+     *
+     * @param text the text render info of the whole shown string
+     * @return the layout or {@code null} if the layout cannot be reliably calculated (e.g. the text space
+     * is degenerate or the widths don't match the widths calculated by the parser), in that case the text shall be
+     * processed glyph by glyph via {@link TextRenderInfo#getCharacterRenderInfos()}.
+     */
+    static TextGlyphsLayout create(TextRenderInfo text) {
+        PdfFont font = text.getFont();
+        PdfString string = text.getPdfString();
+        boolean simpleFont = !(font instanceof PdfType0Font);
+        List<PdfString> glyphs = splitString(font, string, simpleFont);
+        int size = glyphs.size();
+        if (size == 0) {
+            return null;
+        }
+
+        float horizontalScaling = text.getHorizontalScaling() / 100f;
+        float fontScale = font.getFontMatrix()[0] * text.getFontSize();
+        float[] glyphStarts = new float[size];
+        float[] glyphWidths = new float[size];
+        float[] glyphAdvances = new float[size];
+        float totalWidth = 0;
+        for (int i = 0; i < size; ++i) {
+            PdfString glyph = glyphs.get(i);
+            float wordSpacing = " ".equals(glyph.getValue()) ? text.getWordSpacing() : 0;
+            float glyphWidth = font.getContentWidth(glyph) * fontScale;
+            glyphStarts[i] = totalWidth;
+            glyphWidths[i] = glyphWidth * horizontalScaling;
+            glyphAdvances[i] = (glyphWidth + text.getCharSpacing() + wordSpacing) * horizontalScaling;
+            totalWidth += glyphAdvances[i];
+        }
+        float unscaledWidth = text.getUnscaledWidth();
+        if (Math.abs(totalWidth - unscaledWidth) > WIDTH_EPS * Math.max(1, Math.abs(unscaledWidth))) {
+            return null;
+        }
+
+        // the same correction as the one of the ascent and descent lines of the text render info
+        String unicode = string.toUnicodeString();
+        boolean endsWithSpace = unicode.length() > 0 && unicode.charAt(unicode.length() - 1) == ' ';
+        float baselineWidth = unscaledWidth
+                - (text.getCharSpacing() + (endsWithSpace ? text.getWordSpacing() : 0)) * horizontalScaling;
+        if (Math.abs(baselineWidth) < WIDTH_EPS) {
+            return null;
+        }
+
+        LineSegment ascent = text.getAscentLine();
+        LineSegment descent = text.getDescentLine();
+        Point ascentStart = toPoint(ascent.getStartPoint());
+        Point descentStart = toPoint(descent.getStartPoint());
+        Point ascentEnd = toPoint(ascent.getEndPoint());
+        Point xAxis = new Point((ascentEnd.getX() - ascentStart.getX()) / baselineWidth,
+                (ascentEnd.getY() - ascentStart.getY()) / baselineWidth);
+        Point yAxis = new Point(ascentStart.getX() - descentStart.getX(), ascentStart.getY() - descentStart.getY());
+        double determinant = xAxis.getX() * yAxis.getY() - xAxis.getY() * yAxis.getX();
+        if (Math.abs(determinant) < WIDTH_EPS * WIDTH_EPS) {
+            return null;
+        }
+
+        return new TextGlyphsLayout(text, glyphs, simpleFont, glyphStarts, glyphWidths, glyphAdvances,
+                ascentStart, descentStart, xAxis, yAxis);
+    }
+
+    int getNumberOfGlyphs() {
+        return glyphs.size();
+    }
+
+    PdfString getGlyph(int index) {
+        return glyphs.get(index);
+    }
+
+    /**
+     * @return the advance of the glyph including character and word spacing, in unscaled text space units.
+     */
+    float getGlyphAdvance(int index) {
+        return glyphAdvances[index];
+    }
+
+    /**
+     * Gets the glyph area in the same form as the text area of the glyph {@link TextRenderInfo}:
+     * ascent line start and end, descent line end and start.
+     */
+    Point[] getGlyphRectangle(int index) {
+        double start = glyphStarts[index];
+        double end = glyphStarts[index] + glyphWidths[index];
+        return new Point[] {
+                translate(ascentStart, start),
+                translate(ascentStart, end),
+                translate(descentStart, end),
+                translate(descentStart, start)
+        };
+    }
+
+    /**
+     * Finds the range of glyphs, which might intersect the given area. The area is projected onto the baseline
+     * and the range is looked for with a binary search over the glyph positions.
+     *
+     * @param area      vertices of the area in the user space
+     * @param tolerance the distance in the user space within which the glyphs are still considered to be affected
+     * @return the first and the last glyph indices, the first index is greater than the last one if there are
+     * no such glyphs.
+     */
+    int[] getAffectedGlyphsRange(Point[] area, double tolerance) {
+        double determinant = xAxis.getX() * yAxis.getY() - xAxis.getY() * yAxis.getX();
+        double areaStart = Double.MAX_VALUE;
+        double areaEnd = -Double.MAX_VALUE;
+        for (Point vertex : area) {
+            double dx = vertex.getX() - descentStart.getX();
+            double dy = vertex.getY() - descentStart.getY();
+            double x = (dx * yAxis.getY() - dy * yAxis.getX()) / determinant;
+            areaStart = Math.min(areaStart, x);
+            areaEnd = Math.max(areaEnd, x);
+        }
+        double textSpaceTolerance = tolerance / Math.hypot(xAxis.getX(), xAxis.getY());
+        areaStart -= textSpaceTolerance;
+        areaEnd += textSpaceTolerance;
+
+        // first glyph which might end after the area start
+        int low = 0;
+        int high = glyphs.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (maxEndsBefore[middle] < areaStart) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int first = low;
+
+        // last glyph which might start before the area end
+        low = -1;
+        high = glyphs.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >> 1;
+            if (minStartsAfter[middle] <= areaEnd) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        int last = low;
+
+        return new int[] {first, last};
+    }
+
+    /**
+     * Creates a single string of the glyphs of the given range.
+     *
+     * @param from the first glyph index, inclusive
+     * @param to   the last glyph index, exclusive
+     */
+    PdfString getGlyphsRun(int from, int to) {
+        if (simpleFont) {
+            PdfString string = text.getPdfString();
+            return new PdfString(string.getValue().substring(from, to), string.getEncoding());
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = from; i < to; ++i) {
+            byte[] glyphBytes = glyphs.get(i).getValueBytes();
+            bytes.write(glyphBytes, 0, glyphBytes.length);
+        }
+        return new PdfString(bytes.toByteArray());
+    }
+
+    /**
+     * Splits the string into glyphs the same way as {@link TextRenderInfo#getCharacterRenderInfos()} does it.
+     */
+    private static List<PdfString> splitString(PdfFont font, PdfString string, boolean simpleFont) {
+        List<PdfString> glyphs = new ArrayList<>();
+        if (simpleFont) {
+            // one byte corresponds to one character
+            String value = string.getValue();
+            for (int i = 0; i < value.length(); ++i) {
+                glyphs.add(new PdfString(value.substring(i, i + 1), string.getEncoding()));
+            }
+        } else {
+            // number of bytes forming one glyph can be arbitrary from [1; 4] range
+            GlyphLine glyphLine = font.decodeIntoGlyphLine(string);
+            for (int i = glyphLine.start; i < glyphLine.end; ++i) {
+                glyphs.add(new PdfString(font.convertToBytes(glyphLine.get(i))));
+            }
+        }
+        return glyphs;
+    }
+
+    private Point translate(Point point, double x) {
+        return new Point(point.getX() + x * xAxis.getX(), point.getY() + x * xAxis.getY());
+    }
+
+    private static Point toPoint(Vector vector) {
+        return new Point(vector.get(0), vector.get(1));
+    }
+}
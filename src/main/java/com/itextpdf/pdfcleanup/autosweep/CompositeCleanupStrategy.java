@@ -59,21 +59,37 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 
 /**
  * This class is a composite pattern for {@code ICleanupStrategy}
  * It allows users to have multiple ICleanupStrategy implementations and bundle them as one.
+ * The text of the page is collected only once for all the added {@link RegexBasedCleanupStrategy} instances,
+ * their patterns are matched against the same text.
  */
 public class CompositeCleanupStrategy implements ICleanupStrategy {
 
     private Map<Integer, Set<IPdfTextLocation>> locations = new HashMap<>();
     private List<ICleanupStrategy> strategies = new ArrayList<>();
+    // indices of the patterns in the text matching strategy by the indices of the regex based strategies
+    private Map<Integer, Integer> patternIndices = new HashMap<>();
+    private MultiPatternLocationExtractionStrategy textMatchingStrategy;
 
     public CompositeCleanupStrategy() {
     }
 
     public void add(ICleanupStrategy ies) {
+        // subclasses may collect or match the text in some other way, so they are processed on their own
+        if (ies != null && ies.getClass() == RegexBasedCleanupStrategy.class) {
+            Pattern pattern = ((RegexBasedCleanupStrategy) ies).getPattern();
+            if (textMatchingStrategy == null) {
+                textMatchingStrategy = new MultiPatternLocationExtractionStrategy(pattern);
+                patternIndices.put(strategies.size(), 0);
+            } else {
+                patternIndices.put(strategies.size(), textMatchingStrategy.addPattern(pattern));
+            }
+        }
         strategies.add(ies);
     }
 
@@ -84,8 +100,10 @@ public class CompositeCleanupStrategy implements ICleanupStrategy {
         // build return value
         Set<IPdfTextLocation> retval = new LinkedHashSet<>();
         for (int i = 0; i < strategies.size(); i++) {
-            ILocationExtractionStrategy s = strategies.get(i);
-            Collection<IPdfTextLocation> rects = s.getResultantLocations();
+            Integer patternIndex = patternIndices.get(i);
+            Collection<IPdfTextLocation> rects = patternIndex == null
+                    ? strategies.get(i).getResultantLocations()
+                    : textMatchingStrategy.getResultantLocations(patternIndex.intValue());
             retval.addAll(rects);
             locations.put(i, new HashSet<>(rects));
         }
@@ -120,8 +138,13 @@ public class CompositeCleanupStrategy implements ICleanupStrategy {
 
     @Override
     public void eventOccurred(IEventData data, EventType type) {
-        for (ILocationExtractionStrategy s : strategies) {
-            s.eventOccurred(data, type);
+        for (int i = 0; i < strategies.size(); i++) {
+            if (!patternIndices.containsKey(i)) {
+                strategies.get(i).eventOccurred(data, type);
+            }
+        }
+        if (textMatchingStrategy != null) {
+            textMatchingStrategy.eventOccurred(data, type);
         }
     }
 
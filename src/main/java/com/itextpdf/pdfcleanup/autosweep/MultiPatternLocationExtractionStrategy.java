@@ -0,0 +1,237 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup.autosweep;
+
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.canvas.parser.EventType;
+import com.itextpdf.kernel.pdf.canvas.parser.data.IEventData;
+import com.itextpdf.kernel.pdf.canvas.parser.data.TextRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.CharacterRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.DefaultPdfTextLocation;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.IPdfTextLocation;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.ITextChunkLocation;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.RegexBasedLocationExtractionStrategy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class represents a location extraction strategy which matches several regular expressions against
+ * the same text of the page. The characters of the page are collected, ordered and joined into a text only once,
+ * and then each pattern is matched against this text, so the text layer is not rebuilt for every pattern
+ * as it is done by separate {@link RegexBasedLocationExtractionStrategy} instances.
+ * <p>
+ * The text is built and matched in the same way as it is done by {@link RegexBasedLocationExtractionStrategy},
+ * so the locations found for each pattern are the same as the ones found by a separate strategy with that pattern.
+ * The characters are still converted and the matches are still turned into rectangles by the kernel methods, but
+ * the ordering of the characters, the text assembly and the duplicates removal are not accessible outside
+ * of the kernel, so they are copied from the kernel 7.1.17 sources ({@code TextChunkLocationBasedComparator}
+ * with {@code DefaultTextChunkLocationComparator}, {@code CharacterRenderInfo#mapString} and the private methods of
+ * {@link RegexBasedLocationExtractionStrategy}). They shall be kept in sync with the kernel when it is updated,
+ * {@code PdfAutoSweepTest#compositeStrategyMatchesSeparateStrategiesTest} compares the results of both.
+ */
+class MultiPatternLocationExtractionStrategy extends RegexBasedLocationExtractionStrategy {
+
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final List<CharacterRenderInfo> parseResult = new ArrayList<>();
+
+    private String text;
+    private Map<Integer, Integer> indexMap;
+
+    /**
+     * Creates the strategy which matches the given pattern, more patterns can be added later.
+     *
+     * @param pattern the first pattern to be matched
+     */
+    MultiPatternLocationExtractionStrategy(Pattern pattern) {
+        // the pattern of the base strategy isn't used, all the patterns are matched by this class
+        super(pattern);
+        patterns.add(pattern);
+    }
+
+    /**
+     * Adds one more pattern to be matched against the text.
+     *
+     * @param pattern the pattern to be matched
+     * @return the index of the added pattern
+     */
+    int addPattern(Pattern pattern) {
+        patterns.add(pattern);
+        return patterns.size() - 1;
+    }
+
+    /**
+     * Gets the locations of the text matched by the pattern with the given index.
+     *
+     * @param patternIndex the index of the pattern, the pattern passed to the constructor has index 0
+     * @return the locations of the matched text
+     */
+    List<IPdfTextLocation> getResultantLocations(int patternIndex) {
+        buildText();
+
+        List<IPdfTextLocation> retval = new ArrayList<>();
+        Matcher mat = patterns.get(patternIndex).matcher(text);
+        while (mat.find()) {
+            Integer startIndex = getStartIndex(mat.start());
+            Integer endIndex = getEndIndex(mat.end() - 1);
+            if (startIndex != null && endIndex != null && startIndex <= endIndex) {
+                for (Rectangle r : toRectangles(parseResult.subList(startIndex.intValue(), endIndex.intValue() + 1))) {
+                    retval.add(new DefaultPdfTextLocation(0, r, mat.group(0)));
+                }
+            }
+        }
+
+        Collections.sort(retval, new Comparator<IPdfTextLocation>() {
+            @Override
+            public int compare(IPdfTextLocation l1, IPdfTextLocation l2) {
+                Rectangle o1 = l1.getRectangle();
+                Rectangle o2 = l2.getRectangle();
+                if (o1.getY() == o2.getY()) {
+                    return o1.getX() == o2.getX() ? 0 : (o1.getX() < o2.getX() ? -1 : 1);
+                } else {
+                    return o1.getY() < o2.getY() ? -1 : 1;
+                }
+            }
+        });
+        removeDuplicates(retval);
+        return retval;
+    }
+
+    @Override
+    public Collection<IPdfTextLocation> getResultantLocations() {
+        List<IPdfTextLocation> retval = new ArrayList<>();
+        for (int i = 0; i < patterns.size(); ++i) {
+            retval.addAll(getResultantLocations(i));
+        }
+        return retval;
+    }
+
+    @Override
+    public void eventOccurred(IEventData data, EventType type) {
+        if (data instanceof TextRenderInfo) {
+            parseResult.addAll(toCRI((TextRenderInfo) data));
+            text = null;
+        }
+    }
+
+    // mirrors the ordering and the text assembly of RegexBasedLocationExtractionStrategy of the kernel 7.1.17
+    private void buildText() {
+        if (text != null) {
+            return;
+        }
+
+        // align characters in "logical" order
+        Collections.sort(parseResult, new Comparator<CharacterRenderInfo>() {
+            @Override
+            public int compare(CharacterRenderInfo c1, CharacterRenderInfo c2) {
+                ITextChunkLocation first = c1.getLocation();
+                ITextChunkLocation second = c2.getLocation();
+                if (first == second) {
+                    return 0;
+                }
+                int result = Integer.compare(first.orientationMagnitude(), second.orientationMagnitude());
+                if (result != 0) {
+                    return result;
+                }
+                int distPerpendicularDiff = first.distPerpendicular() - second.distPerpendicular();
+                if (distPerpendicularDiff != 0) {
+                    return distPerpendicularDiff;
+                }
+                return Float.compare(first.distParallelStart(), second.distParallelStart());
+            }
+        });
+
+        indexMap = new HashMap<>();
+        StringBuilder sb = new StringBuilder();
+        CharacterRenderInfo lastChunk = null;
+        for (int i = 0; i < parseResult.size(); i++) {
+            CharacterRenderInfo chunk = parseResult.get(i);
+            // we only insert a blank space if the trailing character of the previous string wasn't a space,
+            // and the leading character of the current string isn't a space
+            if (lastChunk != null && chunk.getLocation().sameLine(lastChunk.getLocation())
+                    && chunk.getLocation().isAtWordBoundary(lastChunk.getLocation())
+                    && !chunk.getText().startsWith(" ") && !chunk.getText().endsWith(" ")) {
+                sb.append(' ');
+            }
+            indexMap.put(sb.length(), i);
+            sb.append(chunk.getText());
+            lastChunk = chunk;
+        }
+        text = sb.toString();
+    }
+
+    // getStartIndex, getEndIndex and removeDuplicates mirror RegexBasedLocationExtractionStrategy of the kernel 7.1.17
+    private Integer getStartIndex(int index) {
+        while (!indexMap.containsKey(index) && index < text.length()) {
+            index++;
+        }
+        return indexMap.get(index);
+    }
+
+    private Integer getEndIndex(int index) {
+        while (!indexMap.containsKey(index) && index >= 0) {
+            index--;
+        }
+        return indexMap.get(index);
+    }
+
+    private static void removeDuplicates(List<IPdfTextLocation> sortedList) {
+        IPdfTextLocation lastItem = null;
+        for (int i = sortedList.size() - 1; i >= 0; i--) {
+            IPdfTextLocation currItem = sortedList.get(i);
+            Rectangle currRect = currItem.getRectangle();
+            if (lastItem != null && currRect.equalsWithEpsilon(lastItem.getRectangle())) {
+                sortedList.remove(i);
+            } else {
+                lastItem = currItem;
+            }
+        }
+    }
+}
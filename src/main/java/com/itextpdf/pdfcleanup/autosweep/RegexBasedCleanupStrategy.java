@@ -80,4 +80,8 @@ public class RegexBasedCleanupStrategy extends RegexBasedLocationExtractionStrat
     public ICleanupStrategy reset() {
         return new RegexBasedCleanupStrategy(pattern).setRedactionColor(redactionColor);
     }
+
+    Pattern getPattern() {
+        return pattern;
+    }
 }
@@ -56,10 +56,7 @@ public final class CleanUpCsCompareUtil {
         try {
             ImageInfo cmpInfo = Imaging.getImageInfo(originalImage.getImageBytes());
             ImageInfo toCompareInfo = Imaging.getImageInfo(clearedImage.getImageBytes());
-            return (cmpInfo.getColorType() == toCompareInfo.getColorType()
-                    && cmpInfo.isTransparent() == toCompareInfo.isTransparent()
-                    && cmpInfo.getBitsPerPixel() == toCompareInfo.getBitsPerPixel())
-                    || isCSApplicable(originalImage, toCompareInfo);
+            return isOriginalCsCompatible(originalImage, cmpInfo, toCompareInfo);
         } catch (ImageReadException | IOException e) {
             if (LOGGER.isErrorEnabled()) {
                 LOGGER.error(CleanUpLogMessageConstant.CANNOT_OBTAIN_IMAGE_INFO_AFTER_FILTERING, e);
@@ -68,6 +65,24 @@ public final class CleanUpCsCompareUtil {
         }
     }
 
+    /**
+     * Check whether the already known image info of the original image and the image info of the cleared
+     * image are the same. Unlike {@link #isOriginalCsCompatible(PdfImageXObject, PdfImageXObject)}, the images
+     * are not converted into the common image format to obtain their infos.
+     *
+     * @param originalImage     {@link PdfImageXObject} of the original image
+     * @param originalImageInfo {@link ImageInfo} of the original image in the common image format
+     * @param clearedImageInfo  {@link ImageInfo} of the cleared image in the common image format
+     * @return true if the image infos are the same
+     */
+    public static boolean isOriginalCsCompatible(PdfImageXObject originalImage, ImageInfo originalImageInfo,
+            ImageInfo clearedImageInfo) {
+        return (originalImageInfo.getColorType() == clearedImageInfo.getColorType()
+                && originalImageInfo.isTransparent() == clearedImageInfo.isTransparent()
+                && originalImageInfo.getBitsPerPixel() == clearedImageInfo.getBitsPerPixel())
+                || isCSApplicable(originalImage, clearedImageInfo);
+    }
+
     private static boolean isCSApplicable(PdfImageXObject originalImage, ImageInfo clearedImageInfo) {
         PdfObject pdfColorSpace = originalImage.getPdfObject().get(PdfName.ColorSpace);
         PdfName name;
@@ -84,6 +84,34 @@ public class BigDocumentCleanUpTest extends ExtendedITextTest {
         compareByContent(cmp, output, outputPath, "4");
     }
 
+    @Test
+    public void bigUntaggedDocumentParallel() throws IOException, InterruptedException {
+        String input = inputPath + "iphone_user_guide_untagged.pdf";
+        String output = outputPath + "bigUntaggedDocumentParallel.pdf";
+        String cmp = inputPath + "cmp_bigUntaggedDocument.pdf";
+
+        List<Rectangle> rects = Arrays.asList(new Rectangle(60f, 80f, 460f, 65f), new Rectangle(300f, 370f, 215f, 260f));
+        PdfDocument pdfDocument = new PdfDocument(new PdfReader(input), new PdfWriter(output));
+        new PdfCleanUpTool(pdfDocument, initLocations(rects, 130)).setParallelism(4).cleanUp();
+        pdfDocument.close();
+
+        compareByContent(cmp, output, outputPath, "4");
+    }
+
+    @Test
+    public void bigUntaggedDocumentFlushCleanedPages() throws IOException, InterruptedException {
+        String input = inputPath + "iphone_user_guide_untagged.pdf";
+        String output = outputPath + "bigUntaggedDocumentFlushCleanedPages.pdf";
+        String cmp = inputPath + "cmp_bigUntaggedDocument.pdf";
+
+        List<Rectangle> rects = Arrays.asList(new Rectangle(60f, 80f, 460f, 65f), new Rectangle(300f, 370f, 215f, 260f));
+        PdfDocument pdfDocument = new PdfDocument(new PdfReader(input), new PdfWriter(output));
+        new PdfCleanUpTool(pdfDocument, initLocations(rects, 130)).setFlushCleanedPages(true).cleanUp();
+        pdfDocument.close();
+
+        compareByContent(cmp, output, outputPath, "4");
+    }
+
     @Test
     @LogMessages(messages = @LogMessage(messageTemplate = LogMessageConstant.CREATED_ROOT_TAG_HAS_MAPPING))
     public void bigTaggedDocument() throws IOException, InterruptedException {
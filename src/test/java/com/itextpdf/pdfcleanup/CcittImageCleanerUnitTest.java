@@ -0,0 +1,154 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.io.codec.CCITTG4Encoder;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfBoolean;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import com.itextpdf.test.ExtendedITextTest;
+import com.itextpdf.test.annotations.type.UnitTest;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class CcittImageCleanerUnitTest extends ExtendedITextTest {
+
+    private static final int SIZE = 16;
+
+    @Test
+    public void group4ImageCleanedTest() {
+        byte[] whiteSamples = new byte[SIZE * SIZE / 8];
+        // the encoder treats 1 as black, so the zero samples encode white image
+        PdfImageXObject image = createImage(CCITTG4Encoder.compress(whiteSamples, SIZE, SIZE), -1, false);
+
+        PdfStream cleanedStream = filterImageSamples(image);
+
+        PdfDictionary decodeParms = cleanedStream.getAsDictionary(PdfName.DecodeParms);
+        Assert.assertEquals(PdfName.CCITTFaxDecode, cleanedStream.getAsName(PdfName.Filter));
+        Assert.assertEquals(-1, decodeParms.getAsNumber(PdfName.K).intValue());
+        Assert.assertEquals(SIZE, decodeParms.getAsNumber(PdfName.Columns).intValue());
+        assertBottomLeftQuarterCleaned(cleanedStream.getBytes());
+    }
+
+    @Test
+    public void blackIs1ImageCleanedTest() {
+        byte[] blackSamples = new byte[SIZE * SIZE / 8];
+        Arrays.fill(blackSamples, (byte) 0xFF);
+        PdfImageXObject image = createImage(CCITTG4Encoder.compress(blackSamples, SIZE, SIZE), -1, true);
+        image.getPdfObject().getAsDictionary(PdfName.DecodeParms).put(PdfName.DamagedRowsBeforeError, new PdfNumber(2));
+
+        PdfStream cleanedStream = filterImageSamples(image);
+
+        PdfDictionary decodeParms = cleanedStream.getAsDictionary(PdfName.DecodeParms);
+        Assert.assertEquals(PdfBoolean.TRUE, decodeParms.getAsBoolean(PdfName.BlackIs1));
+        Assert.assertFalse(decodeParms.containsKey(PdfName.DamagedRowsBeforeError));
+        assertBottomLeftQuarterCleaned(cleanedStream.getBytes());
+    }
+
+    @Test
+    public void columnsNotMatchingWidthNotSupportedTest() {
+        PdfImageXObject image = createImage(new byte[0], -1, false);
+        image.getPdfObject().getAsDictionary(PdfName.DecodeParms).put(PdfName.Columns, new PdfNumber(SIZE * 2));
+
+        Assert.assertFalse(CcittImageCleaner.isSupported(image));
+    }
+
+    @Test
+    public void multiBitImageNotSupportedTest() {
+        PdfImageXObject image = createImage(new byte[0], -1, false);
+        image.getPdfObject().put(PdfName.BitsPerComponent, new PdfNumber(8));
+
+        Assert.assertFalse(CcittImageCleaner.isSupported(image));
+    }
+
+    private static PdfStream filterImageSamples(PdfImageXObject image) {
+        Assert.assertTrue(PdfCleanUpFilter.imageSupportsDirectCleanup(image));
+        Assert.assertTrue(CcittImageCleaner.isSupported(image));
+        FilteredImagesCache.FilteredImageKey imageKey = new FilteredImagesCache.FilteredImageKey(image,
+                Collections.singletonList(new Rectangle(0, 0, 0.5f, 0.5f)));
+
+        PdfCleanUpFilter.FilterResult<PdfImageXObject> result = new PdfCleanUpFilter(
+                Collections.<Rectangle>emptyList()).filterImageSamples(imageKey);
+
+        Assert.assertNotNull(result);
+        Assert.assertTrue(result.isModified());
+        return result.getFilterResult().getPdfObject();
+    }
+
+    private static void assertBottomLeftQuarterCleaned(byte[] samples) {
+        Assert.assertEquals(SIZE * SIZE / 8, samples.length);
+        for (int row = 0; row < SIZE; ++row) {
+            byte expectedLeft = row >= SIZE / 2 ? (byte) 0 : (byte) 0xFF;
+            Assert.assertEquals(expectedLeft, samples[row * 2]);
+            Assert.assertEquals((byte) 0xFF, samples[row * 2 + 1]);
+        }
+    }
+
+    private static PdfImageXObject createImage(byte[] data, int k, boolean blackIs1) {
+        PdfStream stream = new PdfStream(data);
+        stream.put(PdfName.Type, PdfName.XObject);
+        stream.put(PdfName.Subtype, PdfName.Image);
+        stream.put(PdfName.Width, new PdfNumber(SIZE));
+        stream.put(PdfName.Height, new PdfNumber(SIZE));
+        stream.put(PdfName.BitsPerComponent, new PdfNumber(1));
+        stream.put(PdfName.ColorSpace, PdfName.DeviceGray);
+        stream.put(PdfName.Filter, PdfName.CCITTFaxDecode);
+        PdfDictionary decodeParms = new PdfDictionary();
+        decodeParms.put(PdfName.K, new PdfNumber(k));
+        decodeParms.put(PdfName.Columns, new PdfNumber(SIZE));
+        decodeParms.put(PdfName.Rows, new PdfNumber(SIZE));
+        if (blackIs1) {
+            decodeParms.put(PdfName.BlackIs1, PdfBoolean.TRUE);
+        }
+        stream.put(PdfName.DecodeParms, decodeParms);
+        return new PdfImageXObject(stream);
+    }
+}
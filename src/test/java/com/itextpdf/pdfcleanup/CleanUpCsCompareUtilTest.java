@@ -31,6 +31,11 @@ import com.itextpdf.test.ExtendedITextTest;
 import com.itextpdf.test.annotations.LogMessage;
 import com.itextpdf.test.annotations.LogMessages;
 import com.itextpdf.test.annotations.type.IntegrationTest;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import javax.imageio.ImageIO;
+import org.apache.commons.imaging.ImageInfo;
+import org.apache.commons.imaging.Imaging;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -85,6 +90,30 @@ public class CleanUpCsCompareUtilTest extends ExtendedITextTest {
         Assert.assertFalse(CleanUpCsCompareUtil.isOriginalCsCompatible(image1, image2));
     }
 
+    @Test
+    public void knownImageInfosCompatibleTest() throws Exception {
+        PdfImageXObject image = createMockedPdfImageXObject(PdfName.DeviceGray, 8);
+        ImageInfo originalInfo = createImageInfo(BufferedImage.TYPE_BYTE_GRAY);
+        ImageInfo clearedInfo = createImageInfo(BufferedImage.TYPE_BYTE_GRAY);
+
+        Assert.assertTrue(CleanUpCsCompareUtil.isOriginalCsCompatible(image, originalInfo, clearedInfo));
+    }
+
+    @Test
+    public void knownImageInfosNotCompatibleTest() throws Exception {
+        PdfImageXObject image = createMockedPdfImageXObject(PdfName.DeviceRGB, 8);
+        ImageInfo originalInfo = createImageInfo(BufferedImage.TYPE_INT_RGB);
+        ImageInfo clearedInfo = createImageInfo(BufferedImage.TYPE_BYTE_GRAY);
+
+        Assert.assertFalse(CleanUpCsCompareUtil.isOriginalCsCompatible(image, originalInfo, clearedInfo));
+    }
+
+    private static ImageInfo createImageInfo(int bufferedImageType) throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(2, 2, bufferedImageType), "png", png);
+        return Imaging.getImageInfo(png.toByteArray());
+    }
+
     private PdfImageXObject createMockedPdfImageXObject(PdfName colorSpace, int bitsPerComponent) {
         PdfStream stream1 = new PdfStream();
         stream1.put(PdfName.BitsPerComponent, new PdfNumber(bitsPerComponent));
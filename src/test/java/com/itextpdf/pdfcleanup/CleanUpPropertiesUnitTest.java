@@ -0,0 +1,98 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.test.ExtendedITextTest;
+import com.itextpdf.test.annotations.type.UnitTest;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.ExpectedException;
+
+@Category(UnitTest.class)
+public class CleanUpPropertiesUnitTest extends ExtendedITextTest {
+
+    @Rule
+    public ExpectedException junitExpectedException = ExpectedException.none();
+
+    @Test
+    public void defaultPropertiesTest() {
+        CleanUpProperties properties = new CleanUpProperties();
+        Assert.assertEquals(CleanUpProperties.DEFAULT_CLIPPER_SCALE, properties.getClipperScale(), 0);
+        Assert.assertEquals(CleanUpProperties.DEFAULT_ARC_TOLERANCE, properties.getArcTolerance(), 0);
+        Assert.assertEquals(CleanUpProperties.DEFAULT_CURVE_FLATTENING_TOLERANCE, properties.getCurveFlatteningTolerance(), 0);
+        Assert.assertEquals(CleanUpProperties.DEFAULT_EPS, properties.getEps(), 0);
+        Assert.assertFalse(properties.isDctDomainImageCleanUp());
+    }
+
+    @Test
+    public void dctDomainImageCleanUpTest() {
+        CleanUpProperties properties = new CleanUpProperties(1e6, 0.01, 0.1, 1e-3);
+        CleanUpProperties dctProperties = properties.withDctDomainImageCleanUp(true);
+        Assert.assertFalse(properties.isDctDomainImageCleanUp());
+        Assert.assertTrue(dctProperties.isDctDomainImageCleanUp());
+        Assert.assertEquals(1e6, dctProperties.getClipperScale(), 0);
+        Assert.assertEquals(0.01, dctProperties.getArcTolerance(), 0);
+        Assert.assertEquals(0.1, dctProperties.getCurveFlatteningTolerance(), 0);
+        Assert.assertEquals(1e-3, dctProperties.getEps(), 0);
+    }
+
+    @Test
+    public void nonPositiveClipperScaleTest() {
+        junitExpectedException.expect(IllegalArgumentException.class);
+        new CleanUpProperties(0, 0.0025, 0, 1e-4);
+    }
+
+    @Test
+    public void negativeCurveFlatteningToleranceTest() {
+        junitExpectedException.expect(IllegalArgumentException.class);
+        new CleanUpProperties(1e6, 0.0025, -1, 1e-4);
+    }
+
+    @Test
+    public void nanEpsTest() {
+        junitExpectedException.expect(IllegalArgumentException.class);
+        new CleanUpProperties(1e6, 0.0025, 0, Double.NaN);
+    }
+}
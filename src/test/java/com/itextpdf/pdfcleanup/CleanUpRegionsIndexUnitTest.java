@@ -0,0 +1,110 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.test.ExtendedITextTest;
+import com.itextpdf.test.annotations.type.UnitTest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class CleanUpRegionsIndexUnitTest extends ExtendedITextTest {
+
+    @Test
+    public void fewRegionsTest() {
+        Rectangle first = new Rectangle(0, 0, 10, 10);
+        Rectangle second = new Rectangle(100, 100, 10, 10);
+        CleanUpRegionsIndex index = new CleanUpRegionsIndex(Arrays.asList(first, second));
+
+        Assert.assertEquals(Collections.singletonList(first), index.getCandidates(new Rectangle(5, 5, 1, 1)));
+        Assert.assertEquals(Collections.singletonList(second), index.getCandidates(new Rectangle(110, 110, 5, 5)));
+        Assert.assertTrue(index.getCandidates(new Rectangle(50, 50, 5, 5)).isEmpty());
+    }
+
+    @Test
+    public void nullRegionsTest() {
+        CleanUpRegionsIndex index = new CleanUpRegionsIndex(null);
+        Assert.assertTrue(index.getCandidates(new Rectangle(0, 0, 10, 10)).isEmpty());
+    }
+
+    @Test
+    public void manyRegionsTest() {
+        List<Rectangle> regions = new ArrayList<>();
+        for (int i = 0; i < 50; ++i) {
+            for (int j = 0; j < 40; ++j) {
+                regions.add(new Rectangle(i * 12, j * 20, 10, 15));
+            }
+        }
+        // degenerate region, which is touched by the line area below
+        regions.add(new Rectangle(1000, 0, 0, 800));
+        CleanUpRegionsIndex index = new CleanUpRegionsIndex(regions);
+
+        List<Rectangle> areas = Arrays.asList(new Rectangle(0, 0, 600, 800), new Rectangle(5, 5, 1, 1),
+                new Rectangle(11, 0, 0.5f, 800), new Rectangle(-100, -100, 50, 50), new Rectangle(1000, 400, 20, 0),
+                new Rectangle(586, 780, 100, 100), new Rectangle(250, 300, -30, -40));
+        for (Rectangle area : areas) {
+            Assert.assertEquals(getCandidatesLinearly(regions, area), index.getCandidates(area));
+        }
+    }
+
+    private static List<Rectangle> getCandidatesLinearly(List<Rectangle> regions, Rectangle area) {
+        float left = Math.min(area.getLeft(), area.getRight()) - 0.1f;
+        float right = Math.max(area.getLeft(), area.getRight()) + 0.1f;
+        float bottom = Math.min(area.getBottom(), area.getTop()) - 0.1f;
+        float top = Math.max(area.getBottom(), area.getTop()) + 0.1f;
+        List<Rectangle> candidates = new ArrayList<>();
+        for (Rectangle region : regions) {
+            if (region.getLeft() <= right && left <= region.getRight()
+                    && region.getBottom() <= top && bottom <= region.getTop()) {
+                candidates.add(region);
+            }
+        }
+        return candidates;
+    }
+}
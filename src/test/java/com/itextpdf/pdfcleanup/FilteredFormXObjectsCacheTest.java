@@ -0,0 +1,196 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.test.ExtendedITextTest;
+import com.itextpdf.test.annotations.type.IntegrationTest;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(IntegrationTest.class)
+public class FilteredFormXObjectsCacheTest extends ExtendedITextTest {
+
+    private static final String outputPath = "./target/test/com/itextpdf/pdfcleanup/FilteredFormXObjectsCacheTest/";
+
+    private static final int NUMBER_OF_PAGES = 3;
+
+    @BeforeClass
+    public static void before() {
+        createOrClearDestinationFolder(outputPath);
+    }
+
+    @Test
+    public void cleanedFormXObjectReusedOnAllPagesTest() throws IOException {
+        String input = outputPath + "formXObjectOnEveryPage01.pdf";
+        String output = outputPath + "cleanedFormXObjectReusedOnAllPages.pdf";
+        int originalFormNumber = createDocumentWithFormOnEveryPage(input);
+
+        cleanUp(input, output, new Rectangle(120, 120, 20, 20));
+
+        Set<Integer> usedForms = collectUsedFormXObjects(output);
+        Assert.assertEquals(1, usedForms.size());
+        Assert.assertFalse(usedForms.contains(originalFormNumber));
+    }
+
+    @Test
+    public void notAffectedFormXObjectKeptOnAllPagesTest() throws IOException {
+        String input = outputPath + "formXObjectOnEveryPage02.pdf";
+        String output = outputPath + "notAffectedFormXObjectKeptOnAllPages.pdf";
+        int originalFormNumber = createDocumentWithFormOnEveryPage(input);
+
+        cleanUp(input, output, new Rectangle(400, 400, 20, 20));
+
+        Set<Integer> usedForms = collectUsedFormXObjects(output);
+        Assert.assertEquals(1, usedForms.size());
+        Assert.assertTrue(usedForms.contains(originalFormNumber));
+    }
+
+    @Test
+    public void formXObjectPaintedWithDifferentInheritedStateTest() throws IOException {
+        String input = outputPath + "formXObjectWithDifferentInheritedState.pdf";
+        String output = outputPath + "formXObjectPaintedWithDifferentInheritedState.pdf";
+        PdfDocument pdfDocument = new PdfDocument(new PdfWriter(input));
+        PdfFormXObject form = new PdfFormXObject(new Rectangle(100, 100));
+        // the stroke color and the line width are inherited from the content the form is painted from
+        new PdfCanvas(form, pdfDocument)
+                .moveTo(0, 50)
+                .lineTo(100, 50)
+                .stroke();
+        form.makeIndirect(pdfDocument);
+        new PdfCanvas(pdfDocument.addNewPage(PageSize.A4))
+                .saveState()
+                .setStrokeColor(ColorConstants.RED)
+                .setLineWidth(5)
+                .addXObject(form, 100, 100)
+                .restoreState()
+                .saveState()
+                .setStrokeColor(ColorConstants.BLUE)
+                .setLineWidth(1)
+                .addXObject(form, 100, 100)
+                .restoreState();
+        int originalFormNumber = form.getPdfObject().getIndirectReference().getObjNumber();
+        pdfDocument.close();
+
+        // the line of the form is partially cleaned, so the remaining parts are written as filled outlines
+        cleanUp(input, output, new Rectangle(140, 100, 20, 100));
+
+        Set<Integer> usedForms = collectUsedFormXObjects(output);
+        Assert.assertEquals(2, usedForms.size());
+        Assert.assertFalse(usedForms.contains(originalFormNumber));
+        pdfDocument = new PdfDocument(new PdfReader(output));
+        PdfDictionary xObjects = pdfDocument.getPage(1).getResources().getResource(PdfName.XObject);
+        StringBuilder formContents = new StringBuilder();
+        for (PdfName name : xObjects.keySet()) {
+            PdfStream xObject = xObjects.getAsStream(name);
+            formContents.append(new String(xObject.getBytes(), StandardCharsets.ISO_8859_1)).append('|');
+        }
+        pdfDocument.close();
+        String[] contents = formContents.toString().split("\\|");
+        Assert.assertEquals(2, contents.length);
+        Assert.assertNotEquals(contents[0], contents[1]);
+        Assert.assertTrue(formContents.toString().contains("1 0 0 rg"));
+        Assert.assertTrue(formContents.toString().contains("0 0 1 rg"));
+    }
+
+    private static int createDocumentWithFormOnEveryPage(String path) throws IOException {
+        PdfDocument pdfDocument = new PdfDocument(new PdfWriter(path));
+        PdfFormXObject form = new PdfFormXObject(new Rectangle(100, 100));
+        new PdfCanvas(form, pdfDocument)
+                .setFillColor(ColorConstants.BLUE)
+                .rectangle(0, 0, 100, 100)
+                .fill();
+        form.makeIndirect(pdfDocument);
+        for (int i = 0; i < NUMBER_OF_PAGES; ++i) {
+            new PdfCanvas(pdfDocument.addNewPage(PageSize.A4)).addXObject(form, 100, 100);
+        }
+        int formNumber = form.getPdfObject().getIndirectReference().getObjNumber();
+        pdfDocument.close();
+        // the object number is kept when the document is opened in stamping mode
+        return formNumber;
+    }
+
+    private static void cleanUp(String input, String output, Rectangle region) throws IOException {
+        PdfDocument pdfDocument = new PdfDocument(new PdfReader(input), new PdfWriter(output));
+        List<PdfCleanUpLocation> cleanUpLocations = new ArrayList<>();
+        for (int i = 0; i < pdfDocument.getNumberOfPages(); ++i) {
+            cleanUpLocations.add(new PdfCleanUpLocation(i + 1, region));
+        }
+        new PdfCleanUpTool(pdfDocument, cleanUpLocations).cleanUp();
+        pdfDocument.close();
+    }
+
+    private static Set<Integer> collectUsedFormXObjects(String path) throws IOException {
+        PdfDocument pdfDocument = new PdfDocument(new PdfReader(path));
+        Set<Integer> usedForms = new LinkedHashSet<>();
+        for (int i = 1; i <= pdfDocument.getNumberOfPages(); ++i) {
+            PdfDictionary xObjects = pdfDocument.getPage(i).getResources().getResource(PdfName.XObject);
+            for (PdfName name : xObjects.keySet()) {
+                PdfDictionary xObject = xObjects.getAsStream(name);
+                if (PdfName.Form.equals(xObject.getAsName(PdfName.Subtype))) {
+                    usedForms.add(xObject.getIndirectReference().getObjNumber());
+                }
+            }
+        }
+        pdfDocument.close();
+        return usedForms;
+    }
+}
@@ -93,6 +93,32 @@ public class FilteredImagesCacheTest extends ExtendedITextTest {
         assertNumberXObjects(output, 1);
     }
 
+    @Test
+    public void sharedFilteredImagesCacheTest() throws IOException, InterruptedException {
+        // the image filtered in the first document is reused in the second one
+
+        String input = inputPath + "multipleImageXObjectOccurrences.pdf";
+        String cmp = inputPath + "cmp_filteredImagesCacheTest01.pdf";
+        SharedFilteredImagesCache sharedCache = new SharedFilteredImagesCache(Long.MAX_VALUE);
+
+        for (int run = 1; run <= 2; ++run) {
+            String output = outputPath + "sharedFilteredImagesCacheTest_" + run + ".pdf";
+            PdfDocument pdfDocument = new PdfDocument(new PdfReader(input), new PdfWriter(output));
+
+            List<PdfCleanUpLocation> cleanUpLocations = new ArrayList<>();
+            for (int i = 0; i < pdfDocument.getNumberOfPages(); ++i) {
+                cleanUpLocations.add(new PdfCleanUpLocation(i + 1, new Rectangle(150, 300, 300, 150)));
+            }
+
+            new PdfCleanUpTool(pdfDocument, cleanUpLocations).setSharedFilteredImagesCache(sharedCache).cleanUp();
+            pdfDocument.close();
+            compareByContent(cmp, output, outputPath, "1.2");
+            assertNumberXObjects(output, 1);
+        }
+        Assert.assertEquals(1, sharedCache.getMisses());
+        Assert.assertEquals(1, sharedCache.getHits());
+    }
+
     @Test
     public void filteredImagesCacheTest02() throws IOException, InterruptedException {
         // reusing when several clean areas (different on different pages)
@@ -132,6 +158,46 @@ public class FilteredImagesCacheTest extends ExtendedITextTest {
         assertNumberXObjects(output, 5);
     }
 
+    @Test
+    public void filteredImagesCacheParallelTest() throws IOException, InterruptedException {
+        // images are filtered in background while pages are processed, result shall be the same
+
+        String input = inputPath + "multipleImageXObjectOccurrences.pdf";
+        String output = outputPath + "filteredImagesCacheParallelTest.pdf";
+        String cmp = inputPath + "cmp_filteredImagesCacheTest02.pdf";
+
+        PdfDocument pdfDocument = new PdfDocument(new PdfReader(input), new PdfWriter(output));
+
+        List<PdfCleanUpLocation> cleanUpLocations = new ArrayList<>();
+
+        for (int i = 0; i < pdfDocument.getNumberOfPages(); i += 5) {
+            cleanUpLocations.add(new PdfCleanUpLocation(i + 1, new Rectangle(350, 450, 300, 40)));
+            cleanUpLocations.add(new PdfCleanUpLocation(i + 1, new Rectangle(300, 400, 50, 150)));
+        }
+
+        for (int i = 1; i < pdfDocument.getNumberOfPages(); i += 5) {
+            cleanUpLocations.add(new PdfCleanUpLocation(i + 1, new Rectangle(350, 450, 300, 20)));
+            cleanUpLocations.add(new PdfCleanUpLocation(i + 1, new Rectangle(350, 490, 300, 20)));
+            cleanUpLocations.add(new PdfCleanUpLocation(i + 1, new Rectangle(350, 530, 300, 20)));
+        }
+
+        for (int i = 3; i < pdfDocument.getNumberOfPages(); i += 5) {
+            cleanUpLocations.add(new PdfCleanUpLocation(i + 1, new Rectangle(300, 400, 50, 150)));
+            cleanUpLocations.add(new PdfCleanUpLocation(i + 1, new Rectangle(350, 400, 50, 150)));
+        }
+
+        for (int i = 4; i < pdfDocument.getNumberOfPages(); i += 5) {
+            cleanUpLocations.add(new PdfCleanUpLocation(i + 1, new Rectangle(350, 450, 300, 20)));
+            cleanUpLocations.add(new PdfCleanUpLocation(i + 1, new Rectangle(350, 450, 300, 20)));
+            cleanUpLocations.add(new PdfCleanUpLocation(i + 1, new Rectangle(350, 450, 300, 20)));
+        }
+
+        new PdfCleanUpTool(pdfDocument, cleanUpLocations).setParallelism(3).cleanUp();
+        pdfDocument.close();
+        compareByContent(cmp, output, outputPath, "1.2");
+        assertNumberXObjects(output, 5);
+    }
+
     @Test
     public void filteredImagesCacheTest03() throws IOException, InterruptedException {
         // same areas, different src images
@@ -0,0 +1,240 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.kernel.geom.Matrix;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfIndirectReference;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import com.itextpdf.test.ExtendedITextTest;
+import com.itextpdf.test.annotations.type.UnitTest;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.ExpectedException;
+
+@Category(UnitTest.class)
+public class FilteredImagesCacheUnitTest extends ExtendedITextTest {
+
+    @Rule
+    public ExpectedException junitExpectedException = ExpectedException.none();
+
+    @Test
+    public void areasOrderIgnoredTest() {
+        PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        PdfImageXObject image = createImage();
+        PdfImageXObject filteredImage = createImage();
+        FilteredImagesCache cache = new FilteredImagesCache();
+
+        cache.put(FilteredImagesCache.createFilteredImageKey(image,
+                Arrays.asList(new Rectangle(0, 0, 10, 10), new Rectangle(20, 20, 5, 5)), document), filteredImage);
+
+        Assert.assertSame(filteredImage, cache.get(FilteredImagesCache.createFilteredImageKey(image,
+                Arrays.asList(new Rectangle(20, 20, 5, 5), new Rectangle(0, 0, 10, 10)), document)));
+    }
+
+    @Test
+    public void areasComparedWithEpsilonTest() {
+        PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        PdfImageXObject image = createImage();
+        PdfImageXObject filteredImage = createImage();
+        FilteredImagesCache cache = new FilteredImagesCache();
+
+        cache.put(FilteredImagesCache.createFilteredImageKey(image,
+                Collections.singletonList(new Rectangle(1, 1, 10, 10)), document), filteredImage);
+
+        Assert.assertSame(filteredImage, cache.get(FilteredImagesCache.createFilteredImageKey(image,
+                Collections.singletonList(new Rectangle(1.00001f, 1, 10, 10)), document)));
+        Assert.assertNull(cache.get(FilteredImagesCache.createFilteredImageKey(image,
+                Collections.singletonList(new Rectangle(1.01f, 1, 10, 10)), document)));
+    }
+
+    @Test
+    public void differentAreasCountTest() {
+        PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        PdfImageXObject image = createImage();
+        FilteredImagesCache cache = new FilteredImagesCache();
+        List<Rectangle> areas = Collections.singletonList(new Rectangle(0, 0, 10, 10));
+
+        cache.put(FilteredImagesCache.createFilteredImageKey(image, areas, document), createImage());
+
+        Assert.assertNull(cache.get(FilteredImagesCache.createFilteredImageKey(image,
+                Arrays.asList(new Rectangle(0, 0, 10, 10), new Rectangle(0, 0, 10, 10)), document)));
+    }
+
+    @Test
+    public void differentImagesTest() {
+        PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        PdfImageXObject image = createImage();
+        FilteredImagesCache cache = new FilteredImagesCache();
+        List<Rectangle> areas = Collections.singletonList(new Rectangle(0, 0, 10, 10));
+
+        cache.put(FilteredImagesCache.createFilteredImageKey(image, areas, document), createImage());
+
+        Assert.assertNull(cache.get(FilteredImagesCache.createFilteredImageKey(createImage(), areas, document)));
+    }
+
+    @Test
+    public void firstFilteredImageKeptTest() {
+        PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        PdfImageXObject image = createImage();
+        PdfImageXObject firstFilteredImage = createImage();
+        FilteredImagesCache cache = new FilteredImagesCache();
+        List<Rectangle> areas = Collections.singletonList(new Rectangle(0, 0, 10, 10));
+
+        cache.put(FilteredImagesCache.createFilteredImageKey(image, areas, document), firstFilteredImage);
+        cache.put(FilteredImagesCache.createFilteredImageKey(image, areas, document), createImage());
+
+        Assert.assertSame(firstFilteredImage, cache.get(FilteredImagesCache.createFilteredImageKey(image, areas, document)));
+    }
+
+    @Test
+    public void leastRecentlyUsedImageEvictedTest() {
+        PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        PdfImageXObject image = createImage();
+        FilteredImagesCache cache = new FilteredImagesCache();
+        cache.setMaxSize(250);
+        List<Rectangle> firstAreas = Collections.singletonList(new Rectangle(0, 0, 10, 10));
+        List<Rectangle> secondAreas = Collections.singletonList(new Rectangle(10, 0, 10, 10));
+        List<Rectangle> thirdAreas = Collections.singletonList(new Rectangle(20, 0, 10, 10));
+        PdfImageXObject firstFilteredImage = createImage(100);
+
+        cache.put(FilteredImagesCache.createFilteredImageKey(image, firstAreas, document), firstFilteredImage);
+        cache.put(FilteredImagesCache.createFilteredImageKey(image, secondAreas, document), createImage(100));
+        Assert.assertSame(firstFilteredImage, cache.get(FilteredImagesCache.createFilteredImageKey(image, firstAreas, document)));
+        cache.put(FilteredImagesCache.createFilteredImageKey(image, thirdAreas, document), createImage(100));
+
+        Assert.assertEquals(200, cache.getSize());
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertNull(cache.get(FilteredImagesCache.createFilteredImageKey(image, secondAreas, document)));
+        Assert.assertSame(firstFilteredImage, cache.get(FilteredImagesCache.createFilteredImageKey(image, firstAreas, document)));
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void imageExceedingMaxSizeKeptTest() {
+        PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        PdfImageXObject image = createImage();
+        PdfImageXObject filteredImage = createImage(100);
+        FilteredImagesCache cache = new FilteredImagesCache();
+        cache.setMaxSize(50);
+        List<Rectangle> areas = Collections.singletonList(new Rectangle(0, 0, 10, 10));
+
+        cache.put(FilteredImagesCache.createFilteredImageKey(image, areas, document), filteredImage);
+
+        Assert.assertSame(filteredImage, cache.get(FilteredImagesCache.createFilteredImageKey(image, areas, document)));
+        Assert.assertEquals(0, cache.getEvictions());
+
+        cache.setMaxSize(0);
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void updatedImageSizeAccountedTest() {
+        PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        PdfImageXObject image = createImage();
+        PdfImageXObject filteredImage = createImage(10);
+        FilteredImagesCache cache = new FilteredImagesCache();
+        FilteredImagesCache.FilteredImageKey key = FilteredImagesCache.createFilteredImageKey(image,
+                Collections.singletonList(new Rectangle(0, 0, 10, 10)), document);
+
+        cache.put(key, filteredImage);
+        Assert.assertEquals(10, cache.getSize());
+
+        filteredImage.getPdfObject().setData(new byte[30]);
+        cache.updateSize(key);
+        Assert.assertEquals(30, cache.getSize());
+    }
+
+    @Test
+    public void negativeMaxSizeTest() {
+        junitExpectedException.expect(IllegalArgumentException.class);
+        new FilteredImagesCache().setMaxSize(-1);
+    }
+
+    @Test
+    public void imageDecisionTest() {
+        PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        PdfImageXObject image = createImage();
+        image.makeIndirect(document);
+        PdfIndirectReference imageIndRef = image.getPdfObject().getIndirectReference();
+        long[] regionsKey = FilteredImagesCache.quantizeAreas(Collections.singletonList(new Rectangle(0, 0, 100, 100)));
+        FilteredImagesCache cache = new FilteredImagesCache();
+
+        cache.putDecision(imageIndRef, new Matrix(10, 0, 0, 10, 5, 5), regionsKey, FilteredImagesCache.ImageDecision.REMOVED);
+        cache.putDecision(imageIndRef, new Matrix(10, 0, 0, 10, 500, 500), regionsKey, FilteredImagesCache.ImageDecision.KEPT);
+
+        Assert.assertEquals(FilteredImagesCache.ImageDecision.REMOVED,
+                cache.getDecision(imageIndRef, new Matrix(10, 0, 0, 10, 5, 5), regionsKey));
+        Assert.assertEquals(FilteredImagesCache.ImageDecision.KEPT,
+                cache.getDecision(imageIndRef, new Matrix(10, 0, 0, 10, 500, 500), regionsKey));
+        Assert.assertNull(cache.getDecision(imageIndRef, new Matrix(10, 0, 0, 10, 50, 50), regionsKey));
+        Assert.assertNull(cache.getDecision(imageIndRef, new Matrix(10, 0, 0, 10, 5, 5),
+                FilteredImagesCache.quantizeAreas(Collections.singletonList(new Rectangle(0, 0, 10, 10)))));
+    }
+
+    private static PdfImageXObject createImage() {
+        return createImage(1);
+    }
+
+    private static PdfImageXObject createImage(int dataLength) {
+        PdfStream stream = new PdfStream(new byte[dataLength]);
+        stream.put(PdfName.Type, PdfName.XObject);
+        stream.put(PdfName.Subtype, PdfName.Image);
+        stream.put(PdfName.Width, new PdfNumber(1));
+        stream.put(PdfName.Height, new PdfNumber(1));
+        return new PdfImageXObject(stream);
+    }
+}
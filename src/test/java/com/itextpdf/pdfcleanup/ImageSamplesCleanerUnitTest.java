@@ -0,0 +1,268 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.PdfString;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import com.itextpdf.test.ExtendedITextTest;
+import com.itextpdf.test.annotations.type.UnitTest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.DeflaterOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class ImageSamplesCleanerUnitTest extends ExtendedITextTest {
+
+    private static final Rectangle BOTTOM_LEFT_QUARTER = new Rectangle(0, 0, 0.5f, 0.5f);
+
+    @Test
+    public void rgbImageCleanedWhiteTest() {
+        PdfImageXObject image = createImage(PdfName.DeviceRGB, 8, createSamples(4 * 4 * 3, (byte) 0x10));
+
+        byte[] cleaned = cleanSamples(image);
+
+        for (int row = 0; row < 4; ++row) {
+            for (int column = 0; column < 4; ++column) {
+                byte expected = row >= 2 && column < 2 ? (byte) 0xFF : (byte) 0x10;
+                for (int component = 0; component < 3; ++component) {
+                    Assert.assertEquals(expected, cleaned[(row * 4 + column) * 3 + component]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cmykImageCleanedWhiteTest() {
+        PdfImageXObject image = createImage(PdfName.DeviceCMYK, 8, createSamples(4 * 4 * 4, (byte) 0x10));
+
+        byte[] cleaned = cleanSamples(image);
+
+        Assert.assertEquals(0, cleaned[(3 * 4) * 4]);
+        Assert.assertEquals(0x10, cleaned[(3 * 4 + 2) * 4]);
+    }
+
+    @Test
+    public void lowBitDepthSeparationImageTest() {
+        PdfArray separation = new PdfArray(Arrays.<PdfObject>asList(PdfName.Separation, new PdfName("Spot"),
+                PdfName.DeviceCMYK, new PdfDictionary()));
+        // 4 pixels per row, 2 bits per sample, all the samples are 3
+        PdfImageXObject image = createImage(separation, 2, createSamples(4, (byte) 0xFF));
+
+        byte[] cleaned = cleanSamples(image);
+
+        Assert.assertArrayEquals(new byte[] {(byte) 0xFF, (byte) 0xFF, 0x0F, 0x0F}, cleaned);
+    }
+
+    @Test
+    public void indexedImageWhitestColorTest() {
+        byte[] palette = new byte[] {0, 0, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xF0, (byte) 0xFF, 0, 0};
+        PdfArray indexed = new PdfArray(Arrays.<PdfObject>asList(PdfName.Indexed, PdfName.DeviceRGB,
+                new PdfNumber(2), new PdfString(palette)));
+        PdfImageXObject image = createImage(indexed, 8, createSamples(16, (byte) 2));
+
+        byte[] cleaned = cleanSamples(image);
+
+        Assert.assertEquals(1, cleaned[3 * 4]);
+        Assert.assertEquals(2, cleaned[3 * 4 + 3]);
+    }
+
+    @Test
+    public void pngPredictorPreservedTest() {
+        PdfImageXObject image = createImage(PdfName.DeviceRGB, 8, createSamples(4 * 4 * 3, (byte) 0x10));
+        PdfDictionary decodeParms = new PdfDictionary();
+        decodeParms.put(PdfName.Predictor, new PdfNumber(12));
+        decodeParms.put(PdfName.Colors, new PdfNumber(3));
+        decodeParms.put(PdfName.Columns, new PdfNumber(4));
+        image.getPdfObject().put(PdfName.DecodeParms, decodeParms);
+
+        PdfStream cleanedStream = ImageSamplesCleaner.cleanSamples(image, Collections.singletonList(BOTTOM_LEFT_QUARTER));
+
+        Assert.assertEquals(12, cleanedStream.getAsDictionary(PdfName.DecodeParms).getAsNumber(PdfName.Predictor).intValue());
+        byte[] cleaned = cleanedStream.getBytes();
+        Assert.assertEquals(4 * 4 * 3, cleaned.length);
+        Assert.assertEquals((byte) 0xFF, cleaned[(3 * 4) * 3]);
+        Assert.assertEquals(0x10, cleaned[(3 * 4 + 2) * 3]);
+    }
+
+    @Test
+    public void flateEncodedPngPredictedRowsTest() throws IOException {
+        // each row uses its own PNG filter: Sub, Paeth, Average and Up, all the samples are 0x10
+        byte[] predictedSamples = new byte[] {
+                1, 0x10, 0x10, 0x10, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                3, 8, 8, 8, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+        PdfImageXObject image = createImage(PdfName.DeviceRGB, 8, flateEncode(predictedSamples));
+        image.getPdfObject().put(PdfName.Filter, PdfName.FlateDecode);
+        PdfDictionary decodeParms = new PdfDictionary();
+        decodeParms.put(PdfName.Predictor, new PdfNumber(15));
+        decodeParms.put(PdfName.Colors, new PdfNumber(3));
+        decodeParms.put(PdfName.Columns, new PdfNumber(4));
+        image.getPdfObject().put(PdfName.DecodeParms, decodeParms);
+
+        byte[] cleaned = cleanSamples(image);
+
+        for (int row = 0; row < 4; ++row) {
+            for (int column = 0; column < 4; ++column) {
+                byte expected = row >= 2 && column < 2 ? (byte) 0xFF : (byte) 0x10;
+                Assert.assertEquals(expected, cleaned[(row * 4 + column) * 3]);
+            }
+        }
+    }
+
+    @Test
+    public void truncatedFlateEncodedImageTest() throws IOException {
+        PdfImageXObject image = createImage(PdfName.DeviceRGB, 8, flateEncode(createSamples(4 * 3 * 3, (byte) 0x10)));
+        image.getPdfObject().put(PdfName.Filter, PdfName.FlateDecode);
+
+        Assert.assertNull(ImageSamplesCleaner.cleanSamples(image, Collections.singletonList(BOTTOM_LEFT_QUARTER)));
+    }
+
+    @Test
+    public void grayImageSamplesClearedTest() throws IOException {
+        PdfImageXObject image = createImage(PdfName.DeviceGray, 8, flateEncode(createSamples(4 * 4, (byte) 0x80)));
+        image.getPdfObject().put(PdfName.Filter, PdfName.FlateDecode);
+
+        Assert.assertFalse(ImageSamplesCleaner.isSupported(image));
+        Assert.assertTrue(ImageSamplesCleaner.isSupportedForClearing(image));
+        byte[] cleaned = ImageSamplesCleaner.clearSamples(image, Collections.singletonList(BOTTOM_LEFT_QUARTER))
+                .getBytes();
+
+        Assert.assertArrayEquals(new byte[] {
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                0, 0, (byte) 0x80, (byte) 0x80,
+                0, 0, (byte) 0x80, (byte) 0x80}, cleaned);
+    }
+
+    @Test
+    public void fillSamplesSpansTest() {
+        int[] bitsPerComponent = {1, 2, 4, 8, 16};
+        int samplesInRow = 37;
+        for (int bpc : bitsPerComponent) {
+            int rowLength = (samplesInRow * bpc + 7) / 8;
+            int value = bpc == 16 ? 0x1234 : (1 << bpc) - 2;
+            for (int from = 0; from <= samplesInRow; ++from) {
+                for (int to = from; to <= samplesInRow; ++to) {
+                    byte[] expected = createSamples(rowLength + 2, (byte) 0xA5);
+                    byte[] actual = expected.clone();
+                    for (int i = from; i < to; ++i) {
+                        setSample(expected, 1, i, bpc, value);
+                    }
+                    ImageSamplesCleaner.fillSamples(actual, 1, from, to, bpc, value);
+                    Assert.assertArrayEquals("bpc " + bpc + ", samples [" + from + ", " + to + ")", expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unsupportedImagesTest() {
+        Assert.assertFalse(ImageSamplesCleaner.isSupported(createImage(PdfName.DeviceRGB, 12, new byte[1])));
+        PdfImageXObject dctImage = createImage(PdfName.DeviceRGB, 8, new byte[1]);
+        dctImage.getPdfObject().put(PdfName.Filter, PdfName.DCTDecode);
+        Assert.assertFalse(ImageSamplesCleaner.isSupported(dctImage));
+        PdfImageXObject lab = createImage(new PdfArray(Arrays.<PdfObject>asList(PdfName.Lab, new PdfDictionary())),
+                8, new byte[1]);
+        Assert.assertFalse(ImageSamplesCleaner.isSupported(lab));
+    }
+
+    private static byte[] cleanSamples(PdfImageXObject image) {
+        Assert.assertTrue(ImageSamplesCleaner.isSupported(image));
+        PdfStream cleanedStream = ImageSamplesCleaner.cleanSamples(image, Collections.singletonList(BOTTOM_LEFT_QUARTER));
+        Assert.assertEquals(PdfName.FlateDecode, cleanedStream.get(PdfName.Filter));
+        return cleanedStream.getBytes();
+    }
+
+    private static byte[] flateEncode(byte[] data) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DeflaterOutputStream zip = new DeflaterOutputStream(baos)) {
+            zip.write(data);
+        }
+        return baos.toByteArray();
+    }
+
+    private static void setSample(byte[] samples, int rowOffset, int sampleIndex, int bpc, int value) {
+        if (bpc == 16) {
+            samples[rowOffset + 2 * sampleIndex] = (byte) (value >> 8);
+            samples[rowOffset + 2 * sampleIndex + 1] = (byte) value;
+        } else {
+            for (int bit = 0; bit < bpc; ++bit) {
+                int bitPosition = sampleIndex * bpc + bit;
+                int mask = 0x80 >> (bitPosition % 8);
+                int byteIndex = rowOffset + bitPosition / 8;
+                boolean set = (value >> (bpc - 1 - bit) & 1) != 0;
+                samples[byteIndex] = (byte) (set ? samples[byteIndex] | mask : samples[byteIndex] & ~mask);
+            }
+        }
+    }
+
+    private static byte[] createSamples(int length, byte value) {
+        byte[] samples = new byte[length];
+        Arrays.fill(samples, value);
+        return samples;
+    }
+
+    private static PdfImageXObject createImage(PdfObject colorSpace, int bpc, byte[] samples) {
+        PdfStream stream = new PdfStream(samples);
+        stream.put(PdfName.Type, PdfName.XObject);
+        stream.put(PdfName.Subtype, PdfName.Image);
+        stream.put(PdfName.Width, new PdfNumber(4));
+        stream.put(PdfName.Height, new PdfNumber(4));
+        stream.put(PdfName.BitsPerComponent, new PdfNumber(bpc));
+        stream.put(PdfName.ColorSpace, colorSpace);
+        return new PdfImageXObject(stream);
+    }
+}
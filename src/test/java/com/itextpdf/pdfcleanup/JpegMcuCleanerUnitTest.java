@@ -0,0 +1,188 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import com.itextpdf.test.ExtendedITextTest;
+import com.itextpdf.test.annotations.type.UnitTest;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(UnitTest.class)
+public class JpegMcuCleanerUnitTest extends ExtendedITextTest {
+
+    private static final int TOLERANCE = 8;
+
+    @Test
+    public void grayImageCleanedTest() throws IOException {
+        PdfImageXObject image = createImage(BufferedImage.TYPE_BYTE_GRAY, PdfName.DeviceGray, false);
+
+        BufferedImage cleaned = cleanMcus(image, new Rectangle(0, 0, 0.5f, 0.5f));
+
+        for (int y = 0; y < 32; ++y) {
+            for (int x = 0; x < 32; ++x) {
+                assertGray(y >= 16 && x < 16 ? 255 : 0, cleaned.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void areaRoundedOutwardToBlocksTest() throws IOException {
+        PdfImageXObject image = createImage(BufferedImage.TYPE_BYTE_GRAY, PdfName.DeviceGray, false);
+
+        // pixels 10..19 horizontally and 12..21 vertically, touching blocks 8..23 in both directions
+        BufferedImage cleaned = cleanMcus(image, new Rectangle(10 / 32f, 10 / 32f, 10 / 32f, 10 / 32f));
+
+        for (int y = 0; y < 32; ++y) {
+            for (int x = 0; x < 32; ++x) {
+                boolean inCleanedBlock = x >= 8 && x < 24 && y >= 8 && y < 24;
+                assertGray(inCleanedBlock ? 255 : 0, cleaned.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void subsampledRgbImageCleanedTest() throws IOException {
+        PdfImageXObject image = createImage(BufferedImage.TYPE_INT_RGB, PdfName.DeviceRGB, false);
+
+        BufferedImage cleaned = cleanMcus(image, new Rectangle(0.5f, 0.5f, 0.5f, 0.5f));
+
+        for (int y = 0; y < 32; ++y) {
+            for (int x = 0; x < 32; ++x) {
+                assertGray(y < 16 && x >= 16 ? 255 : 0, cleaned.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void cleanedImageKeepsDictionaryTest() throws IOException {
+        PdfImageXObject image = createImage(BufferedImage.TYPE_BYTE_GRAY, PdfName.DeviceGray, false);
+        image.getPdfObject().put(PdfName.SMask, new PdfStream());
+
+        PdfStream cleanedStream = JpegMcuCleaner.cleanMcus(image,
+                Collections.singletonList(new Rectangle(0, 0, 0.5f, 0.5f)));
+
+        Assert.assertNotNull(cleanedStream);
+        Assert.assertEquals(PdfName.DCTDecode, cleanedStream.getAsName(PdfName.Filter));
+        Assert.assertEquals(PdfName.DeviceGray, cleanedStream.getAsName(PdfName.ColorSpace));
+        Assert.assertFalse(cleanedStream.containsKey(PdfName.SMask));
+    }
+
+    @Test
+    public void progressiveImageNotSupportedTest() throws IOException {
+        PdfImageXObject image = createImage(BufferedImage.TYPE_BYTE_GRAY, PdfName.DeviceGray, true);
+
+        Assert.assertTrue(JpegMcuCleaner.isSupported(image));
+        Assert.assertNull(JpegMcuCleaner.cleanMcus(image, Collections.singletonList(new Rectangle(0, 0, 1, 1))));
+    }
+
+    @Test
+    public void decodeArrayNotSupportedTest() throws IOException {
+        PdfImageXObject image = createImage(BufferedImage.TYPE_BYTE_GRAY, PdfName.DeviceGray, false);
+        image.getPdfObject().put(PdfName.Decode, new PdfArray(new float[] {1, 0}));
+
+        Assert.assertFalse(JpegMcuCleaner.isSupported(image));
+    }
+
+    private static BufferedImage cleanMcus(PdfImageXObject image, Rectangle area) throws IOException {
+        Assert.assertTrue(JpegMcuCleaner.isSupported(image));
+        PdfStream cleanedStream = JpegMcuCleaner.cleanMcus(image, Collections.singletonList(area));
+        Assert.assertNotNull(cleanedStream);
+        return ImageIO.read(new ByteArrayInputStream(cleanedStream.getBytes(false)));
+    }
+
+    private static void assertGray(int expected, int rgb) {
+        Assert.assertEquals(expected, (rgb >> 16) & 0xFF, TOLERANCE);
+        Assert.assertEquals(expected, (rgb >> 8) & 0xFF, TOLERANCE);
+        Assert.assertEquals(expected, rgb & 0xFF, TOLERANCE);
+    }
+
+    private static PdfImageXObject createImage(int imageType, PdfName colorSpace, boolean progressive)
+            throws IOException {
+        BufferedImage bufferedImage = new BufferedImage(32, 32, imageType);
+        Graphics2D graphics = bufferedImage.createGraphics();
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(0, 0, 32, 32);
+        graphics.dispose();
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (progressive) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
+        writer.setOutput(ios);
+        writer.write(null, new IIOImage(bufferedImage, null, null), param);
+        ios.close();
+        writer.dispose();
+
+        PdfStream stream = new PdfStream(baos.toByteArray());
+        stream.put(PdfName.Type, PdfName.XObject);
+        stream.put(PdfName.Subtype, PdfName.Image);
+        stream.put(PdfName.Width, new PdfNumber(32));
+        stream.put(PdfName.Height, new PdfNumber(32));
+        stream.put(PdfName.BitsPerComponent, new PdfNumber(8));
+        stream.put(PdfName.ColorSpace, colorSpace);
+        stream.put(PdfName.Filter, PdfName.DCTDecode);
+        return new PdfImageXObject(stream);
+    }
+}
@@ -58,6 +58,7 @@ import com.itextpdf.test.annotations.LogMessages;
 import com.itextpdf.test.annotations.type.IntegrationTest;
 
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -165,6 +166,47 @@ public class PdfAutoSweepTest extends ExtendedITextTest {
         Assert.assertEquals(2, cleanUpLocations.size());
     }
 
+    @Test
+    public void compositeStrategyMatchesSeparateStrategiesTest() throws IOException {
+        String input = inputPath + "Lipsum.pdf";
+
+        // the second pattern overlaps the matches of the first one, the last strategy is a subclass
+        // which is processed on its own
+        RegexBasedCleanupStrategy[] strategies = {
+                new RegexBasedCleanupStrategy("(D|d)olor").setRedactionColor(ColorConstants.GREEN),
+                new RegexBasedCleanupStrategy("olor sit").setRedactionColor(ColorConstants.RED),
+                new RegexBasedCleanupStrategy(CommonRegex.MODERN_ROMAN_NUMERALS_STRICT),
+                new RegexBasedCleanupStrategy("ipsum") {
+                }.setRedactionColor(ColorConstants.BLUE)
+        };
+        CompositeCleanupStrategy compositeStrategy = new CompositeCleanupStrategy();
+        for (RegexBasedCleanupStrategy strategy : strategies) {
+            compositeStrategy.add(strategy);
+        }
+
+        PdfDocument pdf = new PdfDocument(new PdfReader(input));
+        List<PdfCleanUpLocation> expected = new ArrayList<>();
+        for (RegexBasedCleanupStrategy strategy : strategies) {
+            expected.addAll(new PdfAutoSweep(strategy).getPdfCleanUpLocations(pdf));
+        }
+        List<PdfCleanUpLocation> actual = new PdfAutoSweep(compositeStrategy).getPdfCleanUpLocations(pdf);
+        pdf.close();
+
+        Assert.assertEquals(expected.size(), actual.size());
+        for (PdfCleanUpLocation location : actual) {
+            boolean found = false;
+            for (PdfCleanUpLocation expectedLocation : expected) {
+                if (expectedLocation.getPage() == location.getPage()
+                        && expectedLocation.getRegion().equalsWithEpsilon(location.getRegion())
+                        && expectedLocation.getCleanUpColor().equals(location.getCleanUpColor())) {
+                    found = true;
+                    break;
+                }
+            }
+            Assert.assertTrue(found);
+        }
+    }
+
     @Test
     public void highlightTest() throws IOException, InterruptedException {
         String input = inputPath + "Lipsum.pdf";
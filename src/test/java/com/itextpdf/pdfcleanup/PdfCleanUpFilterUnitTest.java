@@ -42,9 +42,21 @@
  */
 package com.itextpdf.pdfcleanup;
 
+import com.itextpdf.kernel.geom.IShape;
+import com.itextpdf.kernel.geom.Matrix;
+import com.itextpdf.kernel.geom.Path;
 import com.itextpdf.kernel.geom.Point;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.geom.Subpath;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvasConstants;
 import com.itextpdf.test.ExtendedITextTest;
 import com.itextpdf.test.annotations.type.UnitTest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -119,4 +131,181 @@ public class PdfCleanUpFilterUnitTest extends ExtendedITextTest {
         };
         Assert.assertTrue(PdfCleanUpFilter.checkIfRectanglesIntersect(intersectSubject, intersecting));
     }
+
+    @Test
+    public void checkIfRectanglesIntersect_axisAlignedOverlapping() {
+        Point[] intersectSubject = createRectangle(70, 70, 120, 80);
+        Point[] intersecting = createRectangle(50, 50, 100, 100);
+        Assert.assertTrue(PdfCleanUpFilter.checkIfRectanglesIntersect(intersectSubject, intersecting));
+    }
+
+    @Test
+    public void checkIfRectanglesIntersect_axisAlignedTouching() {
+        Point[] intersectSubject = createRectangle(100, 70, 120, 80);
+        Point[] intersecting = createRectangle(50, 50, 100, 100);
+        Assert.assertFalse(PdfCleanUpFilter.checkIfRectanglesIntersect(intersectSubject, intersecting));
+    }
+
+    @Test
+    public void checkIfRectanglesIntersect_axisAlignedDifferentVerticesOrder() {
+        Point[] intersectSubject = new Point[] {
+                new Point(70, 70),
+                new Point(70, 80),
+                new Point(120, 80),
+                new Point(120, 70)
+        };
+        Point[] intersecting = createRectangle(50, 50, 100, 100);
+        Assert.assertTrue(PdfCleanUpFilter.checkIfRectanglesIntersect(intersectSubject, intersecting));
+    }
+
+    @Test
+    public void checkIfRectanglesIntersect_rotatedFarAway() {
+        Point[] intersectSubject = new Point[] {
+                new Point(200, 200),
+                new Point(210, 210),
+                new Point(200, 220),
+                new Point(190, 210)
+        };
+        Point[] intersecting = createRectangle(50, 50, 100, 100);
+        Assert.assertFalse(PdfCleanUpFilter.checkIfRectanglesIntersect(intersectSubject, intersecting));
+    }
+
+    @Test
+    public void checkIfRectanglesIntersect_rotatedBoundingBoxesOverlapping() {
+        // the bounding boxes overlap, but the rotated rectangle itself doesn't intersect the region
+        Point[] intersectSubject = new Point[] {
+                new Point(105, 95),
+                new Point(115, 105),
+                new Point(105, 115),
+                new Point(95, 105)
+        };
+        Point[] intersecting = createRectangle(50, 50, 99, 99);
+        Assert.assertFalse(PdfCleanUpFilter.checkIfRectanglesIntersect(intersectSubject, intersecting));
+    }
+
+    @Test
+    public void checkIfRectanglesIntersect_rotatedOverlapping() {
+        Point[] intersectSubject = new Point[] {
+                new Point(100, 90),
+                new Point(110, 100),
+                new Point(100, 110),
+                new Point(90, 100)
+        };
+        Point[] intersecting = createRectangle(50, 50, 100, 100);
+        Assert.assertTrue(PdfCleanUpFilter.checkIfRectanglesIntersect(intersectSubject, intersecting));
+    }
+
+    @Test
+    public void isFormXObjectAffected_bBoxOutsideRegions() {
+        PdfCleanUpFilter filter = new PdfCleanUpFilter(Collections.singletonList(new Rectangle(300, 300, 50, 50)));
+        PdfStream formStream = createFormStream(new Rectangle(0, 0, 100, 100), null);
+        Assert.assertFalse(filter.isFormXObjectAffected(formStream, new Matrix(100, 100)));
+    }
+
+    @Test
+    public void isFormXObjectAffected_bBoxIntersectsRegionAfterCtm() {
+        PdfCleanUpFilter filter = new PdfCleanUpFilter(Collections.singletonList(new Rectangle(300, 300, 50, 50)));
+        PdfStream formStream = createFormStream(new Rectangle(0, 0, 100, 100), null);
+        Assert.assertTrue(filter.isFormXObjectAffected(formStream, new Matrix(250, 250)));
+    }
+
+    @Test
+    public void isFormXObjectAffected_bBoxIntersectsRegionAfterFormMatrix() {
+        PdfCleanUpFilter filter = new PdfCleanUpFilter(Collections.singletonList(new Rectangle(300, 300, 50, 50)));
+        PdfStream formStream = createFormStream(new Rectangle(0, 0, 100, 100), new PdfArray(new float[] {4, 0, 0, 4, 0, 0}));
+        Assert.assertTrue(filter.isFormXObjectAffected(formStream, new Matrix()));
+    }
+
+    @Test
+    public void isFormXObjectAffected_noBBox() {
+        PdfCleanUpFilter filter = new PdfCleanUpFilter(Collections.singletonList(new Rectangle(300, 300, 50, 50)));
+        PdfStream formStream = new PdfStream();
+        formStream.put(PdfName.Subtype, PdfName.Form);
+        Assert.assertTrue(filter.isFormXObjectAffected(formStream, new Matrix()));
+    }
+
+    @Test
+    public void filterFillPath_pathsWithSameCtm() {
+        PdfCleanUpFilter filter = new PdfCleanUpFilter(Collections.singletonList(new Rectangle(0, 0, 100, 100)));
+        Matrix ctm = new Matrix(2, 0, 0, 2, 0, 0);
+
+        assertPathBoundingBox(new Rectangle(50, 0, 10, 10), filter.filterFillPath(createRectanglePath(40, 0, 20, 10),
+                ctm, PdfCanvasConstants.FillingRule.NONZERO_WINDING));
+        assertPathBoundingBox(new Rectangle(0, 50, 10, 10), filter.filterFillPath(createRectanglePath(0, 40, 10, 20),
+                ctm, PdfCanvasConstants.FillingRule.NONZERO_WINDING));
+        assertPathBoundingBox(new Rectangle(90, 90, 20, 20), filter.filterFillPath(createRectanglePath(90, 90, 20, 20),
+                new Matrix(), PdfCanvasConstants.FillingRule.NONZERO_WINDING));
+    }
+
+    @Test
+    public void filterFillPath_coarsePrecision() {
+        CleanUpProperties properties = new CleanUpProperties(1e6, 0.01, 0.01, 1e-3);
+        PdfCleanUpFilter filter = new PdfCleanUpFilter(Collections.singletonList(new Rectangle(0, 0, 100, 100)),
+                properties);
+
+        assertPathBoundingBox(new Rectangle(90, 90, 20, 20), filter.filterFillPath(createRectanglePath(90, 90, 20, 20),
+                new Matrix(), PdfCanvasConstants.FillingRule.NONZERO_WINDING));
+        assertPathBoundingBox(new Rectangle(50, 0, 10, 10), filter.filterFillPath(createRectanglePath(40, 0, 20, 10),
+                new Matrix(2, 0, 0, 2, 0, 0), PdfCanvasConstants.FillingRule.NONZERO_WINDING));
+    }
+
+    @Test
+    public void filterFillPath_curveFlattening() {
+        CleanUpProperties properties = new CleanUpProperties(CleanUpProperties.DEFAULT_CLIPPER_SCALE,
+                CleanUpProperties.DEFAULT_ARC_TOLERANCE, 0.01, CleanUpProperties.DEFAULT_EPS);
+        PdfCleanUpFilter filter = new PdfCleanUpFilter(Collections.singletonList(new Rectangle(0, 0, 100, 100)),
+                properties);
+
+        Path path = new Path();
+        path.moveTo(100, 0);
+        path.curveTo(200, 0, 200, 100, 100, 100);
+        path.closeSubpath();
+        Path filtered = filter.filterFillPath(path, new Matrix(), PdfCanvasConstants.FillingRule.NONZERO_WINDING);
+
+        assertPathBoundingBox(new Rectangle(100, 0, 75, 100), filtered);
+        for (Subpath subpath : filtered.getSubpaths()) {
+            for (IShape segment : subpath.getSegments()) {
+                for (Point point : segment.getBasePoints()) {
+                    // the approximation of the curve should lie close to it
+                    Assert.assertTrue(point.getX() <= 175 + 0.01);
+                }
+            }
+        }
+    }
+
+    private static Path createRectanglePath(float x, float y, float width, float height) {
+        Path path = new Path();
+        path.rectangle(new Rectangle(x, y, width, height));
+        return path;
+    }
+
+    private static void assertPathBoundingBox(Rectangle expected, Path path) {
+        List<Point> points = new ArrayList<>();
+        for (Subpath subpath : path.getSubpaths()) {
+            for (IShape segment : subpath.getSegments()) {
+                points.addAll(segment.getBasePoints());
+            }
+        }
+        Rectangle bBox = Rectangle.calculateBBox(points);
+        Assert.assertTrue("Expected " + expected + " but was " + bBox, expected.equalsWithEpsilon(bBox));
+    }
+
+    private static Point[] createRectangle(double left, double bottom, double right, double top) {
+        return new Point[] {
+                new Point(left, bottom),
+                new Point(right, bottom),
+                new Point(right, top),
+                new Point(left, top)
+        };
+    }
+
+    private static PdfStream createFormStream(Rectangle bBox, PdfArray matrix) {
+        PdfStream formStream = new PdfStream();
+        formStream.put(PdfName.Subtype, PdfName.Form);
+        formStream.put(PdfName.BBox, new PdfArray(bBox));
+        if (matrix != null) {
+            formStream.put(PdfName.Matrix, matrix);
+        }
+        return formStream;
+    }
 }
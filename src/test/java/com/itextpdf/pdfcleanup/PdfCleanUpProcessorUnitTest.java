@@ -22,22 +22,31 @@
  */
 package com.itextpdf.pdfcleanup;
 
+import com.itextpdf.kernel.geom.Rectangle;
 import com.itextpdf.kernel.pdf.PdfArray;
 import com.itextpdf.kernel.pdf.PdfBoolean;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfName;
 import com.itextpdf.kernel.pdf.PdfNull;
 import com.itextpdf.kernel.pdf.PdfNumber;
 import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfPage;
 import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.PdfWriter;
 import com.itextpdf.kernel.pdf.canvas.CanvasTag;
 import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
 import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
 import com.itextpdf.test.ExtendedITextTest;
 import com.itextpdf.test.annotations.type.UnitTest;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -157,6 +166,98 @@ public class PdfCleanUpProcessorUnitTest extends ExtendedITextTest {
         testOpenNotWrittenTags(new ArrayDeque<CanvasTag>());
     }
 
+    @Test
+    public void filteredPendingImageRefersOriginalObjectsTest() {
+        PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        PdfImageXObject image = addPartiallyCleanedImage(document);
+        PdfCleanUpProcessor processor = new PdfCleanUpProcessor(Arrays.asList(new Rectangle(0, 0, 50, 100)), document);
+        PdfStream imageToWrite = processPendingImage(document, processor);
+
+        // the color space isn't duplicated by the copy of the image which is filtered in background
+        Assert.assertNotSame(image.getPdfObject(), imageToWrite);
+        Assert.assertSame(image.getPdfObject().getAsArray(PdfName.ColorSpace),
+                imageToWrite.getAsArray(PdfName.ColorSpace));
+        Assert.assertEquals(1, processor.getCreatedXObjects().size());
+        document.close();
+    }
+
+    @Test
+    public void notModifiedPendingImageReplacedByOriginalTest() {
+        PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        PdfImageXObject image = addPartiallyCleanedImage(document);
+        PdfCleanUpProcessor processor = createProcessorWithFilteredImage(document,
+                new PdfCleanUpProcessor.FilteredImage(false, null, false, false));
+        PdfStream imageToWrite = processPendingImage(document, processor);
+
+        Assert.assertSame(image.getPdfObject(), imageToWrite);
+        Assert.assertTrue(processor.getCreatedXObjects().isEmpty());
+        document.close();
+    }
+
+    @Test
+    public void removedPendingImagePaintsNothingTest() {
+        PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()));
+        PdfImageXObject image = addPartiallyCleanedImage(document);
+        PdfCleanUpProcessor processor = createProcessorWithFilteredImage(document,
+                new PdfCleanUpProcessor.FilteredImage(true, null, true, false));
+        PdfStream imageToWrite = processPendingImage(document, processor);
+
+        // the original image is never written instead of the removed one
+        Assert.assertNotSame(image.getPdfObject(), imageToWrite);
+        Assert.assertEquals(PdfBoolean.TRUE, imageToWrite.getAsBoolean(PdfName.ImageMask));
+        Assert.assertEquals(1, imageToWrite.getAsNumber(PdfName.Width).intValue());
+        Assert.assertEquals(1, imageToWrite.getAsNumber(PdfName.Height).intValue());
+        Assert.assertArrayEquals(new byte[] {(byte) 0xFF}, imageToWrite.getBytes());
+        Assert.assertEquals(1, processor.getCreatedXObjects().size());
+        document.close();
+    }
+
+    private static PdfImageXObject addPartiallyCleanedImage(PdfDocument document) {
+        PdfPage page = document.addNewPage();
+        PdfDictionary whitePoint = new PdfDictionary();
+        whitePoint.put(PdfName.WhitePoint, new PdfArray(new float[] {0.9505f, 1, 1.089f}));
+        PdfArray colorSpace = createPdfArray(PdfName.CalRGB, whitePoint);
+        colorSpace.makeIndirect(document);
+        PdfStream imageStream = new PdfStream(new byte[] {(byte) 0xFF, 0, 0, 0, 0, (byte) 0xFF});
+        imageStream.put(PdfName.Type, PdfName.XObject);
+        imageStream.put(PdfName.Subtype, PdfName.Image);
+        imageStream.put(PdfName.Width, new PdfNumber(2));
+        imageStream.put(PdfName.Height, new PdfNumber(1));
+        imageStream.put(PdfName.BitsPerComponent, new PdfNumber(8));
+        imageStream.put(PdfName.ColorSpace, colorSpace);
+        PdfImageXObject image = new PdfImageXObject(imageStream);
+        PdfName imageName = page.getResources().addImage(image);
+        // the left half of the image is covered by the cleanup region
+        page.getFirstContentStream().setData(("q 100 0 0 100 0 0 cm " + imageName + " Do Q")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        return image;
+    }
+
+    private static PdfCleanUpProcessor createProcessorWithFilteredImage(PdfDocument document,
+            final PdfCleanUpProcessor.FilteredImage filteredImage) {
+        return new PdfCleanUpProcessor(Arrays.asList(new Rectangle(0, 0, 50, 100)), document) {
+            @Override
+            FilteredImage computeFilteredImage(FilteredImagesCache.FilteredImageKey filteredImageKey) {
+                return filteredImage;
+            }
+        };
+    }
+
+    private static PdfStream processPendingImage(PdfDocument document, PdfCleanUpProcessor processor) {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            processor.setFilteredImagesCache(new FilteredImagesCache());
+            processor.setImageFilteringExecutor(executor);
+            processor.processPageContent(document.getFirstPage());
+            processor.resolvePendingImages();
+        } finally {
+            executor.shutdownNow();
+        }
+        PdfDictionary xObjects = processor.popCleanedCanvas().getResources().getResource(PdfName.XObject);
+        Assert.assertEquals(1, xObjects.size());
+        return xObjects.getAsStream(xObjects.keySet().iterator().next());
+    }
+
     private void testOpenNotWrittenTags(final Deque<CanvasTag> tags) {
         PdfCleanUpProcessor processor = new PdfCleanUpProcessor(null, null) {
             @Override
@@ -44,15 +44,29 @@ package com.itextpdf.pdfcleanup;
 
 import com.itextpdf.io.LogMessageConstant;
 import com.itextpdf.kernel.PdfException;
+import com.itextpdf.io.font.constants.StandardFonts;
 import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
 import com.itextpdf.kernel.geom.PageSize;
 import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfArray;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfObject;
 import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.PdfString;
 import com.itextpdf.kernel.pdf.PdfWriter;
 import com.itextpdf.kernel.pdf.annot.PdfAnnotation;
 import com.itextpdf.kernel.pdf.annot.PdfRedactAnnotation;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.canvas.parser.EventType;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfCanvasProcessor;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import com.itextpdf.kernel.pdf.canvas.parser.data.IEventData;
+import com.itextpdf.kernel.pdf.canvas.parser.data.TextRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.IEventListener;
 import com.itextpdf.kernel.utils.CompareTool;
 import com.itextpdf.pdfcleanup.util.CleanUpImagesCompareTool;
 import com.itextpdf.test.ExtendedITextTest;
@@ -62,9 +76,12 @@ import com.itextpdf.test.annotations.type.IntegrationTest;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Rule;
@@ -791,6 +808,146 @@ public class PdfCleanUpToolTest extends ExtendedITextTest {
         compareByContent(cmp, output, outputPath, "diff_pathAndIncorrectCMTest");
     }
 
+    @Test
+    public void cleanUpAreaWithoutContentKeepsOriginalContentTest() throws IOException {
+        String input = inputPath + "helloHelvetica.pdf";
+        String output = outputPath + "helloHelveticaUntouched.pdf";
+
+        PdfDocument pdfDocument = new PdfDocument(new PdfReader(input), new PdfWriter(output));
+        PdfObject originalContents = pdfDocument.getPage(1).getPdfObject().get(PdfName.Contents, false);
+        byte[] originalContentBytes = pdfDocument.getPage(1).getContentBytes();
+
+        List<PdfCleanUpLocation> cleanUpLocations = Arrays.asList(
+                new PdfCleanUpLocation(1, new Rectangle(0f, 0f, 1f, 1f)));
+        new PdfCleanUpTool(pdfDocument, cleanUpLocations).cleanUp();
+
+        Assert.assertSame(originalContents, pdfDocument.getPage(1).getPdfObject().get(PdfName.Contents, false));
+        Assert.assertArrayEquals(originalContentBytes, pdfDocument.getPage(1).getContentBytes());
+        pdfDocument.close();
+    }
+
+    @Test
+    public void cleanUpMiddleOfLongStringTest() throws IOException {
+        String input = outputPath + "longString.pdf";
+        String output = outputPath + "longStringCleaned.pdf";
+        PdfFont font = createLongStringDocument(input);
+
+        cleanUp(input, output, Arrays.asList(createFoxCleanUpLocation(font)));
+
+        PdfDocument outputDocument = new PdfDocument(new PdfReader(output));
+        String extractedText = PdfTextExtractor.getTextFromPage(outputDocument.getPage(1));
+        outputDocument.close();
+        Assert.assertTrue(extractedText.startsWith("The quick brown"));
+        Assert.assertTrue(extractedText.endsWith("jumps over the lazy dog"));
+        Assert.assertFalse(extractedText.contains("fox"));
+    }
+
+    @Test
+    public void cleanedTextCoalescedIntoStringRunsTest() throws IOException {
+        String input = outputPath + "longStringForRuns.pdf";
+        String output = outputPath + "longStringRunsCleaned.pdf";
+        PdfFont font = createLongStringDocument(input);
+
+        cleanUp(input, output, Arrays.asList(createFoxCleanUpLocation(font)));
+
+        PdfDocument outputDocument = new PdfDocument(new PdfReader(output));
+        String content = new String(outputDocument.getPage(1).getContentBytes(), StandardCharsets.ISO_8859_1);
+        outputDocument.close();
+        // the kept glyphs are written as two string runs, the removed ones are replaced with a single number
+        Assert.assertTrue(content, Pattern.compile("\\[\\(The quick brown \\)-?[\\d.]+\\( jumps over the lazy dog\\)\\]\\s*TJ")
+                .matcher(content).find());
+    }
+
+    @Test
+    public void textNotCleanedByCharactersKeptAsOriginalStringTest() throws IOException {
+        String input = outputPath + "charSpacingGap.pdf";
+        String output = outputPath + "charSpacingGapCleaned.pdf";
+        PdfDocument pdfDocument = new PdfDocument(new PdfWriter(input));
+        PdfFont font = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+        PdfPage page = pdfDocument.addNewPage();
+        PdfName fontName = page.getResources().addFont(pdfDocument, font);
+        // the glyphs are separated by the gap of the character spacing width
+        page.getFirstContentStream().setData(("BT\n" + fontName + " 12 Tf\n50 Tc\n100 500 Td\n<4142> Tj\nET\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        pdfDocument.close();
+        // the region lies within the text bounding box, but doesn't touch any of the glyphs
+        Rectangle region = new Rectangle(100 + font.getWidth("A", 12) + 10, 495, 20, 15);
+
+        pdfDocument = new PdfDocument(new PdfReader(input));
+        final List<TextRenderInfo> texts = new ArrayList<>();
+        new PdfCanvasProcessor(new IEventListener() {
+            @Override
+            public void eventOccurred(IEventData data, EventType type) {
+                if (type == EventType.RENDER_TEXT) {
+                    ((TextRenderInfo) data).preserveGraphicsState();
+                    texts.add((TextRenderInfo) data);
+                }
+            }
+
+            @Override
+            public Set<EventType> getSupportedEvents() {
+                return null;
+            }
+        }).processPageContent(pdfDocument.getPage(1));
+        Assert.assertEquals(1, texts.size());
+        PdfCleanUpFilter.FilterResult<PdfArray> filterResult = new PdfCleanUpFilter(Arrays.asList(region),
+                new CleanUpProperties()).filterTextCharacters(texts.get(0));
+        pdfDocument.close();
+        // the per-character filtering keeps the original string, which is hex encoded, instead of the rebuilt one
+        Assert.assertFalse(filterResult.isModified());
+        Assert.assertEquals(1, filterResult.getFilterResult().size());
+        Assert.assertSame(texts.get(0).getPdfString(), filterResult.getFilterResult().get(0));
+
+        cleanUp(input, output, Arrays.asList(new PdfCleanUpLocation(1, region)));
+
+        PdfDocument outputDocument = new PdfDocument(new PdfReader(output));
+        String content = new String(outputDocument.getPage(1).getContentBytes(), StandardCharsets.ISO_8859_1);
+        outputDocument.close();
+        Assert.assertTrue(content, content.contains("<4142> Tj"));
+    }
+
+    @Test
+    public void pathOutsideCleanUpAreaKeptAsStrokeTest() throws IOException {
+        String input = outputPath + "strokeAndFill.pdf";
+        String output = outputPath + "strokeAndFillCleaned.pdf";
+
+        PdfDocument pdfDocument = new PdfDocument(new PdfWriter(input));
+        new PdfCanvas(pdfDocument.addNewPage())
+                .moveTo(100, 700)
+                .lineTo(500, 700)
+                .stroke()
+                .rectangle(100, 100, 50, 50)
+                .fill();
+        pdfDocument.close();
+
+        cleanUp(input, output, Arrays.asList(new PdfCleanUpLocation(1, new Rectangle(90, 90, 100, 100))));
+
+        PdfDocument outputDocument = new PdfDocument(new PdfReader(output));
+        String content = new String(outputDocument.getPage(1).getContentBytes(), StandardCharsets.ISO_8859_1);
+        outputDocument.close();
+        Assert.assertTrue(Pattern.compile("100 700 m\\s+500 700 l\\s+S").matcher(content).find());
+        Assert.assertFalse(Pattern.compile("\\bf\\b").matcher(content).find());
+    }
+
+    private static PdfFont createLongStringDocument(String path) throws IOException {
+        PdfDocument pdfDocument = new PdfDocument(new PdfWriter(path));
+        PdfFont font = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+        new PdfCanvas(pdfDocument.addNewPage())
+                .beginText()
+                .setFontAndSize(font, 12)
+                .moveText(100, 500)
+                .showText("The quick brown fox jumps over the lazy dog")
+                .endText();
+        pdfDocument.close();
+        return font;
+    }
+
+    private static PdfCleanUpLocation createFoxCleanUpLocation(PdfFont font) {
+        float foxStart = 100 + font.getWidth("The quick brown ", 12);
+        float foxWidth = font.getWidth("fox", 12);
+        return new PdfCleanUpLocation(1, new Rectangle(foxStart + 1, 495, foxWidth - 2, 15));
+    }
+
     private void cleanUp(String input, String output, List<PdfCleanUpLocation> cleanUpLocations) throws IOException {
         PdfDocument pdfDocument = new PdfDocument(new PdfReader(input), new PdfWriter(output));
 
@@ -45,8 +45,14 @@ package com.itextpdf.pdfcleanup;
 
 import com.itextpdf.io.LogMessageConstant;
 import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfDictionary;
 import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfPage;
 import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfResources;
 import com.itextpdf.kernel.pdf.PdfWriter;
 import com.itextpdf.kernel.utils.CompareTool;
 import com.itextpdf.pdfcleanup.util.CleanUpImagesCompareTool;
@@ -59,7 +65,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 
@@ -99,6 +107,59 @@ public class PdfCleanUpToolWithInlineImagesTest extends ExtendedITextTest {
         compareByContent(cmp, output, outputPath, "diff_29");
     }
 
+    @Test
+    public void cleanUpNotIntersectedInlineImagesTest() throws IOException, InterruptedException {
+        String input = inputPath + "inlineImages.pdf";
+        String output = outputPath + "inlineImages_notIntersected.pdf";
+
+        // inline images which are not touched by the cleaned area are written back as they were,
+        // so the result is expected to look exactly like the original document
+        List<PdfCleanUpLocation> cleanUpLocations = Arrays.asList(new PdfCleanUpLocation(1, new Rectangle(300, 100, 50, 50), null));
+        cleanUp(input, output, cleanUpLocations);
+        compareByContent(input, output, outputPath, "diff_notIntersected");
+    }
+
+    @Test
+    public void cleanUpNotIntersectedInlineImagesWithResourceColorSpaceTest() throws IOException, InterruptedException {
+        String input = outputPath + "inlineImagesWithResourceColorSpace.pdf";
+        String output = outputPath + "inlineImagesWithResourceColorSpace_cleaned.pdf";
+
+        PdfDocument pdfDocument = new PdfDocument(new PdfWriter(input));
+        PdfPage page = pdfDocument.addNewPage();
+        PdfDictionary whitePoint = new PdfDictionary();
+        whitePoint.put(PdfName.WhitePoint, new PdfArray(new float[] {0.9505f, 1, 1.089f}));
+        page.getResources().addColorSpace(new PdfArray(Arrays.<PdfObject>asList(PdfName.CalRGB, whitePoint)));
+        PdfName colorSpaceName = page.getResources().getResourceNames(PdfName.ColorSpace).iterator().next();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        // an image with the color space referring to the resources directly and an indexed image with such base
+        content.write(("q 100 0 0 100 36 600 cm\nBI\n/W 2 /H 1 /BPC 8 /CS " + colorSpaceName
+                + "\nID\n").getBytes(StandardCharsets.ISO_8859_1));
+        content.write(new byte[] {(byte) 0xFF, 0, 0, 0, 0, (byte) 0xFF});
+        content.write(("\nEI\nQ\nq 100 0 0 100 36 400 cm\nBI\n/W 2 /H 1 /BPC 8 /CS [/I " + colorSpaceName
+                + " 1 <FF00000000FF>]\nID\n").getBytes(StandardCharsets.ISO_8859_1));
+        content.write(new byte[] {1, 0});
+        content.write("\nEI\nQ\n".getBytes(StandardCharsets.ISO_8859_1));
+        page.getFirstContentStream().setData(content.toByteArray());
+        pdfDocument.close();
+
+        List<PdfCleanUpLocation> cleanUpLocations = Arrays.asList(new PdfCleanUpLocation(1, new Rectangle(300, 100, 50, 50), null));
+        cleanUp(input, output, cleanUpLocations);
+
+        pdfDocument = new PdfDocument(new PdfReader(output));
+        PdfResources resources = pdfDocument.getPage(1).getResources();
+        String cleanedContent = new String(pdfDocument.getPage(1).getContentBytes(), StandardCharsets.ISO_8859_1);
+        pdfDocument.close();
+        // the color space is carried over to the resources of the cleaned content under the name used by the images
+        Assert.assertEquals(1, resources.getResourceNames(PdfName.ColorSpace).size());
+        PdfName cleanedColorSpaceName = resources.getResourceNames(PdfName.ColorSpace).iterator().next();
+        PdfArray cleanedColorSpace = resources.getResource(PdfName.ColorSpace).getAsArray(cleanedColorSpaceName);
+        Assert.assertEquals(PdfName.CalRGB, cleanedColorSpace.getAsName(0));
+        // both images are written as they were, one refers to the color space directly, the other one as to the base
+        Assert.assertEquals(2, cleanedContent.split("\nID\n", -1).length - 1);
+        Assert.assertEquals(2, cleanedContent.split(cleanedColorSpaceName.toString(), -1).length - 1);
+        compareByContent(input, output, outputPath, "diff_resourceColorSpace");
+    }
+
     @Test
     @LogMessages(messages = {
             @LogMessage(messageTemplate = LogMessageConstant.IMAGE_SIZE_CANNOT_BE_MORE_4KB)
@@ -0,0 +1,236 @@
+/*
+    This file is part of the iText (R) project.
+    Copyright (c) 1998-2021 iText Group NV
+    Authors: iText Software.
+
+    This program is free software; you can redistribute it and/or modify
+    it under the terms of the GNU Affero General Public License version 3
+    as published by the Free Software Foundation with the addition of the
+    following permission added to Section 15 as permitted in Section 7(a):
+    FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+    ITEXT GROUP. ITEXT GROUP DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+    OF THIRD PARTY RIGHTS
+
+    This program is distributed in the hope that it will be useful, but
+    WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+    or FITNESS FOR A PARTICULAR PURPOSE.
+    See the GNU Affero General Public License for more details.
+    You should have received a copy of the GNU Affero General Public License
+    along with this program; if not, see http://www.gnu.org/licenses or write to
+    the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor,
+    Boston, MA, 02110-1301 USA, or download the license from the following URL:
+    http://itextpdf.com/terms-of-use/
+
+    The interactive user interfaces in modified source and object code versions
+    of this program must display Appropriate Legal Notices, as required under
+    Section 5 of the GNU Affero General Public License.
+
+    In accordance with Section 7(b) of the GNU Affero General Public License,
+    a covered work must retain the producer line in every PDF that is created
+    or manipulated using iText.
+
+    You can be released from the requirements of the license by purchasing
+    a commercial license. Buying such a license is mandatory as soon as you
+    develop commercial activities involving the iText software without
+    disclosing the source code of your own applications.
+    These activities include: offering paid services to customers as an ASP,
+    serving PDFs on the fly in a web application, shipping iText with a closed
+    source product.
+
+    For more information, please contact iText Software Corp. at this
+    address: sales@itextpdf.com
+ */
+package com.itextpdf.pdfcleanup;
+
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import com.itextpdf.test.ExtendedITextTest;
+import com.itextpdf.test.annotations.LogMessage;
+import com.itextpdf.test.annotations.LogMessages;
+import com.itextpdf.test.annotations.type.UnitTest;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.ExpectedException;
+
+@Category(UnitTest.class)
+public class SharedFilteredImagesCacheUnitTest extends ExtendedITextTest {
+
+    private static final String outputPath = "./target/test/com/itextpdf/pdfcleanup/SharedFilteredImagesCacheUnitTest/";
+
+    private static final List<Rectangle> AREAS = Collections.singletonList(new Rectangle(0, 0, 0.5f, 0.5f));
+
+    @Rule
+    public ExpectedException junitExpectedException = ExpectedException.none();
+
+    @BeforeClass
+    public static void before() {
+        createOrClearDestinationFolder(outputPath);
+    }
+
+    @Test
+    public void sameContentSameKeyTest() {
+        String key = SharedFilteredImagesCache.createKey(createImage(new byte[] {1, 2, 3, 4}), AREAS, false);
+
+        Assert.assertNotNull(key);
+        Assert.assertEquals(key, SharedFilteredImagesCache.createKey(createImage(new byte[] {1, 2, 3, 4}),
+                Collections.singletonList(new Rectangle(0, 0, 0.500001f, 0.5f)), false));
+    }
+
+    @Test
+    public void differentContentDifferentKeyTest() {
+        String key = SharedFilteredImagesCache.createKey(createImage(new byte[] {1, 2, 3, 4}), AREAS, false);
+
+        Assert.assertNotEquals(key, SharedFilteredImagesCache.createKey(createImage(new byte[] {1, 2, 3, 5}), AREAS, false));
+        Assert.assertNotEquals(key, SharedFilteredImagesCache.createKey(createImage(new byte[] {1, 2, 3, 4}),
+                Collections.singletonList(new Rectangle(0.5f, 0, 0.5f, 0.5f)), false));
+        Assert.assertNotEquals(key, SharedFilteredImagesCache.createKey(createImage(new byte[] {1, 2, 3, 4}), AREAS, true));
+
+        PdfImageXObject rgbImage = createImage(new byte[] {1, 2, 3, 4});
+        rgbImage.put(PdfName.ColorSpace, PdfName.DeviceRGB);
+        Assert.assertNotEquals(key, SharedFilteredImagesCache.createKey(rgbImage, AREAS, false));
+    }
+
+    @Test
+    public void filteredImageRestoredTest() {
+        SharedFilteredImagesCache cache = new SharedFilteredImagesCache(Long.MAX_VALUE);
+        PdfImageXObject sourceImage = createImage(new byte[] {1, 2, 3, 4});
+        PdfArray decode = new PdfArray(new float[] {1, 0});
+        sourceImage.put(PdfName.Decode, decode);
+        String key = SharedFilteredImagesCache.createKey(sourceImage, AREAS, false);
+
+        cache.put(key, sourceImage, true, createFilteredImage(sourceImage), false, false);
+
+        PdfImageXObject otherSourceImage = createImage(new byte[] {1, 2, 3, 4});
+        PdfArray otherDecode = new PdfArray(new float[] {1, 0});
+        otherSourceImage.put(PdfName.Decode, otherDecode);
+        SharedFilteredImagesCache.CachedFilteredImage cached = cache.get(key, otherSourceImage);
+
+        Assert.assertNotNull(cached);
+        Assert.assertTrue(cached.isModified());
+        Assert.assertFalse(cached.isConverted());
+        PdfStream restoredStream = cached.getImage().getPdfObject();
+        Assert.assertArrayEquals(new byte[] {0, 0, 3, 4}, restoredStream.getBytes(false));
+        Assert.assertSame(otherDecode, restoredStream.get(PdfName.Decode, false));
+        Assert.assertEquals(PdfName.FlateDecode, restoredStream.getAsName(PdfName.Filter));
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void unmodifiedImageRestoredTest() {
+        SharedFilteredImagesCache cache = new SharedFilteredImagesCache(Long.MAX_VALUE);
+        PdfImageXObject sourceImage = createImage(new byte[] {1, 2, 3, 4});
+        String key = SharedFilteredImagesCache.createKey(sourceImage, AREAS, false);
+
+        Assert.assertNull(cache.get(key, sourceImage));
+        cache.put(key, sourceImage, false, null, false, false);
+        SharedFilteredImagesCache.CachedFilteredImage cached = cache.get(key, sourceImage);
+
+        Assert.assertFalse(cached.isModified());
+        Assert.assertNull(cached.getImage());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void evictedImageSpilledToDirectoryTest() {
+        File spillDirectory = new File(outputPath, "spill");
+        spillDirectory.mkdirs();
+        SharedFilteredImagesCache cache = new SharedFilteredImagesCache(0, spillDirectory);
+        PdfImageXObject sourceImage = createImage(new byte[] {1, 2, 3, 4});
+        String key = SharedFilteredImagesCache.createKey(sourceImage, AREAS, false);
+
+        cache.put(key, sourceImage, true, createFilteredImage(sourceImage), false, false);
+        Assert.assertEquals(0, cache.getMemorySize());
+
+        SharedFilteredImagesCache otherCache = new SharedFilteredImagesCache(0, spillDirectory);
+        SharedFilteredImagesCache.CachedFilteredImage cached = otherCache.get(key, sourceImage);
+
+        Assert.assertNotNull(cached);
+        Assert.assertArrayEquals(new byte[] {0, 0, 3, 4}, cached.getImage().getPdfObject().getBytes(false));
+    }
+
+    @Test
+    @LogMessages(messages = @LogMessage(messageTemplate =
+            CleanUpLogMessageConstant.SHARED_FILTERED_IMAGES_CACHE_FILE_ACCESS_FAILED, count = 3))
+    public void corruptedSpillFileDroppedTest() throws IOException {
+        File spillDirectory = new File(outputPath, "corrupted");
+        spillDirectory.mkdirs();
+        SharedFilteredImagesCache cache = new SharedFilteredImagesCache(0, spillDirectory);
+        PdfImageXObject sourceImage = createImage(new byte[] {1, 2, 3, 4});
+        String key = SharedFilteredImagesCache.createKey(sourceImage, AREAS, false);
+        cache.put(key, sourceImage, true, createFilteredImage(sourceImage), false, false);
+
+        File spillFile = new File(spillDirectory, key + ".fic");
+        byte[] spilled = Files.readAllBytes(spillFile.toPath());
+        // the changed byte of the stored data, the truncated data and the data which is too short to be read
+        byte[] corrupted = Arrays.copyOf(spilled, spilled.length);
+        corrupted[corrupted.length - 1] ^= 1;
+        byte[] truncated = Arrays.copyOf(spilled, spilled.length - 5);
+        for (byte[] content : Arrays.asList(corrupted, truncated, new byte[] {0, 0, 0, 1, 0, 1})) {
+            Files.write(spillFile.toPath(), content);
+            Assert.assertNull(cache.get(key, sourceImage));
+            Assert.assertFalse(spillFile.exists());
+        }
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    @LogMessages(messages = @LogMessage(messageTemplate =
+            CleanUpLogMessageConstant.SHARED_FILTERED_IMAGES_CACHE_FILE_ACCESS_FAILED))
+    public void spillFileOfOtherKeyNotUsedTest() throws IOException {
+        File spillDirectory = new File(outputPath, "otherKey");
+        spillDirectory.mkdirs();
+        SharedFilteredImagesCache cache = new SharedFilteredImagesCache(0, spillDirectory);
+        PdfImageXObject sourceImage = createImage(new byte[] {1, 2, 3, 4});
+        String key = SharedFilteredImagesCache.createKey(sourceImage, AREAS, false);
+        cache.put(key, sourceImage, true, createFilteredImage(sourceImage), false, false);
+
+        PdfImageXObject otherImage = createImage(new byte[] {5, 6, 7, 8});
+        String otherKey = SharedFilteredImagesCache.createKey(otherImage, AREAS, false);
+        Files.copy(new File(spillDirectory, key + ".fic").toPath(), new File(spillDirectory, otherKey + ".fic").toPath());
+
+        Assert.assertNull(cache.get(otherKey, otherImage));
+        Assert.assertNotNull(cache.get(key, sourceImage));
+    }
+
+    @Test
+    public void notExistingSpillDirectoryTest() {
+        junitExpectedException.expect(IllegalArgumentException.class);
+        new SharedFilteredImagesCache(0, new File(outputPath, "notExisting"));
+    }
+
+    private static PdfImageXObject createImage(byte[] data) {
+        PdfStream stream = new PdfStream(data);
+        stream.put(PdfName.Type, PdfName.XObject);
+        stream.put(PdfName.Subtype, PdfName.Image);
+        stream.put(PdfName.Width, new PdfNumber(2));
+        stream.put(PdfName.Height, new PdfNumber(2));
+        stream.put(PdfName.BitsPerComponent, new PdfNumber(8));
+        stream.put(PdfName.ColorSpace, PdfName.DeviceGray);
+        return new PdfImageXObject(stream);
+    }
+
+    private static PdfImageXObject createFilteredImage(PdfImageXObject sourceImage) {
+        PdfStream sourceStream = sourceImage.getPdfObject();
+        PdfStream filteredStream = new PdfStream(new byte[] {0, 0, 3, 4});
+        for (PdfName key : sourceStream.keySet()) {
+            filteredStream.put(key, sourceStream.get(key, false));
+        }
+        filteredStream.put(PdfName.Filter, PdfName.FlateDecode);
+        return new PdfImageXObject(filteredStream);
+    }
+}